@@ -0,0 +1,100 @@
+package com.rock.micro.base.util;
+
+import com.alibaba.fastjson.JSON;
+import lombok.Getter;
+import lombok.Setter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 深拷贝 基准测试:json 序列化再反序列化 vs {@link DeepCopyExtraUtils} 按属性拷贝
+ * -
+ * 运行:mvn -P benchmark test-compile exec:exec
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeepCopyBenchmark {
+
+    //样例数据
+    private Sample sample;
+
+    @Setup
+    public void setup() {
+        //样例数据:一个父对象带 20 个子对象
+        this.sample = newSample("sample", 10);
+        this.sample.setTagList(new ArrayList<>(Arrays.asList("a", "b", "c")));
+        this.sample.setChildList(new ArrayList<>());
+        for (int i = 0; i < 20; i++) {
+            this.sample.getChildList().add(newSample("child" + i, i));
+        }
+        //两种方式结果必须一致,否则对比没有意义
+        String expected = JSON.toJSONString(json());
+        String actual = JSON.toJSONString(copy());
+        if (expected.equals(actual) == false) {
+            throw new IllegalStateException("深拷贝结果与 json 方式不一致:" + expected + " <> " + actual);
+        }
+    }
+
+    @Benchmark
+    public Sample json() {
+        //原有方式
+        return JSON.parseObject(JSON.toJSONString(this.sample), Sample.class);
+    }
+
+    @Benchmark
+    public Sample copy() {
+        //按属性拷贝
+        return FastJsonExtraUtils.deepClone(this.sample, Sample.class);
+    }
+
+    private static Sample newSample(String name, int count) {
+        //初始化
+        Sample sample = new Sample();
+        sample.setName(name);
+        sample.setCount(count);
+        sample.setCreateDate(new Date());
+        //返回
+        return sample;
+    }
+
+    /**
+     * 样例
+     */
+    @Getter
+    @Setter
+    public static class Sample {
+
+        private String name;
+
+        private int count;
+
+        private Date createDate;
+
+        private List<String> tagList;
+
+        private List<Sample> childList;
+
+    }
+
+}
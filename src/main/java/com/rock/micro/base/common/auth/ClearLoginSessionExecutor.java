@@ -2,6 +2,7 @@ package com.rock.micro.base.common.auth;
 
 /**
  * 清理 {@link LoginAuth} 的所有内容
+ * 注意:只清理当前线程的登录信息,不影响 Redis 与近端缓存;登出、踢下线请使用 {@link LoginSessionManager}(会广播近端缓存失效)
  */
 public class ClearLoginSessionExecutor {
 
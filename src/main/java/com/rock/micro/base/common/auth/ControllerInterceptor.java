@@ -40,6 +40,9 @@ public class ControllerInterceptor implements HandlerInterceptor {
     @Autowired
     private BaseRedisService baseRedisService;
 
+    @Autowired
+    private LoginSessionNearCache loginSessionNearCache;
+
     /**
      * 在 Controller 方法执行之前被调用
      */
@@ -149,6 +152,15 @@ public class ControllerInterceptor implements HandlerInterceptor {
             //过
             return null;
         }
+        //优先本地缓存,命中则不访问Redis
+        User cacheUser = loginSessionNearCache.get(userId, token);
+        //如果命中
+        if (cacheUser != null) {
+            //返回
+            return cacheUser;
+        }
+        //读Redis前的失效版本号
+        long cacheVersion = loginSessionNearCache.currentVersion();
         //组装对应key
         String redisUserIdKey = RedisKey.USER_LOGIN_AUTH_SET_USER_USER_ID_WITH_TOKEN + userId;
         //获取该用户有效token
@@ -176,6 +188,8 @@ public class ControllerInterceptor implements HandlerInterceptor {
         User user = FastJsonExtraUtils.deepClone(userInfo, User.class);
         //用户实体脱敏
         UserExtraUtils.desensitization(user);
+        //放入本地缓存
+        loginSessionNearCache.put(userId, token, user, cacheVersion);
 
         /**
          * 返回
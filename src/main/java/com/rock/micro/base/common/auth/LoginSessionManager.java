@@ -0,0 +1,122 @@
+package com.rock.micro.base.common.auth;
+
+import com.rock.micro.base.common.constant.RedisKey;
+import com.rock.micro.base.data.User;
+import com.rock.micro.base.db.redis.BaseRedisService;
+import com.rock.micro.base.util.FastJsonExtraUtils;
+import com.rock.micro.base.util.UserExtraUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 登录信息 写入/清理
+ * -
+ * 登录、登出、踢下线、修改用户信息 都应该走这里:写完 Redis 后广播 {@link LoginSessionNearCache} 失效,
+ * 其他实例的近端缓存立即删除,不依赖 Redis 的 keyspace 通知
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@Component
+public class LoginSessionManager {
+
+    @Autowired
+    private BaseRedisService baseRedisService;
+
+    @Autowired
+    private LoginSessionNearCache loginSessionNearCache;
+
+    /**
+     * 登录,生成新token,同一用户之前的token失效
+     *
+     * @param user 用户信息
+     * @param time 有效期(秒)
+     * @return 新token
+     */
+    public String login(User user, long time) {
+        //判空
+        if (user == null || StringUtils.isBlank(user.getId())) {
+            //过
+            return null;
+        }
+        //生成token
+        String token = UserExtraUtils.creatUserToken(user.getId());
+        //用户id 与 token 的关系,旧token随之失效
+        this.baseRedisService.setAndTime(RedisKey.USER_LOGIN_AUTH_SET_USER_USER_ID_WITH_TOKEN + user.getId(), token, time);
+        //token 与 用户信息
+        this.baseRedisService.setAndTime(RedisKey.USER_LOGIN_AUTH_SET + token, FastJsonExtraUtils.toJSONString(user), time);
+        //广播失效
+        this.loginSessionNearCache.publishInvalidate(user.getId());
+        //返回
+        return token;
+    }
+
+    /**
+     * 修改了已登录用户的信息,覆盖 token 对应的用户信息
+     *
+     * @param token token
+     * @param user  新的用户信息
+     * @param time  有效期(秒)
+     */
+    public void refresh(String token, User user, long time) {
+        //判空
+        if (StringUtils.isBlank(token) || user == null) {
+            //过
+            return;
+        }
+        //覆盖用户信息
+        this.baseRedisService.setAndTime(RedisKey.USER_LOGIN_AUTH_SET + token, FastJsonExtraUtils.toJSONString(user), time);
+        //广播失效
+        this.loginSessionNearCache.publishInvalidate(UserExtraUtils.cutToken(token).getUserId());
+    }
+
+    /**
+     * 登出
+     *
+     * @param token token
+     */
+    public void logout(String token) {
+        //判空
+        if (StringUtils.isBlank(token)) {
+            //过
+            return;
+        }
+        //用户id
+        String userId = UserExtraUtils.cutToken(token).getUserId();
+        //删除用户信息
+        this.baseRedisService.delete(RedisKey.USER_LOGIN_AUTH_SET + token);
+        //如果是该用户当前的有效token
+        if (StringUtils.isNotBlank(userId) && token.equals(this.baseRedisService.getString(RedisKey.USER_LOGIN_AUTH_SET_USER_USER_ID_WITH_TOKEN + userId))) {
+            //删除关系
+            this.baseRedisService.delete(RedisKey.USER_LOGIN_AUTH_SET_USER_USER_ID_WITH_TOKEN + userId);
+        }
+        //广播失效
+        this.loginSessionNearCache.publishInvalidate(userId);
+    }
+
+    /**
+     * 踢下线,清理该用户的登录信息
+     *
+     * @param userId 用户id
+     */
+    public void kick(String userId) {
+        //判空
+        if (StringUtils.isBlank(userId)) {
+            //过
+            return;
+        }
+        //当前有效token
+        String token = this.baseRedisService.getString(RedisKey.USER_LOGIN_AUTH_SET_USER_USER_ID_WITH_TOKEN + userId);
+        //删除关系
+        this.baseRedisService.delete(RedisKey.USER_LOGIN_AUTH_SET_USER_USER_ID_WITH_TOKEN + userId);
+        //如果有
+        if (StringUtils.isNotBlank(token)) {
+            //删除用户信息
+            this.baseRedisService.delete(RedisKey.USER_LOGIN_AUTH_SET + token);
+        }
+        //广播失效
+        this.loginSessionNearCache.publishInvalidate(userId);
+    }
+
+}
@@ -0,0 +1,359 @@
+package com.rock.micro.base.common.auth;
+
+import com.rock.micro.base.common.constant.RedisKey;
+import com.rock.micro.base.data.User;
+import com.rock.micro.base.util.UserExtraUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 登录信息 本地近端缓存
+ * -
+ * 按 用户id 缓存 有效token + 用户信息,命中时不再访问 Redis
+ * 失效:1.短TTL兜底 2.Redis 发布订阅,监听 显式失效频道 + 登录key的 keyspace 通知(需 Redis 开启 notify-keyspace-events,至少 Kg$x)
+ * 登录、登出、踢下线请走 {@link LoginSessionManager},会广播显式失效;启动时检查 keyspace 通知,未开启时告警(可配置自动开启)
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@Component
+public class LoginSessionNearCache implements MessageListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoginSessionNearCache.class);
+
+    //keyspace 通知频道前缀
+    private static final String KEYSPACE_CHANNEL_PREFIX = "__keyspace@";
+
+    //keyspace 通知配置项
+    private static final String KEYSPACE_EVENTS_CONFIG = "notify-keyspace-events";
+
+    //需要的 keyspace 通知类型:K-keyspace频道 g-del等通用命令 $-字符串命令 x-过期
+    private static final String KEYSPACE_EVENTS_REQUIRED = "Kg$x";
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    //是否开启
+    @Value("${micro.base.login.near-cache.enabled:true}")
+    private boolean enabled;
+
+    //最大缓存用户数
+    @Value("${micro.base.login.near-cache.max-size:10000}")
+    private int maxSize;
+
+    //缓存有效期(毫秒),发布订阅断开时的兜底
+    @Value("${micro.base.login.near-cache.ttl-millis:5000}")
+    private long ttlMillis;
+
+    //keyspace 通知未开启时,是否自动开启(需要有 CONFIG SET 权限)
+    @Value("${micro.base.login.near-cache.auto-enable-keyspace-events:false}")
+    private boolean autoEnableKeyspaceEvents;
+
+    //缓存 userId -> 登录信息
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    //失效版本号,每次失效+1,防止 读Redis期间 发生的失效 被旧数据覆盖
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * 注册失效监听
+     */
+    @PostConstruct
+    public void init() {
+        //如果未开启
+        if (this.enabled == false) {
+            //过
+            return;
+        }
+        //监听 显式失效频道 + 登录相关key的变化
+        this.redisMessageListenerContainer.addMessageListener(this, Arrays.asList(
+                new ChannelTopic(RedisKey.USER_LOGIN_AUTH_SET_INVALIDATE_CHANNEL),
+                new PatternTopic(KEYSPACE_CHANNEL_PREFIX + "*__:" + RedisKey.USER_LOGIN_AUTH_SET_USER_USER_ID_WITH_TOKEN + "*"),
+                new PatternTopic(KEYSPACE_CHANNEL_PREFIX + "*__:" + RedisKey.USER_LOGIN_AUTH_SET + "*")
+        ));
+        //检查 keyspace 通知
+        checkKeyspaceEvents();
+    }
+
+    /**
+     * 检查 Redis 是否开启了需要的 keyspace 通知,未开启时按配置自动开启或告警
+     * 未开启时,只有通过 {@link LoginSessionManager} 的写入会立即失效,其他方式直接改 Redis 要等 TTL 过期
+     */
+    private void checkKeyspaceEvents() {
+        try {
+            //当前配置
+            String flags = this.stringRedisTemplate.execute((RedisCallback<String>) connection -> {
+                Properties properties = connection.serverCommands().getConfig(KEYSPACE_EVENTS_CONFIG);
+                return properties == null ? "" : properties.getProperty(KEYSPACE_EVENTS_CONFIG, "");
+            });
+            //缺少的类型
+            String missing = missingKeyspaceEvents(flags);
+            //如果都有
+            if (missing.isEmpty()) {
+                //过
+                return;
+            }
+            //如果自动开启
+            if (this.autoEnableKeyspaceEvents) {
+                //合并后的配置
+                String merged = (flags == null ? "" : flags) + missing;
+                //开启
+                this.stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+                    connection.serverCommands().setConfig(KEYSPACE_EVENTS_CONFIG, merged);
+                    return null;
+                });
+                LOG.info("LoginSessionNearCache enabled {}:[{}]", KEYSPACE_EVENTS_CONFIG, merged);
+                //过
+                return;
+            }
+            //告警
+            LOG.warn("LoginSessionNearCache redis {}:[{}] missing:[{}], sessions changed outside LoginSessionManager stay cached up to {}ms",
+                    KEYSPACE_EVENTS_CONFIG, flags, missing, this.ttlMillis);
+        } catch (Exception e) {
+            //云 Redis 等可能禁用了 CONFIG 命令
+            LOG.warn("LoginSessionNearCache check {} error:[{}], sessions changed outside LoginSessionManager stay cached up to {}ms",
+                    KEYSPACE_EVENTS_CONFIG, e.getMessage(), this.ttlMillis);
+        }
+    }
+
+    /**
+     * 计算缺少的 keyspace 通知类型
+     *
+     * @param flags 当前配置
+     * @return 缺少的类型,都有时返回空字符串
+     */
+    private static String missingKeyspaceEvents(String flags) {
+        //判空
+        String current = flags == null ? "" : flags;
+        //A 是 g$lshzxe 的别名
+        boolean all = current.indexOf('A') >= 0;
+        //缺少的
+        StringBuilder missing = new StringBuilder();
+        for (char flag : KEYSPACE_EVENTS_REQUIRED.toCharArray()) {
+            //K 不在 A 里
+            if (current.indexOf(flag) < 0 && (all == false || flag == 'K')) {
+                missing.append(flag);
+            }
+        }
+        //返回
+        return missing.toString();
+    }
+
+    /**
+     * 当前失效版本号,读 Redis 前获取,放入缓存时传回
+     *
+     * @return
+     */
+    public long currentVersion() {
+        //实现
+        return this.version.get();
+    }
+
+    /**
+     * 获取缓存的用户信息
+     *
+     * @param userId 用户id
+     * @param token  token
+     * @return 未命中、已过期、token不匹配 均返回null;命中返回副本,可放心修改
+     */
+    public User get(String userId, String token) {
+        //如果未开启
+        if (this.enabled == false) {
+            //过
+            return null;
+        }
+        //获取
+        Entry entry = this.cache.get(userId);
+        //判空
+        if (entry == null) {
+            //过
+            return null;
+        }
+        //如果过期
+        if (entry.expireAt < System.currentTimeMillis()) {
+            //清理
+            this.cache.remove(userId, entry);
+            //过
+            return null;
+        }
+        //如果不是该用户的有效token
+        if (entry.token.equals(token) == false) {
+            //过
+            return null;
+        }
+        //返回副本,避免请求间互相影响
+        return copy(entry.user);
+    }
+
+    /**
+     * 放入缓存
+     *
+     * @param userId  用户id
+     * @param token   有效token
+     * @param user    已脱敏的用户信息
+     * @param version 读 Redis 前获取的版本号,期间发生过失效则不放入
+     */
+    public void put(String userId, String token, User user, long version) {
+        //判空
+        if (this.enabled == false || StringUtils.isAnyBlank(userId, token) || user == null) {
+            //过
+            return;
+        }
+        //如果满了
+        if (this.cache.size() >= this.maxSize) {
+            //先清理过期的
+            evictExpired();
+            //还是满的
+            if (this.cache.size() >= this.maxSize) {
+                //不放入
+                return;
+            }
+        }
+        //放入
+        this.cache.put(userId, new Entry(token, copy(user), System.currentTimeMillis() + this.ttlMillis));
+        //如果期间发生过失效
+        if (this.version.get() != version) {
+            //数据可能已旧,删除
+            this.cache.remove(userId);
+        }
+    }
+
+    /**
+     * 本地失效
+     *
+     * @param userId 用户id
+     */
+    public void invalidate(String userId) {
+        //版本+1
+        this.version.incrementAndGet();
+        //判空
+        if (StringUtils.isNotBlank(userId)) {
+            //删除
+            this.cache.remove(userId);
+        }
+    }
+
+    /**
+     * 广播失效,所有实例都会删除该用户的缓存(登录、登出、修改用户信息后调用)
+     *
+     * @param userId 用户id
+     */
+    public void publishInvalidate(String userId) {
+        //判空
+        if (StringUtils.isBlank(userId)) {
+            //过
+            return;
+        }
+        //本地先失效
+        invalidate(userId);
+        //广播
+        this.stringRedisTemplate.convertAndSend(RedisKey.USER_LOGIN_AUTH_SET_INVALIDATE_CHANNEL, userId);
+    }
+
+    /**
+     * 收到失效消息
+     *
+     * @param message 消息
+     * @param pattern 匹配的模式
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            //频道
+            String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+            //如果是显式失效
+            if (RedisKey.USER_LOGIN_AUTH_SET_INVALIDATE_CHANNEL.equals(channel)) {
+                //消息体就是用户id
+                invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+                //过
+                return;
+            }
+            //keyspace 通知,截取key
+            String key = channel.substring(channel.indexOf("__:") + 3);
+            //如果是 用户id 与 token 的关系
+            if (key.startsWith(RedisKey.USER_LOGIN_AUTH_SET_USER_USER_ID_WITH_TOKEN)) {
+                //失效
+                invalidate(key.substring(RedisKey.USER_LOGIN_AUTH_SET_USER_USER_ID_WITH_TOKEN.length()));
+            } else if (key.startsWith(RedisKey.USER_LOGIN_AUTH_SET)) {
+                //token 中带有用户id
+                invalidate(UserExtraUtils.cutToken(key.substring(RedisKey.USER_LOGIN_AUTH_SET.length())).getUserId());
+            }
+        } catch (Exception e) {
+            //解析失败时全部失效,宁可多查一次Redis
+            this.version.incrementAndGet();
+            this.cache.clear();
+            LOG.warn("LoginSessionNearCache onMessage error:[{}]", e.getMessage());
+        }
+    }
+
+    /**
+     * 清理过期的缓存
+     */
+    private void evictExpired() {
+        //当前时间
+        long now = System.currentTimeMillis();
+        //清理
+        this.cache.entrySet().removeIf(entry -> entry.getValue().expireAt < now);
+    }
+
+    /**
+     * 复制用户信息
+     *
+     * @param user 用户
+     * @return
+     */
+    private User copy(User user) {
+        //初始化
+        User copy = new User();
+        //复制
+        BeanUtils.copyProperties(user, copy);
+        //返回
+        return copy;
+    }
+
+    /**
+     * 缓存内容
+     */
+    private static class Entry {
+
+        //有效token
+        private final String token;
+
+        //用户信息
+        private final User user;
+
+        //过期时间
+        private final long expireAt;
+
+        private Entry(String token, User user, long expireAt) {
+            this.token = token;
+            this.user = user;
+            this.expireAt = expireAt;
+        }
+
+    }
+
+}
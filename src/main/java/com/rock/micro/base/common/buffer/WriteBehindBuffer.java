@@ -0,0 +1,380 @@
+package com.rock.micro.base.common.buffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 异步写缓冲(write-behind)
+ * -
+ * 有界无锁环形队列,业务线程只负责入队,由后台守护线程按 数量 或 时间 触发批量刷出
+ * 队列满时按 {@link OverflowPolicy} 处理,关闭时会把剩余数据全部刷出
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+public class WriteBehindBuffer<E> implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    /**
+     * 队列满时的处理策略
+     */
+    public enum OverflowPolicy {
+        //直接丢弃新数据
+        DROP,
+        //超过一半容量后按比例采样写入,满了丢弃
+        SAMPLE,
+        //阻塞等待,超时后丢弃
+        BLOCK
+    }
+
+    /**
+     * 环形队列
+     */
+
+    //容量(2的幂)
+    private final int capacity;
+    //下标掩码
+    private final int mask;
+    //槽位
+    private final AtomicReferenceArray<E> slots;
+    //槽位序号,用来判断槽位可写/可读
+    private final AtomicLongArray sequences;
+    //写位置
+    private final AtomicLong tail = new AtomicLong();
+    //读位置
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * 配置
+     */
+
+    //名称,用于线程名、日志
+    private final String name;
+    //每批最大数量,同时作为触发刷出的数量
+    private final int batchSize;
+    //最长刷出间隔(毫秒)
+    private final long flushIntervalMillis;
+    //溢出策略
+    private final OverflowPolicy overflowPolicy;
+    //采样比例,每N条写入1条
+    private final int sampleRate;
+    //阻塞最长等待(毫秒)
+    private final long blockTimeoutMillis;
+    //刷出实现
+    private final Consumer<List<E>> flusher;
+
+    /**
+     * 状态
+     */
+
+    //刷出线程
+    private final Thread flushThread;
+    //是否已关闭
+    private volatile boolean closed = false;
+    //正在入队的生产者数量,关闭后等它们结束再做最后一次刷出
+    private final AtomicInteger activeProducers = new AtomicInteger();
+    //采样计数
+    private final AtomicLong sampleCounter = new AtomicLong();
+    //丢弃数量
+    private final AtomicLong droppedCount = new AtomicLong();
+    //刷出失败数量
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * 初始化并启动刷出线程
+     *
+     * @param name                名称
+     * @param capacity            容量,向上取2的幂
+     * @param batchSize           每批最大数量
+     * @param flushIntervalMillis 最长刷出间隔(毫秒)
+     * @param overflowPolicy      溢出策略
+     * @param sampleRate          采样比例,每N条写入1条(仅 SAMPLE 有效)
+     * @param blockTimeoutMillis  阻塞最长等待(仅 BLOCK 有效)
+     * @param flusher             刷出实现
+     */
+    public WriteBehindBuffer(String name, int capacity, int batchSize, long flushIntervalMillis,
+                             OverflowPolicy overflowPolicy, int sampleRate, long blockTimeoutMillis, Consumer<List<E>> flusher) {
+        //容量向上取2的幂
+        int size = 1;
+        while (size < Math.max(capacity, 2)) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        //槽位i初始可写序号为i
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+        //配置
+        this.name = name;
+        this.batchSize = Math.max(batchSize, 1);
+        this.flushIntervalMillis = Math.max(flushIntervalMillis, 10L);
+        this.overflowPolicy = overflowPolicy == null ? OverflowPolicy.DROP : overflowPolicy;
+        this.sampleRate = Math.max(sampleRate, 1);
+        this.blockTimeoutMillis = Math.max(blockTimeoutMillis, 0L);
+        this.flusher = flusher;
+        //启动刷出线程
+        this.flushThread = new Thread(this::runFlushLoop, "write-behind-" + name);
+        this.flushThread.setDaemon(true);
+        this.flushThread.start();
+    }
+
+    /**
+     * 入队,不会阻塞业务线程(BLOCK 策略除外)
+     *
+     * @param element 数据
+     * @return 是否入队成功,失败代表被丢弃
+     */
+    public boolean offer(E element) {
+        //判空
+        if (element == null) {
+            //过
+            return false;
+        }
+        //先登记再检查关闭标记,保证关闭后的最后一次刷出不会漏掉已看到未关闭的生产者
+        this.activeProducers.incrementAndGet();
+        try {
+            //实现
+            return doOffer(element);
+        } finally {
+            //注销
+            this.activeProducers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 入队 实现
+     *
+     * @param element 数据
+     * @return 是否入队成功,失败代表被丢弃
+     */
+    private boolean doOffer(E element) {
+        //如果已关闭
+        if (this.closed) {
+            //丢弃
+            this.droppedCount.incrementAndGet();
+            return false;
+        }
+        //采样策略,超过一半容量后按比例写入
+        if (this.overflowPolicy == OverflowPolicy.SAMPLE && size() >= (this.capacity >> 1)
+                && this.sampleCounter.incrementAndGet() % this.sampleRate != 0) {
+            //丢弃
+            this.droppedCount.incrementAndGet();
+            return false;
+        }
+        //入队
+        boolean success = tryEnqueue(element);
+        //如果满了且是阻塞策略
+        if (success == false && this.overflowPolicy == OverflowPolicy.BLOCK) {
+            //截止时间
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.blockTimeoutMillis);
+            //等待空位
+            while (success == false && this.closed == false && System.nanoTime() < deadline) {
+                //唤醒刷出线程腾位置
+                LockSupport.unpark(this.flushThread);
+                //稍等
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1L));
+                //重试
+                success = tryEnqueue(element);
+            }
+        }
+        //如果失败
+        if (success == false) {
+            //丢弃
+            this.droppedCount.incrementAndGet();
+            return false;
+        }
+        //如果够一批了
+        if (size() >= this.batchSize) {
+            //唤醒刷出线程
+            LockSupport.unpark(this.flushThread);
+        }
+        //成功
+        return true;
+    }
+
+    /**
+     * 当前队列中的数量(近似值)
+     *
+     * @return
+     */
+    public int size() {
+        //实现
+        return (int) Math.max(this.tail.get() - this.head.get(), 0L);
+    }
+
+    /**
+     * 累计丢弃数量
+     *
+     * @return
+     */
+    public long getDroppedCount() {
+        //实现
+        return this.droppedCount.get();
+    }
+
+    /**
+     * 累计刷出失败数量
+     *
+     * @return
+     */
+    public long getFailedCount() {
+        //实现
+        return this.failedCount.get();
+    }
+
+    /**
+     * 关闭,停止接收新数据,并把剩余数据全部刷出
+     */
+    @Override
+    public void close() {
+        //如果已关闭
+        if (this.closed) {
+            //过
+            return;
+        }
+        //标记关闭
+        this.closed = true;
+        //唤醒刷出线程
+        LockSupport.unpark(this.flushThread);
+        try {
+            //等待刷出线程结束
+            this.flushThread.join(TimeUnit.SECONDS.toMillis(30L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //日志
+        LOG.info("WriteBehindBuffer [{}] closed, remain:[{}] dropped:[{}] failed:[{}]", this.name, size(), getDroppedCount(), getFailedCount());
+    }
+
+    /**
+     * 刷出线程循环
+     */
+    private void runFlushLoop() {
+        //循环直到关闭
+        while (this.closed == false) {
+            //不够一批时,等待到下一个刷出时间或被唤醒
+            if (size() < this.batchSize) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(this.flushIntervalMillis));
+            }
+            //刷出一轮
+            drain();
+        }
+        //等待正在入队的生产者结束(之后的生产者都会看到已关闭)
+        while (this.activeProducers.get() > 0) {
+            Thread.yield();
+        }
+        //关闭后刷出剩余所有
+        drain();
+    }
+
+    /**
+     * 刷出队列中当前所有数据,每批最多 batchSize 条
+     */
+    private void drain() {
+        //循环
+        while (true) {
+            //本批
+            List<E> batch = new ArrayList<>(Math.min(size(), this.batchSize));
+            //取出
+            E element;
+            while (batch.size() < this.batchSize && (element = tryDequeue()) != null) {
+                batch.add(element);
+            }
+            //如果没有了
+            if (batch.isEmpty()) {
+                //过
+                return;
+            }
+            try {
+                //刷出
+                this.flusher.accept(batch);
+            } catch (Exception e) {
+                //失败不重试,避免阻塞后续数据
+                this.failedCount.addAndGet(batch.size());
+                LOG.error("WriteBehindBuffer [{}] flush size:[{}] error", this.name, batch.size(), e);
+            }
+        }
+    }
+
+    /**
+     * 无锁入队(多生产者)
+     *
+     * @param element 数据
+     * @return 满了返回false
+     */
+    private boolean tryEnqueue(E element) {
+        //循环抢占写位置
+        while (true) {
+            //当前写位置
+            long position = this.tail.get();
+            //槽位
+            int index = (int) (position & this.mask);
+            //槽位序号与写位置的差
+            long diff = this.sequences.get(index) - position;
+            //槽位可写
+            if (diff == 0L) {
+                //抢占
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    //写入
+                    this.slots.set(index, element);
+                    //发布,标记可读
+                    this.sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (diff < 0L) {
+                //满了
+                return false;
+            }
+            //被其他线程抢了,重试
+        }
+    }
+
+    /**
+     * 无锁出队(只有刷出线程会调用)
+     *
+     * @return 空了返回null
+     */
+    private E tryDequeue() {
+        //循环
+        while (true) {
+            //当前读位置
+            long position = this.head.get();
+            //槽位
+            int index = (int) (position & this.mask);
+            //槽位序号与读位置的差
+            long diff = this.sequences.get(index) - (position + 1);
+            //槽位可读
+            if (diff == 0L) {
+                //抢占
+                if (this.head.compareAndSet(position, position + 1)) {
+                    //读取
+                    E element = this.slots.get(index);
+                    //清空,便于回收
+                    this.slots.set(index, null);
+                    //释放,标记下一圈可写
+                    this.sequences.set(index, position + this.capacity);
+                    return element;
+                }
+            } else if (diff < 0L) {
+                //空了
+                return null;
+            }
+            //重试
+        }
+    }
+
+}
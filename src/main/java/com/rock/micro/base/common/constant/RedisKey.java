@@ -15,6 +15,9 @@ public class RedisKey {
     //demo mq 
     public final static String DEMO_MQ_ONE = "DEMO:MQ:ONE";
 
+    //用户登录信息 本地缓存失效 发布订阅频道,消息体为用户id
+    public final static String USER_LOGIN_AUTH_SET_INVALIDATE_CHANNEL = "USER:USER:LOGIN_AUTH_SET:INVALIDATE";
+
     /**
      * 非全称key(key本身不完整,后面需要如用户id等其他value的key)
      */
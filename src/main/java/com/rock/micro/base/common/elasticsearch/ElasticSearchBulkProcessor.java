@@ -0,0 +1,491 @@
+package com.rock.micro.base.common.elasticsearch;
+
+import com.rock.micro.base.common.api.MyException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.rest.RestStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * elastic search 后台批量写入
+ * -
+ * index/update/delete 先进入缓冲,按 数量、字节、时间间隔 任一条件触发批量提交
+ * 并发提交数有上限,达到上限时 add 会阻塞调用方(背压),整批被拒绝时按指数退避重试
+ * 单条失败如果是 429、5xx 等可重试错误,按指数退避重新加入,超过最大次数后记录日志放弃
+ * 同一文档(索引+id)保持写入顺序:重试前如果该文档之后已有整文档写入(覆盖、删除),旧请求不再重试,避免旧版本覆盖新版本;
+ * 之后只有局部更新时,旧请求照常重试,并把之后的局部更新按顺序再写一次,保证旧请求不会覆盖更新的字段
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@Component
+public class ElasticSearchBulkProcessor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticSearchBulkProcessor.class);
+
+    @Autowired
+    private RestHighLevelClient restHighLevelClient;
+
+    //每批最大条数
+    @Value("${micro.base.elasticsearch.bulk.actions:1000}")
+    private int bulkActions;
+
+    //每批最大字节(MB)
+    @Value("${micro.base.elasticsearch.bulk.size-mb:5}")
+    private long bulkSizeMb;
+
+    //最长提交间隔(毫秒)
+    @Value("${micro.base.elasticsearch.bulk.flush-interval-millis:1000}")
+    private long flushIntervalMillis;
+
+    //最大并发提交数,0为同步提交
+    @Value("${micro.base.elasticsearch.bulk.concurrent-requests:2}")
+    private int concurrentRequests;
+
+    //单条失败最大重试次数
+    @Value("${micro.base.elasticsearch.bulk.max-retries:3}")
+    private int maxRetries;
+
+    //重试初始等待(毫秒),每次翻倍
+    @Value("${micro.base.elasticsearch.bulk.retry-initial-delay-millis:100}")
+    private long retryInitialDelayMillis;
+
+    //批量处理器
+    private BulkProcessor bulkProcessor;
+
+    //单条重试调度
+    private ScheduledExecutorService retryScheduler;
+
+    //单条请求 -> 已重试次数
+    private final Map<DocWriteRequest<?>, Integer> retryCountMap = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    //文档(索引+id) -> 未结束的写入,按加入顺序排列(已结束但前面还有未结束的暂时保留,重试时用来判断之后的写入),读写需锁住本对象
+    private final Map<String, List<PendingWrite>> pendingWriteMap = new HashMap<>();
+
+    //统计-成功数
+    private final AtomicLong successCount = new AtomicLong();
+    //统计-最终失败数
+    private final AtomicLong failedCount = new AtomicLong();
+    //统计-之后已有整文档写入而放弃重试数
+    private final AtomicLong supersededCount = new AtomicLong();
+
+    /**
+     * 初始化
+     */
+    @PostConstruct
+    public void init() {
+        //重试调度
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "es-bulk-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        //批量处理器
+        this.bulkProcessor = BulkProcessor.builder(
+                (request, listener) -> this.restHighLevelClient.bulkAsync(request, RequestOptions.DEFAULT, listener),
+                new Listener())
+                .setBulkActions(this.bulkActions)
+                .setBulkSize(new ByteSizeValue(this.bulkSizeMb, ByteSizeUnit.MB))
+                .setFlushInterval(TimeValue.timeValueMillis(this.flushIntervalMillis))
+                .setConcurrentRequests(this.concurrentRequests)
+                .setBackoffPolicy(BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(this.retryInitialDelayMillis), this.maxRetries))
+                .build();
+    }
+
+    /**
+     * 关闭,提交剩余的所有请求
+     */
+    @PreDestroy
+    public void close() {
+        try {
+            //等待剩余请求提交完成
+            this.bulkProcessor.awaitClose(30L, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.retryScheduler.shutdownNow();
+        }
+        LOG.info("ElasticSearchBulkProcessor closed, success:[{}] failed:[{}] superseded:[{}]", getSuccessCount(), getFailedCount(), getSupersededCount());
+    }
+
+    /**
+     * 新增或覆盖
+     *
+     * @param index 索引名
+     * @param id    id
+     * @param json  文档json
+     */
+    public void index(String index, String id, String json) {
+        //实现
+        add(new IndexRequest(index).id(id).source(json, XContentType.JSON));
+    }
+
+    /**
+     * 局部更新
+     *
+     * @param index  索引名
+     * @param id     id
+     * @param json   要更新的字段json
+     * @param upsert 不存在时是否创建
+     */
+    public void update(String index, String id, String json, boolean upsert) {
+        //实现
+        add(new UpdateRequest(index, id).doc(json, XContentType.JSON).docAsUpsert(upsert));
+    }
+
+    /**
+     * 删除
+     *
+     * @param index 索引名
+     * @param id    id
+     */
+    public void delete(String index, String id) {
+        //实现
+        add(new DeleteRequest(index, id));
+    }
+
+    /**
+     * 立即提交缓冲中的请求
+     */
+    public void flush() {
+        //实现
+        this.bulkProcessor.flush();
+    }
+
+    /**
+     * 同步批量提交,不经过缓冲,返回前已确认写入(用于需要确认进度的场景,如同步任务保存 resume token 前)
+     * 单条失败如果可重试,按指数退避重试,超过最大次数后计入失败
+     *
+     * @param requestList 请求列表
+     * @return 最终失败的请求(如 mapping 冲突),由调用方决定如何处理
+     */
+    public List<DocWriteRequest<?>> bulkSync(List<DocWriteRequest<?>> requestList) {
+        //待提交
+        List<DocWriteRequest<?>> pendingList = new ArrayList<>(requestList);
+        //最终失败的
+        List<DocWriteRequest<?>> failedList = new ArrayList<>();
+        //循环
+        for (int retry = 0; pendingList.isEmpty() == false; retry++) {
+            //组装
+            BulkRequest bulkRequest = new BulkRequest();
+            pendingList.forEach(bulkRequest::add);
+            //提交
+            BulkResponse response;
+            try {
+                response = this.restHighLevelClient.bulk(bulkRequest, RequestOptions.DEFAULT);
+            } catch (IOException e) {
+                throw new MyException("ES同步批量提交失败:" + e.getMessage());
+            }
+            //需要重试的
+            List<DocWriteRequest<?>> retryList = new ArrayList<>();
+            //循环每条结果
+            for (BulkItemResponse item : response.getItems()) {
+                //如果成功
+                if (item.isFailed() == false) {
+                    this.successCount.incrementAndGet();
+                    continue;
+                }
+                //如果可重试
+                if (isRetryable(item.status()) && retry < this.maxRetries) {
+                    retryList.add(pendingList.get(item.getItemId()));
+                    continue;
+                }
+                //放弃
+                failedList.add(pendingList.get(item.getItemId()));
+                this.failedCount.incrementAndGet();
+                LOG.error("ElasticSearchBulkProcessor bulkSync item failed index:[{}] id:[{}] status:[{}] message:[{}]",
+                        item.getIndex(), item.getId(), item.status(), item.getFailureMessage());
+            }
+            //如果需要重试
+            if (retryList.isEmpty() == false) {
+                try {
+                    //指数退避
+                    Thread.sleep(this.retryInitialDelayMillis << retry);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failedList.addAll(retryList);
+                    break;
+                }
+            }
+            //下一轮
+            pendingList = retryList;
+        }
+        //返回
+        return failedList;
+    }
+
+    /**
+     * 累计成功数
+     *
+     * @return
+     */
+    public long getSuccessCount() {
+        return this.successCount.get();
+    }
+
+    /**
+     * 累计最终失败数
+     *
+     * @return
+     */
+    public long getFailedCount() {
+        return this.failedCount.get();
+    }
+
+    /**
+     * 累计因之后已有整文档写入(覆盖、删除)而放弃重试的数量
+     *
+     * @return
+     */
+    public long getSupersededCount() {
+        return this.supersededCount.get();
+    }
+
+    /**
+     * 加入缓冲,并发提交数达到上限时阻塞,记录为该文档最新一次写入
+     *
+     * @param request 请求
+     */
+    private void add(DocWriteRequest<?> request) {
+        //记录
+        synchronized (this.pendingWriteMap) {
+            this.pendingWriteMap.computeIfAbsent(documentKey(request), key -> new ArrayList<>()).add(new PendingWrite(request));
+        }
+        //实现
+        this.bulkProcessor.add(request);
+    }
+
+    /**
+     * 重新加入缓冲(单条重试)
+     * -
+     * 该文档之后已有整文档写入(覆盖、删除)时放弃;之后只有局部更新时,本请求重试后,把之后的局部更新按顺序再写一次
+     *
+     * @param request 请求
+     */
+    private void retry(DocWriteRequest<?> request) {
+        //该文档之后的写入
+        List<DocWriteRequest<?>> newerList = findNewer(request);
+        //如果之后有整文档写入,本请求的结果一定会被覆盖
+        if (newerList.stream().anyMatch(newer -> newer instanceof UpdateRequest == false)) {
+            //放弃
+            this.retryCountMap.remove(request);
+            release(request);
+            this.supersededCount.incrementAndGet();
+            LOG.debug("ElasticSearchBulkProcessor retry skipped, newer full write queued index:[{}] id:[{}]", request.index(), request.id());
+            return;
+        }
+        //保持原位置重新加入
+        this.bulkProcessor.add(request);
+        //之后的局部更新可能已先于本请求写入,按顺序再写一次,保证更新的字段不被本请求覆盖(局部更新重复写入结果不变)
+        for (DocWriteRequest<?> newer : newerList) {
+            //复制一份,作为新的写入
+            add(copyUpdate((UpdateRequest) newer));
+        }
+    }
+
+    /**
+     * 该请求之后,同一文档加入的写入(按加入顺序)
+     *
+     * @param request 请求
+     * @return
+     */
+    private List<DocWriteRequest<?>> findNewer(DocWriteRequest<?> request) {
+        //结果
+        List<DocWriteRequest<?>> newerList = new ArrayList<>();
+        synchronized (this.pendingWriteMap) {
+            //该文档的写入
+            List<PendingWrite> writeList = this.pendingWriteMap.getOrDefault(documentKey(request), Collections.emptyList());
+            //是否已经过本请求
+            boolean found = false;
+            //循环
+            for (PendingWrite write : writeList) {
+                //之后的写入
+                if (found) {
+                    newerList.add(write.request);
+                }
+                //找到本请求
+                if (write.request == request) {
+                    found = true;
+                }
+            }
+        }
+        //返回
+        return newerList;
+    }
+
+    /**
+     * 复制局部更新请求
+     *
+     * @param update 局部更新请求
+     * @return
+     */
+    private UpdateRequest copyUpdate(UpdateRequest update) {
+        //实现
+        return new UpdateRequest(update.index(), update.id())
+                .doc(update.doc().source(), update.doc().getContentType())
+                .docAsUpsert(update.docAsUpsert());
+    }
+
+    /**
+     * 请求结束(成功、放弃),标记结束,并清理该文档开头已结束的记录
+     *
+     * @param request 请求
+     */
+    private void release(DocWriteRequest<?> request) {
+        synchronized (this.pendingWriteMap) {
+            //文档唯一标识
+            String documentKey = documentKey(request);
+            //该文档的写入
+            List<PendingWrite> writeList = this.pendingWriteMap.get(documentKey);
+            //判空
+            if (writeList == null) {
+                return;
+            }
+            //标记结束
+            writeList.stream().filter(write -> write.request == request).forEach(write -> write.released = true);
+            //开头已结束的不会再被用到
+            while (writeList.isEmpty() == false && writeList.get(0).released) {
+                writeList.remove(0);
+            }
+            //全部结束
+            if (writeList.isEmpty()) {
+                this.pendingWriteMap.remove(documentKey);
+            }
+        }
+    }
+
+    /**
+     * 文档唯一标识
+     *
+     * @param request 请求
+     * @return 索引+id
+     */
+    private String documentKey(DocWriteRequest<?> request) {
+        //实现
+        return request.index() + "/" + request.id();
+    }
+
+    /**
+     * 单条失败是否可重试
+     *
+     * @param status 状态
+     * @return
+     */
+    private boolean isRetryable(RestStatus status) {
+        //429 或 5xx
+        return status == RestStatus.TOO_MANY_REQUESTS || status.getStatus() >= 500;
+    }
+
+    /**
+     * 处理一批的结果
+     *
+     * @param request  请求
+     * @param response 响应
+     */
+    private void handleResponse(BulkRequest request, BulkResponse response) {
+        //循环每条结果
+        for (BulkItemResponse item : response.getItems()) {
+            //对应的请求
+            DocWriteRequest<?> itemRequest = request.requests().get(item.getItemId());
+            //如果成功
+            if (item.isFailed() == false) {
+                this.retryCountMap.remove(itemRequest);
+                release(itemRequest);
+                this.successCount.incrementAndGet();
+                continue;
+            }
+            //已重试次数
+            int retryCount = this.retryCountMap.getOrDefault(itemRequest, 0);
+            //如果可重试
+            if (isRetryable(item.status()) && retryCount < this.maxRetries) {
+                //记录次数
+                this.retryCountMap.put(itemRequest, retryCount + 1);
+                //指数退避后重新加入(届时已有更新写入则放弃)
+                this.retryScheduler.schedule(() -> retry(itemRequest), this.retryInitialDelayMillis << retryCount, TimeUnit.MILLISECONDS);
+                continue;
+            }
+            //放弃
+            this.retryCountMap.remove(itemRequest);
+            release(itemRequest);
+            this.failedCount.incrementAndGet();
+            LOG.error("ElasticSearchBulkProcessor item failed index:[{}] id:[{}] status:[{}] retry:[{}] message:[{}]",
+                    item.getIndex(), item.getId(), item.status(), retryCount, item.getFailureMessage());
+        }
+    }
+
+    /**
+     * 未结束的写入
+     */
+    private static class PendingWrite {
+
+        //请求
+        private final DocWriteRequest<?> request;
+
+        //是否已结束(成功、放弃)
+        private boolean released = false;
+
+        private PendingWrite(DocWriteRequest<?> request) {
+            this.request = request;
+        }
+
+    }
+
+    /**
+     * 批量提交监听
+     */
+    private class Listener implements BulkProcessor.Listener {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            //处理每条结果
+            handleResponse(request, response);
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            //整批失败(退避重试后仍失败)
+            failedCount.addAndGet(request.numberOfActions());
+            //清理重试记录、写入记录
+            request.requests().forEach(retryCountMap::remove);
+            request.requests().forEach(ElasticSearchBulkProcessor.this::release);
+            LOG.error("ElasticSearchBulkProcessor bulk failed size:[{}]", request.numberOfActions(), failure);
+        }
+
+    }
+
+}
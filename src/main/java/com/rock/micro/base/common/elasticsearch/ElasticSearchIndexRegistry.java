@@ -0,0 +1,180 @@
+package com.rock.micro.base.common.elasticsearch;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * elastic search 索引元数据注册表
+ * -
+ * 每个实体类只解析一次索引信息,之后全部复用,避免每次查询、更新都请求一次索引 settings
+ * 查询使用实体声明的索引名(可以是别名,由ES服务端解析),写入使用解析出的真实索引名
+ * 索引不存在的结果只缓存一小段时间,避免索引创建前每次调用都请求一次,又能在索引创建后很快生效
+ * 索引重建、别名切换后调用 {@link #refresh(Class)} 或 {@link #refreshAll()}
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@Component
+public class ElasticSearchIndexRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticSearchIndexRegistry.class);
+
+    //索引不存在时的索引名
+    private static final String NONE_INDEX_NAME = "none";
+
+    @Autowired
+    private ElasticsearchRestTemplate elasticsearchRestTemplate;
+
+    //索引不存在的结果缓存时间(毫秒),小于1不缓存
+    @Value("${micro.base.elasticsearch.index-registry.missing-ttl-millis:5000}")
+    private long missingTtlMillis;
+
+    //按实体类缓存
+    private final Map<Class<?>, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 获取实体类的索引元数据,首次会请求一次索引 settings,之后直接返回缓存
+     * 索引不存在时,结果只缓存 missing-ttl-millis,过期后重新请求
+     *
+     * @param clazz 实体类
+     * @return
+     */
+    public IndexMetadata get(Class<?> clazz) {
+        //缓存
+        CacheEntry entry = this.cache.get(clazz);
+        //如果命中且未过期
+        if (entry != null && entry.expireAt > System.currentTimeMillis()) {
+            //返回
+            return entry.metadata;
+        }
+        //解析
+        IndexMetadata metadata = resolve(clazz);
+        //如果索引存在
+        if (metadata.isExists()) {
+            //永久缓存,直到刷新
+            this.cache.put(clazz, new CacheEntry(metadata, Long.MAX_VALUE));
+        } else if (this.missingTtlMillis > 0L) {
+            //索引不存在,短暂缓存,等索引创建后再解析
+            this.cache.put(clazz, new CacheEntry(metadata, System.currentTimeMillis() + this.missingTtlMillis));
+        }
+        //返回
+        return metadata;
+    }
+
+    /**
+     * 查询用的索引(实体声明的索引名或别名),只读取实体映射,不需要网络请求
+     *
+     * @param clazz 实体类
+     * @return
+     */
+    public IndexCoordinates getSearchIndex(Class<?> clazz) {
+        //缓存
+        CacheEntry entry = this.cache.get(clazz);
+        //如果已解析过
+        if (entry != null) {
+            //返回
+            return entry.metadata.getSearchIndex();
+        }
+        //实体声明的索引名,本地解析
+        return this.elasticsearchRestTemplate.getIndexCoordinatesFor(clazz);
+    }
+
+    /**
+     * 写入用的索引(解析出的真实索引名)
+     *
+     * @param clazz 实体类
+     * @return
+     */
+    public IndexCoordinates getWriteIndex(Class<?> clazz) {
+        //实现
+        return get(clazz).getWriteIndex();
+    }
+
+    /**
+     * 刷新某个实体类的索引元数据(索引重建、别名切换后调用)
+     *
+     * @param clazz 实体类
+     */
+    public void refresh(Class<?> clazz) {
+        //删除缓存,下次使用时重新解析
+        this.cache.remove(clazz);
+    }
+
+    /**
+     * 刷新所有实体类的索引元数据
+     */
+    public void refreshAll() {
+        //实现
+        this.cache.clear();
+    }
+
+    /**
+     * 解析实体类的索引元数据
+     *
+     * @param clazz 实体类
+     * @return
+     */
+    private IndexMetadata resolve(Class<?> clazz) {
+        //实体声明的索引名(可能是别名)
+        IndexCoordinates searchIndex = this.elasticsearchRestTemplate.getIndexCoordinatesFor(clazz);
+        //获取索引settings,别名会解析为真实索引
+        Map<String, Object> settings = this.elasticsearchRestTemplate.indexOps(clazz).getSettings();
+        //获取索引名
+        String indexName = settings.getOrDefault("index.provided_name", NONE_INDEX_NAME).toString();
+        //日志
+        LOG.info("ElasticSearchIndexRegistry resolve class:[{}] search:[{}] write:[{}]", clazz.getName(), searchIndex.getIndexName(), indexName);
+        //返回
+        return new IndexMetadata(searchIndex, IndexCoordinates.of(indexName), NONE_INDEX_NAME.equals(indexName) == false);
+    }
+
+    /**
+     * 缓存项
+     */
+    private static class CacheEntry {
+
+        //索引元数据
+        private final IndexMetadata metadata;
+
+        //过期时间
+        private final long expireAt;
+
+        private CacheEntry(IndexMetadata metadata, long expireAt) {
+            this.metadata = metadata;
+            this.expireAt = expireAt;
+        }
+
+    }
+
+    /**
+     * 索引元数据
+     */
+    @Getter
+    public static class IndexMetadata {
+
+        //查询用的索引
+        private final IndexCoordinates searchIndex;
+
+        //写入用的索引
+        private final IndexCoordinates writeIndex;
+
+        //索引是否存在
+        private final boolean exists;
+
+        public IndexMetadata(IndexCoordinates searchIndex, IndexCoordinates writeIndex, boolean exists) {
+            this.searchIndex = searchIndex;
+            this.writeIndex = writeIndex;
+            this.exists = exists;
+        }
+
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.rock.micro.base.common.elasticsearch;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.rock.micro.base.db.elasticsearch.BaseElasticSearchService;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * elastic search 查询结果缓存(主要用于看板类的聚合查询)
+ * -
+ * 按 实体类 + 查询/聚合/字段/分页/排序 的规范化哈希缓存,有过期时间和数量上限(LRU淘汰)
+ * 每个实体类有一个版本号,通过 BaseElasticSearchServiceImpl 写入时版本号+1,旧版本的缓存不再命中
+ * 注意:ES 写入到可见有刷新间隔,批量写入也是异步的,失效只能尽量及时,最终由过期时间兜底
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@Component
+public class ElasticSearchQueryCache {
+
+    //是否开启(关闭时直接查询)
+    @Value("${micro.base.elasticsearch.query-cache.enabled:true}")
+    private boolean enabled;
+
+    //过期时间(毫秒)
+    @Value("${micro.base.elasticsearch.query-cache.ttl-millis:60000}")
+    private long ttlMillis;
+
+    //最大缓存数量
+    @Value("${micro.base.elasticsearch.query-cache.max-size:1000}")
+    private int maxSize;
+
+    //缓存
+    private LRUCache<String, BaseElasticSearchService.RollPageResult<?>> cache;
+
+    //实体类 -> 版本号
+    private final Map<Class<?>, AtomicLong> generationMap = new ConcurrentHashMap<>();
+
+    /**
+     * 初始化
+     */
+    @PostConstruct
+    public void init() {
+        //实现
+        this.cache = CacheUtil.newLRUCache(this.maxSize, this.ttlMillis);
+    }
+
+    /**
+     * 获取缓存,未命中时查询并缓存
+     * 返回的是结果的浅拷贝(列表可修改),列表中的实体和聚合内容是共享的,不要修改
+     *
+     * @param clazz                      实体类
+     * @param query                      条件对象
+     * @param abstractAggregationBuilder 聚合条件(可以为空)
+     * @param fields                     限制返回字段(可以为空)
+     * @param pageNum                    分页-页码(可以为空)
+     * @param pageSize                   分页-数量(可以为空)
+     * @param sort                       限制排序(可以为空)
+     * @param loader                     未命中时的查询
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> BaseElasticSearchService.RollPageResult<T> get(Class<?> clazz, QueryBuilder query, AbstractAggregationBuilder abstractAggregationBuilder, String[] fields,
+                                                              Integer pageNum, Integer pageSize, SortBuilder sort, Supplier<BaseElasticSearchService.RollPageResult<T>> loader) {
+        //如果未开启
+        if (this.enabled == false) {
+            //直接查询
+            return loader.get();
+        }
+        //查询前的版本号,查询期间有写入时,结果存在旧版本下,不会被命中
+        long generation = getGeneration(clazz).get();
+        //缓存key
+        String key = buildKey(clazz, generation, query, abstractAggregationBuilder, fields, pageNum, pageSize, sort);
+        //缓存
+        BaseElasticSearchService.RollPageResult<T> result = (BaseElasticSearchService.RollPageResult<T>) this.cache.get(key, false);
+        //如果未命中
+        if (result == null) {
+            //查询
+            result = loader.get();
+            //缓存
+            this.cache.put(key, result);
+        }
+        //浅拷贝
+        return copy(result);
+    }
+
+    /**
+     * 使某个实体类的缓存失效(写入后调用)
+     *
+     * @param clazz 实体类
+     */
+    public void invalidate(Class<?> clazz) {
+        //版本号+1,旧缓存不再命中,由LRU淘汰
+        getGeneration(clazz).incrementAndGet();
+    }
+
+    /**
+     * 清空所有缓存
+     */
+    public void invalidateAll() {
+        //版本号+1
+        this.generationMap.values().forEach(AtomicLong::incrementAndGet);
+        //清空
+        this.cache.clear();
+    }
+
+    /**
+     * 获取实体类的版本号
+     *
+     * @param clazz 实体类
+     * @return
+     */
+    private AtomicLong getGeneration(Class<?> clazz) {
+        //实现
+        return this.generationMap.computeIfAbsent(clazz, k -> new AtomicLong());
+    }
+
+    /**
+     * 组装缓存key,查询、聚合、排序都按 ES 的 json 序列化,内容相同则 json 相同
+     *
+     * @return
+     */
+    private String buildKey(Class<?> clazz, long generation, QueryBuilder query, AbstractAggregationBuilder abstractAggregationBuilder, String[] fields,
+                            Integer pageNum, Integer pageSize, SortBuilder sort) {
+        //规范化内容
+        StringBuilder canonical = new StringBuilder();
+        canonical.append("query=").append(query == null ? "" : query.toString());
+        canonical.append("|agg=").append(abstractAggregationBuilder == null ? "" : abstractAggregationBuilder.toString());
+        canonical.append("|fields=").append(fields == null ? "" : Arrays.toString(fields));
+        canonical.append("|page=").append(pageNum).append(",").append(pageSize);
+        canonical.append("|sort=").append(sort == null ? "" : sort.toString());
+        //类 + 版本号 + 哈希
+        return clazz.getName() + ":" + generation + ":" + DigestUtil.sha256Hex(canonical.toString());
+    }
+
+    /**
+     * 浅拷贝结果
+     *
+     * @param result 结果
+     * @return
+     */
+    private <T> BaseElasticSearchService.RollPageResult<T> copy(BaseElasticSearchService.RollPageResult<T> result) {
+        //初始化
+        BaseElasticSearchService.RollPageResult<T> copy = new BaseElasticSearchService.RollPageResult<>();
+        copy.setTotal(result.getTotal());
+        copy.setList(result.getList() == null ? null : new ArrayList<>(result.getList()));
+        copy.setAggregations(result.getAggregations());
+        copy.setNextToken(result.getNextToken());
+        //返回
+        return copy;
+    }
+
+}
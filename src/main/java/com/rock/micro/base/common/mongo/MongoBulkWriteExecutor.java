@@ -0,0 +1,89 @@
+package com.rock.micro.base.common.mongo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * mongo 分批写入共享线程池
+ * -
+ * 所有 BaseMongoService 共用,线程数固定为并行数,空闲后自动回收;队列满时由调用方线程自己执行(背压),不会无限堆积
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@Component
+public class MongoBulkWriteExecutor implements Executor {
+
+    //最大并行批数,1为串行
+    @Value("${micro.base.mongo.bulk.parallelism:1}")
+    private int parallelism;
+
+    //线程池,串行时不创建
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 初始化
+     */
+    @PostConstruct
+    public void init() {
+        //串行不需要线程池
+        if (this.parallelism <= 1) {
+            return;
+        }
+        //线程序号
+        AtomicInteger index = new AtomicInteger();
+        //固定线程数,有界队列
+        this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(this.parallelism * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "mongo-bulk-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                //队列满(或已关闭)时调用方自己执行,保证提交的批次一定会执行
+                (runnable, pool) -> runnable.run());
+        //空闲线程回收
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 关闭
+     */
+    @PreDestroy
+    public void close() {
+        //判空
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+
+    /**
+     * 最大并行批数
+     *
+     * @return
+     */
+    public int getParallelism() {
+        //未创建线程池时只能串行
+        return this.executor == null ? 1 : this.parallelism;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        //未创建线程池时直接执行
+        if (this.executor == null) {
+            command.run();
+            return;
+        }
+        //实现
+        this.executor.execute(command);
+    }
+
+}
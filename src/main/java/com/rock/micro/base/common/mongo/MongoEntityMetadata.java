@@ -0,0 +1,211 @@
+package com.rock.micro.base.common.mongo;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * mongo 实体元数据
+ * -
+ * 每个实体类只解析一次(反射获取字段、生成字段访问器),之后全部复用,避免批量操作时每条数据都 getDeclaredFields、setAccessible
+ * 有 public getter 的字段,用 {@link LambdaMetafactory} 生成访问器(等同于手写的 Entity::getXxx,JIT 可以内联)
+ * 没有 public getter 的字段,回退为普通反射 {@link Field#get}
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@Getter
+public class MongoEntityMetadata {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MongoEntityMetadata.class);
+
+    //按实体类缓存,类卸载时自动释放
+    private static final ClassValue<MongoEntityMetadata> CACHE = new ClassValue<MongoEntityMetadata>() {
+        @Override
+        protected MongoEntityMetadata computeValue(Class<?> type) {
+            //解析
+            return new MongoEntityMetadata(type);
+        }
+    };
+
+    //实体类
+    private final Class<?> entityClass;
+
+    //本类声明的字段访问器(不包含继承对象的字段)
+    private final List<FieldAccessor> declaredFieldList;
+
+    /**
+     * 获取实体元数据,首次会解析,之后直接返回缓存
+     *
+     * @param entityClass 实体类
+     * @return
+     */
+    public static MongoEntityMetadata of(Class<?> entityClass) {
+        //实现
+        return CACHE.get(entityClass);
+    }
+
+    /**
+     * 解析实体
+     *
+     * @param entityClass 实体类
+     */
+    private MongoEntityMetadata(Class<?> entityClass) {
+        //记录
+        this.entityClass = entityClass;
+        //初始化字段列表
+        List<FieldAccessor> fieldList = new ArrayList<>();
+        //查找器
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        //获取本类的Field数组,继承无效
+        for (Field field : entityClass.getDeclaredFields()) {
+            //静态字段不是数据
+            if (Modifier.isStatic(field.getModifiers())) {
+                //本轮过
+                continue;
+            }
+            //过滤掉一些特殊的
+            switch (field.getName()) {
+                //一定不需要更新的
+                case "id":
+                case "createDate":
+                    continue;
+                    //其他过
+                default:
+                    break;
+            }
+            try {
+                //生成字段访问器
+                fieldList.add(new FieldAccessor(field.getName(), field.getType(), createGetter(lookup, entityClass, field)));
+            } catch (Exception e) {
+                LOG.error("MongoEntityMetadata init field:[{}.{}] error", entityClass.getName(), field.getName(), e);
+            }
+        }
+        //不可变
+        this.declaredFieldList = Collections.unmodifiableList(fieldList);
+    }
+
+    /**
+     * 生成字段访问器:优先用 public getter 生成 lambda,否则回退反射
+     *
+     * @param lookup      查找器
+     * @param entityClass 实体类
+     * @param field       字段
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> createGetter(MethodHandles.Lookup lookup, Class<?> entityClass, Field field) {
+        //public getter
+        Method getter = findPublicGetter(entityClass, field);
+        //如果有
+        if (getter != null) {
+            try {
+                //getter 句柄
+                MethodHandle handle = lookup.unreflect(getter);
+                //生成 Function 实现,等同于 Entity::getXxx
+                CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class), handle, handle.type().wrap());
+                //返回
+                return (Function<Object, Object>) callSite.getTarget().invokeExact();
+            } catch (Throwable e) {
+                //类加载器隔离等情况生成失败,回退反射
+                LOG.warn("MongoEntityMetadata lambda getter:[{}.{}] unavailable, use reflection", entityClass.getName(), field.getName());
+            }
+        }
+        //强制访问私有字段
+        field.setAccessible(true);
+        //反射
+        return target -> {
+            try {
+                //实现
+                return field.get(target);
+            } catch (IllegalAccessException e) {
+                //抛
+                throw new IllegalStateException("读取字段失败:" + field.getName(), e);
+            }
+        };
+    }
+
+    /**
+     * 查找字段对应的 public getter (getXxx,boolean 为 isXxx)
+     *
+     * @param entityClass 实体类
+     * @param field       字段
+     * @return 没有时返回null
+     */
+    private static Method findPublicGetter(Class<?> entityClass, Field field) {
+        //实体类必须是 public
+        if (Modifier.isPublic(entityClass.getModifiers()) == false) {
+            //过
+            return null;
+        }
+        //首字母大写
+        String name = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+        //候选方法名
+        String[] methodNameArr = field.getType() == boolean.class ? new String[]{"is" + name, "get" + name} : new String[]{"get" + name};
+        //循环
+        for (String methodName : methodNameArr) {
+            try {
+                //获取方法
+                Method method = entityClass.getMethod(methodName);
+                //必须是实例方法,且返回类型与字段一致
+                if (Modifier.isStatic(method.getModifiers()) == false && method.getReturnType() == field.getType()) {
+                    //返回
+                    return method;
+                }
+            } catch (NoSuchMethodException e) {
+                //下一个
+            }
+        }
+        //没有
+        return null;
+    }
+
+    /**
+     * 字段访问器
+     */
+    @Getter
+    public static class FieldAccessor {
+
+        //字段名
+        private final String name;
+
+        //字段类型
+        private final Class<?> type;
+
+        //getter
+        private final Function<Object, Object> getter;
+
+        public FieldAccessor(String name, Class<?> type, Function<Object, Object> getter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+        }
+
+        /**
+         * 获取实体该字段的值
+         *
+         * @param target 实体
+         * @return
+         */
+        public Object get(Object target) {
+            //实现
+            return this.getter.apply(target);
+        }
+
+    }
+
+}
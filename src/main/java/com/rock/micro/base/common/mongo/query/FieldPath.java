@@ -0,0 +1,69 @@
+package com.rock.micro.base.common.mongo.query;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * 实体字段路径(编译期生成的字段常量)
+ * -
+ * 由 {@link com.rock.micro.base.common.processor.FieldPathProcessor} 为每个 BaseDocument/BaseIndex 子类生成 XxxFields 常量类
+ * 路径已是最终的存储字段名(含 _id 映射、@Field 重命名、嵌套路径 eg: productList.sku),查询构建时不需要任何反射
+ *
+ * @param <E> 所属实体
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+public final class FieldPath<E> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //存储字段路径
+    private final String path;
+
+    private FieldPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * 初始化
+     *
+     * @param path 存储字段路径
+     * @return
+     */
+    public static <E> FieldPath<E> of(String path) {
+        //实现
+        return new FieldPath<>(path);
+    }
+
+    /**
+     * 获取存储字段路径
+     *
+     * @return
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof FieldPath == false) {
+            return false;
+        }
+        return Objects.equals(this.path, ((FieldPath<?>) o).path);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        //直接使用
+        return this.path;
+    }
+
+}
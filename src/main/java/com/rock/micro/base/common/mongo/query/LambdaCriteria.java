@@ -39,6 +39,18 @@ public class LambdaCriteria {
         this.criteria = Criteria.where(key);
     }
 
+    /**
+     * 实现 where 编译期生成的字段路径 eg: OrderDocFields.PRODUCT_LIST__SKU
+     * 路径已是最终字段名(含嵌套、_id),不需要反射解析
+     *
+     * @param fieldPath 字段路径
+     * @return
+     */
+    public static LambdaCriteria where(FieldPath<?> fieldPath) {
+        //实现
+        return new LambdaCriteria(fieldPath.getPath());
+    }
+
     /**
      * 实现 where 一级的情况 eg: sku
      *
@@ -140,6 +152,20 @@ public class LambdaCriteria {
         return new LambdaCriteria(path);
     }
 
+    /**
+     * 实现 and 编译期生成的字段路径 eg: OrderDocFields.PRODUCT_LIST__SKU
+     * 路径已是最终字段名(含嵌套、_id),不需要反射解析
+     *
+     * @param fieldPath 字段路径
+     * @return
+     */
+    public LambdaCriteria and(FieldPath<?> fieldPath) {
+        //实现
+        this.criteria = this.criteria.and(fieldPath.getPath());
+        //返回
+        return this;
+    }
+
     /**
      * 实现 and 一级的情况 eg: sku
      *
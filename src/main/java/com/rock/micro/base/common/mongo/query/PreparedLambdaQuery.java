@@ -0,0 +1,348 @@
+package com.rock.micro.base.common.mongo.query;
+
+import com.rock.micro.base.common.api.MyException;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预编译的 {@link LambdaCriteria} 查询模板
+ * -
+ * 启动时(或静态常量中)用占位符定义一次查询结构,预先渲染为 bson 模板,每次请求只绑定参数值
+ * 绑定时只复制包含占位符的那几层,其余不变的子结构直接共享,不再重复构建 Criteria 树
+ * eg:
+ * PreparedLambdaQuery QUERY = PreparedLambdaQuery.prepare(LambdaCriteria.where(OrderDocFields.STATUS).is(param("status"))
+ * .and(OrderDocFields.CREATE_DATE).gte(param("start"))).sort(Sort.by(Sort.Direction.DESC, "createDate")).limit(20);
+ * Query query = QUERY.bind("status", 1, "start", startDate);
+ * -
+ * 定义完成后线程安全,可多线程共享;in/nin/all 的占位符绑定集合时整体替换;regex 不支持占位符
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+public final class PreparedLambdaQuery {
+
+    //过滤条件模板
+    private final Object filterTemplate;
+
+    //返回字段
+    private Document fields = new Document();
+
+    //排序
+    private Sort sort = Sort.unsorted();
+
+    //数量限制,0为不限
+    private int limit;
+
+    private PreparedLambdaQuery(Object filterTemplate) {
+        this.filterTemplate = filterTemplate;
+    }
+
+    /**
+     * 命名占位符,作为 LambdaCriteria 的值使用
+     *
+     * @param name 参数名
+     * @return
+     */
+    public static Placeholder param(String name) {
+        //实现
+        return new Placeholder(name);
+    }
+
+    /**
+     * 预编译查询结构
+     *
+     * @param lambdaCriteria 带占位符的条件
+     * @return
+     */
+    public static PreparedLambdaQuery prepare(LambdaCriteria lambdaCriteria) {
+        //渲染为 bson 并编译为模板
+        return new PreparedLambdaQuery(compile(lambdaCriteria.getCriteria().getCriteriaObject()));
+    }
+
+    /**
+     * 限制返回字段(定义时调用)
+     *
+     * @param fieldArr 字段
+     * @return
+     */
+    public PreparedLambdaQuery fields(String... fieldArr) {
+        //初始化
+        Document fields = new Document();
+        //循环
+        for (String field : fieldArr) {
+            fields.put(field, 1);
+        }
+        //赋值
+        this.fields = fields;
+        //返回
+        return this;
+    }
+
+    /**
+     * 限制返回字段(定义时调用)
+     *
+     * @param fieldPaths 编译期生成的字段路径
+     * @return
+     */
+    public PreparedLambdaQuery fields(FieldPath<?>... fieldPaths) {
+        //初始化
+        Document fields = new Document();
+        //循环
+        for (FieldPath<?> fieldPath : fieldPaths) {
+            fields.put(fieldPath.getPath(), 1);
+        }
+        //赋值
+        this.fields = fields;
+        //返回
+        return this;
+    }
+
+    /**
+     * 排序(定义时调用)
+     *
+     * @param sort 排序
+     * @return
+     */
+    public PreparedLambdaQuery sort(Sort sort) {
+        //赋值
+        this.sort = sort == null ? Sort.unsorted() : sort;
+        //返回
+        return this;
+    }
+
+    /**
+     * 数量限制(定义时调用)
+     *
+     * @param limit 数量
+     * @return
+     */
+    public PreparedLambdaQuery limit(int limit) {
+        //赋值
+        this.limit = limit;
+        //返回
+        return this;
+    }
+
+    /**
+     * 绑定参数,生成本次请求的查询
+     *
+     * @param nameValuePairs 参数名、参数值 交替 eg: "status", 1, "start", date
+     * @return
+     */
+    public Query bind(Object... nameValuePairs) {
+        //判断成对
+        if (nameValuePairs.length % 2 != 0) {
+            throw new MyException("查询参数必须成对传入");
+        }
+        //组装
+        Map<String, Object> params = new HashMap<>(nameValuePairs.length);
+        for (int i = 0; i < nameValuePairs.length; i += 2) {
+            params.put(String.valueOf(nameValuePairs[i]), nameValuePairs[i + 1]);
+        }
+        //实现
+        return bind(params);
+    }
+
+    /**
+     * 绑定参数,生成本次请求的查询
+     *
+     * @param params 参数名 -> 参数值
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public Query bind(Map<String, Object> params) {
+        //绑定过滤条件
+        Object rendered = render(this.filterTemplate, params);
+        //顶层总是新的对象(不含占位符时浅拷贝),防止调用方追加条件时修改共享模板
+        Document filter = this.filterTemplate instanceof MapNode ? (Document) rendered : new Document((Map<String, Object>) rendered);
+        //初始化查询
+        Query query = new BasicQuery(filter, new Document(this.fields));
+        //排序
+        if (this.sort.isSorted()) {
+            query.with(this.sort);
+        }
+        //数量限制
+        if (this.limit > 0) {
+            query.limit(this.limit);
+        }
+        //返回
+        return query;
+    }
+
+    /**
+     * 编译:不含占位符的子结构原样保留(绑定时共享),含占位符的 Document/List 转为模板节点
+     *
+     * @param value bson 值
+     * @return
+     */
+    private static Object compile(Object value) {
+        //如果是占位符
+        if (value instanceof Placeholder) {
+            return value;
+        }
+        //如果是文档
+        if (value instanceof Map) {
+            //子节点
+            Map<String, Object> children = new LinkedHashMap<>();
+            //是否含占位符
+            boolean dynamic = false;
+            //循环
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                //编译子节点
+                Object child = compile(entry.getValue());
+                children.put(String.valueOf(entry.getKey()), child);
+                dynamic = dynamic || isDynamic(child);
+            }
+            //不含占位符时原样共享
+            return dynamic ? new MapNode(children) : value;
+        }
+        //如果是列表
+        if (value instanceof Collection) {
+            //子节点
+            List<Object> children = new ArrayList<>();
+            //是否含占位符
+            boolean dynamic = false;
+            //循环
+            for (Object item : (Collection<?>) value) {
+                //编译子节点
+                Object child = compile(item);
+                children.add(child);
+                dynamic = dynamic || isDynamic(child);
+            }
+            //不含占位符时原样共享
+            return dynamic ? new ListNode(children) : value;
+        }
+        //普通值
+        return value;
+    }
+
+    /**
+     * 是否需要绑定
+     *
+     * @param node 节点
+     * @return
+     */
+    private static boolean isDynamic(Object node) {
+        //实现
+        return node instanceof Placeholder || node instanceof MapNode || node instanceof ListNode;
+    }
+
+    /**
+     * 按模板绑定参数
+     *
+     * @param node   模板节点
+     * @param params 参数
+     * @return
+     */
+    private static Object render(Object node, Map<String, Object> params) {
+        //如果是占位符
+        if (node instanceof Placeholder) {
+            //参数名
+            String name = ((Placeholder) node).getName();
+            //如果未绑定
+            if (params.containsKey(name) == false) {
+                throw new MyException("查询参数未绑定:" + name);
+            }
+            //实现
+            return params.get(name);
+        }
+        //如果是文档
+        if (node instanceof MapNode) {
+            //子节点
+            Map<String, Object> children = ((MapNode) node).children;
+            //初始化
+            Document document = new Document();
+            //循环
+            for (Map.Entry<String, Object> entry : children.entrySet()) {
+                document.put(entry.getKey(), render(entry.getValue(), params));
+            }
+            //返回
+            return document;
+        }
+        //如果是列表
+        if (node instanceof ListNode) {
+            //子节点
+            List<Object> children = ((ListNode) node).children;
+            //in/nin/all 的单个占位符绑定集合时,整体替换
+            if (children.size() == 1 && children.get(0) instanceof Placeholder) {
+                //绑定值
+                Object value = render(children.get(0), params);
+                //如果是集合
+                if (value instanceof Collection) {
+                    return new ArrayList<>((Collection<?>) value);
+                }
+            }
+            //初始化
+            List<Object> list = new ArrayList<>(children.size());
+            //循环
+            for (Object child : children) {
+                list.add(render(child, params));
+            }
+            //返回
+            return list;
+        }
+        //不变的部分直接共享
+        return node;
+    }
+
+    /**
+     * 命名占位符
+     */
+    public static final class Placeholder {
+
+        //参数名
+        private final String name;
+
+        private Placeholder(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public String toString() {
+            return ":" + this.name;
+        }
+
+    }
+
+    /**
+     * 含占位符的文档节点
+     */
+    private static final class MapNode {
+
+        //子节点
+        private final Map<String, Object> children;
+
+        private MapNode(Map<String, Object> children) {
+            this.children = children;
+        }
+
+    }
+
+    /**
+     * 含占位符的列表节点
+     */
+    private static final class ListNode {
+
+        //子节点
+        private final List<Object> children;
+
+        private ListNode(List<Object> children) {
+            this.children = children;
+        }
+
+    }
+
+}
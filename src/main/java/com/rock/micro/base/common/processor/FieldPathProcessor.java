@@ -0,0 +1,373 @@
+package com.rock.micro.base.common.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 字段路径常量生成器(注解处理器)
+ * -
+ * 编译期为每个 BaseDocument/BaseIndex 子类生成同包下的 XxxFields 类,包含所有字段(含继承的)的 {@code FieldPath} 常量
+ * eg: NormalLogDocFields.ID -> "_id",OrderDocFields.PRODUCT_LIST__SKU -> "productList.sku"
+ * 嵌套路径最多 3 级(与 LambdaCriteria 一致),常量名中 "__" 代表一级嵌套
+ * 字段名按存储名生成:Mongo 顶层 id -> _id,@Field 重命名,@Transient / static / transient 字段跳过
+ * -
+ * 依赖本包的项目编译时自动生效(META-INF/services 注册);本包自身编译时通过 annotationProcessorPaths 排除
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@SupportedAnnotationTypes("*")
+public class FieldPathProcessor extends AbstractProcessor {
+
+    //Mongo 实体基类
+    private static final String BASE_DOCUMENT = "com.rock.micro.base.data.BaseDocument";
+    //ES 实体基类
+    private static final String BASE_INDEX = "com.rock.micro.base.data.BaseIndex";
+    //字段路径类
+    private static final String FIELD_PATH = "com.rock.micro.base.common.mongo.query.FieldPath";
+    //生成类后缀
+    private static final String CLASS_SUFFIX = "Fields";
+
+    //Mongo 字段重命名注解
+    private static final String MONGO_FIELD = "org.springframework.data.mongodb.core.mapping.Field";
+    //ES 字段重命名注解
+    private static final String ES_FIELD = "org.springframework.data.elasticsearch.annotations.Field";
+    //不存储注解
+    private static final String TRANSIENT = "org.springframework.data.annotation.Transient";
+
+    //最大嵌套层级
+    private static final int MAX_DEPTH = 3;
+
+    //不展开嵌套的包(JDK、常用三方类型都作为叶子字段)
+    private static final String[] LEAF_PACKAGE_PREFIX_ARR = {"java.", "javax.", "org.bson.", "org.springframework.", "com.alibaba.", "com.fasterxml."};
+
+    private Elements elements;
+
+    private Types types;
+
+    private Filer filer;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.filer = processingEnv.getFiler();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        //跟随当前编译器
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        //基类
+        TypeElement baseDocument = this.elements.getTypeElement(BASE_DOCUMENT);
+        TypeElement baseIndex = this.elements.getTypeElement(BASE_INDEX);
+        //如果编译路径中没有基类
+        if (baseDocument == null || baseIndex == null) {
+            //不处理
+            return false;
+        }
+        //循环本轮的所有类
+        for (Element element : roundEnv.getRootElements()) {
+            //只处理顶层的类
+            if (element.getKind() != ElementKind.CLASS || element.getEnclosingElement() instanceof PackageElement == false) {
+                continue;
+            }
+            //类
+            TypeElement typeElement = (TypeElement) element;
+            //类型
+            TypeMirror type = this.types.erasure(typeElement.asType());
+            //是否 Mongo 实体
+            boolean mongo = this.types.isSubtype(type, this.types.erasure(baseDocument.asType()));
+            //是否 ES 实体
+            boolean es = this.types.isSubtype(type, this.types.erasure(baseIndex.asType()));
+            //如果都不是 或 就是基类本身
+            if ((mongo == false && es == false) || typeElement.equals(baseDocument) || typeElement.equals(baseIndex)) {
+                continue;
+            }
+            //生成
+            generate(typeElement, mongo);
+        }
+        //不占用注解,其他处理器照常处理
+        return false;
+    }
+
+    /**
+     * 生成一个实体的字段常量类
+     *
+     * @param typeElement 实体类
+     * @param mongo       是否 Mongo 实体(顶层 id 映射为 _id)
+     */
+    private void generate(TypeElement typeElement, boolean mongo) {
+        //包名
+        String packageName = this.elements.getPackageOf(typeElement).getQualifiedName().toString();
+        //实体类名
+        String entityName = typeElement.getSimpleName().toString();
+        //生成类名
+        String className = entityName + CLASS_SUFFIX;
+        //常量名 -> 路径
+        Map<String, String> constantMap = new LinkedHashMap<>();
+        //收集
+        Set<String> visiting = new HashSet<>();
+        visiting.add(typeElement.getQualifiedName().toString());
+        collect(typeElement, "", "", 1, mongo, visiting, constantMap);
+        //写入
+        try (Writer writer = this.filer.createSourceFile(packageName + "." + className, typeElement).openWriter()) {
+            //源码
+            StringBuilder source = new StringBuilder();
+            if (packageName.isEmpty() == false) {
+                source.append("package ").append(packageName).append(";\n\n");
+            }
+            source.append("import ").append(FIELD_PATH).append(";\n\n");
+            source.append("/**\n");
+            source.append(" * {@link ").append(entityName).append("} 字段路径常量,由 FieldPathProcessor 编译期生成,请勿修改\n");
+            source.append(" */\n");
+            source.append("public final class ").append(className).append(" {\n\n");
+            //常量
+            for (Map.Entry<String, String> entry : constantMap.entrySet()) {
+                source.append("    public static final FieldPath<").append(entityName).append("> ").append(entry.getKey())
+                        .append(" = FieldPath.of(\"").append(entry.getValue()).append("\");\n\n");
+            }
+            source.append("    private ").append(className).append("() {\n");
+            source.append("    }\n\n");
+            source.append("}\n");
+            //实现
+            writer.write(source.toString());
+        } catch (IOException e) {
+            //编译错误
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "FieldPathProcessor generate fail: " + e.getMessage(), typeElement);
+        }
+    }
+
+    /**
+     * 递归收集字段(含继承的)
+     *
+     * @param typeElement    当前类
+     * @param pathPrefix     路径前缀 eg: productList.
+     * @param constantPrefix 常量名前缀 eg: PRODUCT_LIST__
+     * @param depth          当前层级,从1开始
+     * @param mongo          是否 Mongo 实体
+     * @param visiting       当前路径上的类(防止循环引用)
+     * @param constantMap    结果
+     */
+    private void collect(TypeElement typeElement, String pathPrefix, String constantPrefix, int depth, boolean mongo,
+                         Set<String> visiting, Map<String, String> constantMap) {
+        //循环所有字段
+        for (VariableElement field : listFields(typeElement)) {
+            //字段名
+            String fieldName = field.getSimpleName().toString();
+            //存储名
+            String storeName = resolveStoreName(field, fieldName);
+            //Mongo 顶层 id
+            if (mongo && depth == 1 && "id".equals(fieldName)) {
+                storeName = "_id";
+            }
+            //路径
+            String path = pathPrefix + storeName;
+            //常量名
+            String constant = constantPrefix + toConstantName(fieldName);
+            //如果重复(子类覆盖父类同名字段),保留子类的
+            if (constantMap.containsKey(constant)) {
+                continue;
+            }
+            //组装
+            constantMap.put(constant, path);
+            //如果还能继续嵌套
+            if (depth < MAX_DEPTH) {
+                //嵌套类型
+                TypeElement nested = resolveNestedType(field.asType());
+                //如果需要展开且没有循环
+                if (nested != null && visiting.add(nested.getQualifiedName().toString())) {
+                    //递归
+                    collect(nested, path + ".", constant + "__", depth + 1, mongo, visiting, constantMap);
+                    //回溯
+                    visiting.remove(nested.getQualifiedName().toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取类及其父类的所有存储字段,子类在前
+     *
+     * @param typeElement 类
+     * @return
+     */
+    private List<VariableElement> listFields(TypeElement typeElement) {
+        //结果
+        List<VariableElement> fieldList = new ArrayList<>();
+        //当前类
+        TypeElement current = typeElement;
+        //循环到 Object
+        while (current != null && "java.lang.Object".equals(current.getQualifiedName().toString()) == false) {
+            //循环字段
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                //跳过 static / transient / @Transient
+                if (field.getModifiers().contains(Modifier.STATIC)
+                        || field.getModifiers().contains(Modifier.TRANSIENT)
+                        || findAnnotation(field, TRANSIENT) != null) {
+                    continue;
+                }
+                //组装
+                fieldList.add(field);
+            }
+            //父类
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        //返回
+        return fieldList;
+    }
+
+    /**
+     * 获取字段的存储名(@Field 重命名优先)
+     *
+     * @param field     字段
+     * @param fieldName 字段名
+     * @return
+     */
+    private String resolveStoreName(VariableElement field, String fieldName) {
+        //循环两种 @Field
+        for (String annotationName : new String[]{MONGO_FIELD, ES_FIELD}) {
+            //注解
+            AnnotationMirror annotation = findAnnotation(field, annotationName);
+            //如果没有
+            if (annotation == null) {
+                continue;
+            }
+            //value 或 name
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+                //属性名
+                String key = entry.getKey().getSimpleName().toString();
+                //属性值
+                Object value = entry.getValue().getValue();
+                //如果有重命名
+                if (("value".equals(key) || "name".equals(key)) && value instanceof String && ((String) value).isEmpty() == false) {
+                    return (String) value;
+                }
+            }
+        }
+        //默认字段名
+        return fieldName;
+    }
+
+    /**
+     * 获取需要展开的嵌套类型(集合、数组取元素类型),叶子类型返回 null
+     *
+     * @param type 字段类型
+     * @return
+     */
+    private TypeElement resolveNestedType(TypeMirror type) {
+        //数组取元素类型
+        if (type.getKind() == TypeKind.ARRAY) {
+            type = ((ArrayType) type).getComponentType();
+        }
+        //如果不是类
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        //类
+        DeclaredType declaredType = (DeclaredType) type;
+        TypeElement element = (TypeElement) declaredType.asElement();
+        //集合取元素类型
+        TypeElement collection = this.elements.getTypeElement("java.util.Collection");
+        if (collection != null && this.types.isAssignable(this.types.erasure(type), this.types.erasure(collection.asType()))) {
+            //如果没有泛型
+            if (declaredType.getTypeArguments().size() != 1) {
+                return null;
+            }
+            //元素类型
+            return resolveNestedType(declaredType.getTypeArguments().get(0));
+        }
+        //枚举、接口不展开
+        if (element.getKind() != ElementKind.CLASS) {
+            return null;
+        }
+        //JDK、三方类型不展开
+        String qualifiedName = element.getQualifiedName().toString();
+        for (String prefix : LEAF_PACKAGE_PREFIX_ARR) {
+            if (qualifiedName.startsWith(prefix)) {
+                return null;
+            }
+        }
+        //返回
+        return element;
+    }
+
+    /**
+     * 查找字段上的注解
+     *
+     * @param element        字段
+     * @param annotationName 注解全名
+     * @return
+     */
+    private AnnotationMirror findAnnotation(Element element, String annotationName) {
+        //循环
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            //如果匹配
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return annotation;
+            }
+        }
+        //没有
+        return null;
+    }
+
+    /**
+     * 小驼峰字段名转常量名 eg: productList -> PRODUCT_LIST
+     *
+     * @param fieldName 字段名
+     * @return
+     */
+    private static String toConstantName(String fieldName) {
+        //结果
+        StringBuilder constant = new StringBuilder();
+        //循环
+        for (int i = 0; i < fieldName.length(); i++) {
+            //当前字符
+            char c = fieldName.charAt(i);
+            //大写字母前加下划线(开头、连续大写除外)
+            if (Character.isUpperCase(c) && i > 0 && Character.isUpperCase(fieldName.charAt(i - 1)) == false && fieldName.charAt(i - 1) != '_') {
+                constant.append('_');
+            }
+            //转大写
+            constant.append(Character.toUpperCase(c));
+        }
+        //返回
+        return constant.toString();
+    }
+
+}
@@ -0,0 +1,793 @@
+package com.rock.micro.base.common.sync;
+
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.rock.micro.base.common.api.MyException;
+import com.rock.micro.base.common.elasticsearch.ElasticSearchBulkProcessor;
+import com.rock.micro.base.common.elasticsearch.ElasticSearchIndexRegistry;
+import com.rock.micro.base.common.elasticsearch.ElasticSearchQueryCache;
+import com.rock.micro.base.data.BaseDocument;
+import com.rock.micro.base.data.BaseIndex;
+import com.rock.micro.base.data.doc.SyncDeadLetterDoc;
+import com.rock.micro.base.data.doc.SyncResumeTokenDoc;
+import org.apache.commons.lang3.StringUtils;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Mongo -> ES 同步引擎
+ * -
+ * 注册后每个集合一个后台线程监听 change stream,把 新增/修改/替换/删除 转为 ES 的 index/delete 批量写入
+ * 同一批内同一个id只保留最后一次操作,单线程按顺序提交,保证同一个id的先后顺序
+ * 每批写入ES确认后,把 resume token 保存到 Mongo({@link SyncResumeTokenDoc}),重启后从断点继续
+ * 首次启动(没有 resume token)先打开 change stream 再全量回填,回填期间的变更由 change stream 补上
+ * 写入ES最终失败(如 mapping 冲突)、转换失败(实体读取、mapper、序列化异常)的文档先记入死信({@link SyncDeadLetterDoc})再保存断点,
+ * 不会丢失也不会卡住同步,修复后通过 {@link #replayDeadLetter} 重放
+ * 集合被删除、重命名时,先清空ES写入索引中的全部文档,再重新全量回填(Mongo 中已不存在的文档不会残留,回填完成前查询不到数据)
+ * 访问 Mongo、ES 的操作都集中在包内可见的方法中,便于用本地替身测试
+ * 默认关闭,通过 micro.base.sync.enabled=true 开启(change stream 需要副本集)
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@Component
+public class MongoElasticSearchSyncEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MongoElasticSearchSyncEngine.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ElasticsearchRestTemplate elasticsearchRestTemplate;
+
+    @Autowired
+    private ElasticSearchIndexRegistry elasticSearchIndexRegistry;
+
+    @Autowired
+    private ElasticSearchBulkProcessor elasticSearchBulkProcessor;
+
+    @Autowired
+    private ElasticSearchQueryCache elasticSearchQueryCache;
+
+    //是否开启
+    @Value("${micro.base.sync.enabled:false}")
+    private boolean enabled;
+
+    //每批最大条数
+    @Value("${micro.base.sync.batch-size:500}")
+    private int batchSize;
+
+    //每批最长等待(毫秒)
+    @Value("${micro.base.sync.max-wait-millis:1000}")
+    private long maxWaitMillis;
+
+    //异常后重启等待(毫秒)
+    @Value("${micro.base.sync.retry-delay-millis:5000}")
+    private long retryDelayMillis;
+
+    //注册名 -> 同步任务
+    private final Map<String, SyncTask<?, ?>> taskMap = new ConcurrentHashMap<>();
+
+    /**
+     * 注册一个集合的同步,开启时立即启动后台线程
+     *
+     * @param name       注册名(resume token 按此保存,需唯一且稳定)
+     * @param docClass   Mongo 实体类
+     * @param indexClass ES 实体类
+     * @param mapper     转换,返回 null 时删除ES中的文档
+     */
+    public <D extends BaseDocument, I extends BaseIndex> void register(String name, Class<D> docClass, Class<I> indexClass, Function<D, I> mapper) {
+        //初始化
+        SyncTask<D, I> task = new SyncTask<>(name, docClass, indexClass, mapper);
+        //如果重复
+        if (this.taskMap.putIfAbsent(name, task) != null) {
+            throw new MyException("同步注册名重复:" + name);
+        }
+        //如果未开启
+        if (this.enabled == false) {
+            LOG.info("MongoElasticSearchSyncEngine disabled, skip start name:[{}]", name);
+            return;
+        }
+        //启动
+        task.start();
+    }
+
+    /**
+     * 停止所有同步
+     */
+    @PreDestroy
+    public void stop() {
+        //实现
+        this.taskMap.values().forEach(SyncTask::stop);
+    }
+
+    /**
+     * 清空某个注册的进度,重启后重新全量回填
+     *
+     * @param name 注册名
+     */
+    public void reset(String name) {
+        //实现
+        this.mongoTemplate.remove(Query.query(Criteria.where("_id").is(name)), SyncResumeTokenDoc.class);
+    }
+
+    /**
+     * 重放某个注册的死信:按 Mongo 中的最新数据重新写入ES,成功的死信删除
+     * 在同步线程中执行(当前批次写入后),与变更保持同一顺序
+     *
+     * @param name 注册名
+     */
+    public void replayDeadLetter(String name) {
+        //同步任务
+        SyncTask<?, ?> task = this.taskMap.get(name);
+        //如果没有
+        if (task == null) {
+            throw new MyException("同步未注册:" + name);
+        }
+        //标记
+        task.replayRequested.set(true);
+    }
+
+    /**
+     * Mongo/ES 访问
+     */
+
+    /**
+     * 获取进度
+     *
+     * @param name 注册名
+     * @return
+     */
+    SyncResumeTokenDoc findProgress(String name) {
+        //实现
+        return this.mongoTemplate.findById(name, SyncResumeTokenDoc.class);
+    }
+
+    /**
+     * 保存进度
+     *
+     * @param progress 进度
+     */
+    void saveProgress(SyncResumeTokenDoc progress) {
+        //实现
+        this.mongoTemplate.save(progress);
+    }
+
+    /**
+     * 打开 change stream 游标
+     *
+     * @param docClass    Mongo 实体类
+     * @param resumeToken 断点(为空则从当前开始)
+     * @return
+     */
+    MongoChangeStreamCursor<ChangeStreamDocument<Document>> openChangeStream(Class<?> docClass, String resumeToken) {
+        //change stream
+        ChangeStreamIterable<Document> iterable = this.mongoTemplate.getCollection(this.mongoTemplate.getCollectionName(docClass))
+                .watch()
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .batchSize(this.batchSize)
+                .maxAwaitTime(this.maxWaitMillis, TimeUnit.MILLISECONDS);
+        //如果有断点,从断点继续
+        if (StringUtils.isNotBlank(resumeToken)) {
+            iterable.resumeAfter(BsonDocument.parse(resumeToken));
+        }
+        //打开游标
+        return iterable.cursor();
+    }
+
+    /**
+     * 全表游标
+     *
+     * @param docClass Mongo 实体类
+     * @return
+     */
+    <D> CloseableIterator<D> streamAll(Class<D> docClass) {
+        //实现
+        return this.mongoTemplate.stream(new Query(), docClass);
+    }
+
+    /**
+     * 根据id查询 Mongo 实体
+     *
+     * @param docClass Mongo 实体类
+     * @param id       id
+     * @return
+     */
+    <D> D findDocument(Class<D> docClass, String id) {
+        //实现
+        return this.mongoTemplate.findById(id, docClass);
+    }
+
+    /**
+     * change stream 全文档转为 Mongo 实体
+     *
+     * @param docClass Mongo 实体类
+     * @param document 全文档
+     * @return
+     */
+    <D> D readDocument(Class<D> docClass, Document document) {
+        //实现
+        return this.mongoTemplate.getConverter().read(docClass, document);
+    }
+
+    /**
+     * 获取ES写入索引
+     *
+     * @param indexClass ES 实体类
+     * @return
+     */
+    String getWriteIndexName(Class<?> indexClass) {
+        //实现
+        return this.elasticSearchIndexRegistry.getWriteIndex(indexClass).getIndexName();
+    }
+
+    /**
+     * ES 实体序列化
+     *
+     * @param index ES 实体
+     * @return
+     */
+    String toJson(BaseIndex index) {
+        //实现
+        return this.elasticsearchRestTemplate.getElasticsearchConverter().mapObject(index).toJson();
+    }
+
+    /**
+     * 同步写入ES,返回前已确认
+     *
+     * @param indexClass ES 实体类
+     * @param batch      批次
+     * @return 最终失败的请求
+     */
+    List<DocWriteRequest<?>> bulkWrite(Class<?> indexClass, List<DocWriteRequest<?>> batch) {
+        //写入,可重试的失败已在内部重试
+        List<DocWriteRequest<?>> failedList = this.elasticSearchBulkProcessor.bulkSync(batch);
+        //查询结果缓存失效
+        this.elasticSearchQueryCache.invalidate(indexClass);
+        //返回
+        return failedList;
+    }
+
+    /**
+     * 清空ES写入索引中的全部文档(集合被删除、重命名后重新回填前)
+     *
+     * @param indexClass ES 实体类
+     */
+    void clearIndex(Class<?> indexClass) {
+        //全部删除
+        this.elasticsearchRestTemplate.delete(new NativeSearchQueryBuilder().withQuery(QueryBuilders.matchAllQuery()).build(),
+                indexClass, this.elasticSearchIndexRegistry.getWriteIndex(indexClass));
+        //查询结果缓存失效
+        this.elasticSearchQueryCache.invalidate(indexClass);
+    }
+
+    /**
+     * 保存死信
+     *
+     * @param deadLetterList 死信列表
+     */
+    void saveDeadLetter(List<SyncDeadLetterDoc> deadLetterList) {
+        //循环,同一个文档覆盖
+        deadLetterList.forEach(this.mongoTemplate::save);
+    }
+
+    /**
+     * 获取某个注册的全部死信
+     *
+     * @param name 注册名
+     * @return
+     */
+    List<SyncDeadLetterDoc> findDeadLetter(String name) {
+        //实现
+        return this.mongoTemplate.find(Query.query(Criteria.where("syncName").is(name)), SyncDeadLetterDoc.class);
+    }
+
+    /**
+     * 删除死信
+     *
+     * @param idList 死信id列表
+     */
+    void removeDeadLetter(List<String> idList) {
+        //判空
+        if (idList.isEmpty()) {
+            return;
+        }
+        //实现
+        this.mongoTemplate.remove(Query.query(Criteria.where("_id").in(idList)), SyncDeadLetterDoc.class);
+    }
+
+    /**
+     * 获取 _id 的字符串形式
+     *
+     * @param id _id
+     * @return
+     */
+    private static String idToString(BsonValue id) {
+        //字符串
+        if (id.isString()) {
+            return id.asString().getValue();
+        }
+        //ObjectId
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        //其他
+        return id.toString();
+    }
+
+    /**
+     * 文档转换失败(实体读取、mapper、序列化异常)
+     */
+    private static class SyncConvertException extends RuntimeException {
+
+        //文档id
+        private final String docId;
+
+        private SyncConvertException(String docId, RuntimeException cause) {
+            super("同步转换失败:" + docId, cause);
+            this.docId = docId;
+        }
+
+    }
+
+    /**
+     * 单个集合的同步任务
+     */
+    private class SyncTask<D extends BaseDocument, I extends BaseIndex> implements Runnable {
+
+        //注册名
+        private final String name;
+
+        //Mongo 实体类
+        private final Class<D> docClass;
+
+        //ES 实体类
+        private final Class<I> indexClass;
+
+        //转换
+        private final Function<D, I> mapper;
+
+        //是否运行
+        private volatile boolean running;
+
+        //是否请求重放死信
+        private final AtomicBoolean replayRequested = new AtomicBoolean();
+
+        //线程
+        private Thread thread;
+
+        private SyncTask(String name, Class<D> docClass, Class<I> indexClass, Function<D, I> mapper) {
+            this.name = name;
+            this.docClass = docClass;
+            this.indexClass = indexClass;
+            this.mapper = mapper;
+        }
+
+        private synchronized void start() {
+            //标记
+            this.running = true;
+            //线程
+            this.thread = new Thread(this, "mongo-es-sync-" + this.name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private synchronized void stop() {
+            //如果未启动
+            if (this.thread == null) {
+                return;
+            }
+            //标记
+            this.running = false;
+            this.thread.interrupt();
+            try {
+                //等待当前批次结束
+                this.thread.join(maxWaitMillis * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            //循环,异常后等待重启
+            while (this.running) {
+                try {
+                    //实现
+                    runOnce();
+                } catch (Exception e) {
+                    //如果已停止
+                    if (this.running == false) {
+                        break;
+                    }
+                    LOG.error("MongoElasticSearchSyncEngine error name:[{}], restart after {}ms", this.name, retryDelayMillis, e);
+                    try {
+                        Thread.sleep(retryDelayMillis);
+                    } catch (InterruptedException ie) {
+                        break;
+                    }
+                }
+            }
+            LOG.info("MongoElasticSearchSyncEngine stopped name:[{}]", this.name);
+        }
+
+        /**
+         * 打开 change stream 并持续消费,直到停止或异常
+         */
+        private void runOnce() {
+            //进度
+            SyncResumeTokenDoc progress = findProgress(this.name);
+            //是否需要回填
+            boolean needBackfill = progress == null || StringUtils.isBlank(progress.getResumeToken()) || Boolean.TRUE.equals(progress.getBackfillDone()) == false;
+            //如果没有进度
+            if (progress == null) {
+                progress = new SyncResumeTokenDoc();
+                SyncResumeTokenDoc.createBuild(progress, false);
+                progress.setId(this.name);
+            }
+            //如果没有计数
+            if (progress.getSyncCount() == null) {
+                progress.setSyncCount(0L);
+            }
+            //打开游标,如果有断点且不需要回填,从断点继续
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = openChangeStream(this.docClass, needBackfill ? null : progress.getResumeToken())) {
+                //如果需要回填,先打开游标再回填,回填期间的变更由游标补上(重复写入是幂等的)
+                if (needBackfill) {
+                    //回填
+                    backfill(progress);
+                    //保存起点
+                    progress.setBackfillDone(true);
+                    saveProgress(progress, cursor.getResumeToken(), 0);
+                }
+                //消费
+                consume(progress, cursor);
+            }
+        }
+
+        /**
+         * 全量回填
+         *
+         * @param progress 进度
+         */
+        private void backfill(SyncResumeTokenDoc progress) {
+            LOG.info("MongoElasticSearchSyncEngine backfill start name:[{}]", this.name);
+            //批次
+            List<DocWriteRequest<?>> batch = new ArrayList<>(batchSize);
+            //数量
+            long count = 0L;
+            //全表游标
+            try (CloseableIterator<D> iterator = streamAll(this.docClass)) {
+                //循环
+                while (iterator.hasNext() && this.running) {
+                    //转换
+                    D doc = iterator.next();
+                    try {
+                        batch.add(toRequest(doc.getId(), doc));
+                    } catch (SyncConvertException e) {
+                        //转换失败,记入死信后继续
+                        saveConvertDeadLetter(e);
+                    }
+                    //如果满一批
+                    if (batch.size() >= batchSize) {
+                        count += writeBatch(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            //如果中途停止
+            if (this.running == false) {
+                throw new MyException("同步已停止,回填未完成:" + this.name);
+            }
+            //剩余
+            count += writeBatch(batch);
+            //计数
+            progress.setSyncCount(progress.getSyncCount() + count);
+            LOG.info("MongoElasticSearchSyncEngine backfill done name:[{}] count:[{}]", this.name, count);
+        }
+
+        /**
+         * 消费 change stream
+         *
+         * @param progress 进度
+         * @param cursor   游标
+         */
+        private void consume(SyncResumeTokenDoc progress, MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor) {
+            //id -> 最后一次操作(同一批内同一个id只保留最后一次,移到末尾保持顺序)
+            Map<String, DocWriteRequest<?>> batch = new LinkedHashMap<>();
+            //本批第一条的时间
+            long batchStart = 0L;
+            //循环
+            while (this.running) {
+                //如果请求了重放死信,在两批之间执行
+                if (batch.isEmpty() && this.replayRequested.compareAndSet(true, false)) {
+                    replayDeadLetter();
+                }
+                //下一条,最多等待 maxAwaitTime
+                ChangeStreamDocument<Document> event = cursor.tryNext();
+                //如果有
+                if (event != null) {
+                    //如果集合被删除、重命名,游标失效,清空ES索引、进度后重新回填(清空失败时重启后会再次收到该事件)
+                    if (event.getOperationType() == OperationType.INVALIDATE
+                            || event.getOperationType() == OperationType.DROP
+                            || event.getOperationType() == OperationType.RENAME
+                            || event.getOperationType() == OperationType.DROP_DATABASE) {
+                        LOG.warn("MongoElasticSearchSyncEngine collection {} name:[{}], clear index and backfill", event.getOperationType(), this.name);
+                        clearIndex(this.indexClass);
+                        reset(this.name);
+                        throw new MyException("同步游标失效,重新回填:" + this.name);
+                    }
+                    //转换
+                    DocWriteRequest<?> request;
+                    try {
+                        request = toRequest(event);
+                    } catch (SyncConvertException e) {
+                        //转换失败,记入死信(先于本批断点保存),不会在重启后反复卡在同一个事件
+                        saveConvertDeadLetter(e);
+                        //本批中该id之前的操作不再写入,以死信重放时 Mongo 中的最新数据为准
+                        batch.remove(e.docId);
+                        request = null;
+                    }
+                    //如果需要处理
+                    if (request != null) {
+                        //如果是本批第一条
+                        if (batch.isEmpty()) {
+                            batchStart = System.currentTimeMillis();
+                        }
+                        //同一个id只保留最后一次
+                        batch.remove(request.id());
+                        batch.put(request.id(), request);
+                    }
+                }
+                //如果满一批 或 超时 或 暂时没有新的变更
+                if (batch.isEmpty() == false
+                        && (batch.size() >= batchSize || event == null || System.currentTimeMillis() - batchStart >= maxWaitMillis)) {
+                    //写入
+                    int count = writeBatch(new ArrayList<>(batch.values()));
+                    batch.clear();
+                    //写入确认后保存断点
+                    saveProgress(progress, cursor.getResumeToken(), count);
+                }
+            }
+        }
+
+        /**
+         * 变更事件转为ES请求
+         *
+         * @param event 变更事件
+         * @return 不需要处理时返回 null
+         */
+        private DocWriteRequest<?> toRequest(ChangeStreamDocument<Document> event) {
+            //如果没有 _id
+            if (event.getDocumentKey() == null || event.getDocumentKey().containsKey("_id") == false) {
+                return null;
+            }
+            //id
+            String id = idToString(event.getDocumentKey().get("_id"));
+            //按类型
+            switch (event.getOperationType()) {
+                case INSERT:
+                case UPDATE:
+                case REPLACE:
+                    //全文档,查找时已被删除则为空
+                    Document fullDocument = event.getFullDocument();
+                    //转换
+                    return toRequest(id, fullDocument == null ? null : convert(id, () -> readDocument(this.docClass, fullDocument)));
+                case DELETE:
+                    //删除
+                    return toRequest(id, null);
+                default:
+                    //忽略
+                    return null;
+            }
+        }
+
+        /**
+         * Mongo 实体转为ES请求
+         *
+         * @param id  id
+         * @param doc Mongo 实体(为空时删除)
+         * @return
+         */
+        private DocWriteRequest<?> toRequest(String id, D doc) {
+            //写入索引
+            String indexName = getWriteIndexName(this.indexClass);
+            //转换
+            I index = doc == null ? null : convert(id, () -> this.mapper.apply(doc));
+            //如果需要删除
+            if (index == null) {
+                return new DeleteRequest(indexName, id);
+            }
+            //保证id一致
+            index.setId(id);
+            //序列化
+            String json = convert(id, () -> toJson(index));
+            //新增或覆盖
+            return new IndexRequest(indexName).id(id).source(json, XContentType.JSON);
+        }
+
+        /**
+         * 执行一步转换(实体读取、mapper、序列化),异常包装为 {@link SyncConvertException}
+         * 与访问ES、Mongo 的异常区分开:转换失败重试也不会成功,记入死信;网络异常则重启后重试
+         *
+         * @param docId     文档id
+         * @param converter 转换
+         * @return
+         */
+        private <R> R convert(String docId, Supplier<R> converter) {
+            try {
+                //实现
+                return converter.get();
+            } catch (RuntimeException e) {
+                //包装
+                throw new SyncConvertException(docId, e);
+            }
+        }
+
+        /**
+         * 转换失败的文档记入死信
+         *
+         * @param e 转换异常
+         */
+        private void saveConvertDeadLetter(SyncConvertException e) {
+            LOG.error("MongoElasticSearchSyncEngine convert failed name:[{}] id:[{}], saved to dead letter", this.name, e.docId, e.getCause());
+            //初始化
+            SyncDeadLetterDoc deadLetter = newDeadLetter(e.docId, getWriteIndexName(this.indexClass), SyncDeadLetterDoc.OP_TYPE_CONVERT);
+            //失败原因
+            deadLetter.setMessage(String.valueOf(e.getCause()));
+            //保存,失败会抛出异常,重启后重放
+            saveDeadLetter(Collections.singletonList(deadLetter));
+        }
+
+        /**
+         * 同步写入一批
+         *
+         * @param batch 批次
+         * @return 成功数量
+         */
+        private int writeBatch(List<DocWriteRequest<?>> batch) {
+            //判空
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            //写入
+            List<DocWriteRequest<?>> failedList = bulkWrite(this.indexClass, batch);
+            //不可重试的失败(如 mapping 冲突)原样重放也不会成功,记入死信后继续,避免卡住整个同步
+            if (failedList.isEmpty() == false) {
+                //死信保存失败会抛出异常,本批不保存断点,重启后重放
+                saveDeadLetter(failedList.stream().map(this::toDeadLetter).collect(Collectors.toList()));
+                LOG.error("MongoElasticSearchSyncEngine batch partially failed name:[{}] size:[{}] failed:[{}], saved to dead letter",
+                        this.name, batch.size(), failedList.size());
+            }
+            //返回
+            return batch.size() - failedList.size();
+        }
+
+        /**
+         * 失败的请求转为死信
+         *
+         * @param request 请求
+         * @return
+         */
+        private SyncDeadLetterDoc toDeadLetter(DocWriteRequest<?> request) {
+            //实现
+            return newDeadLetter(request.id(), request.index(), request.opType().getLowercase());
+        }
+
+        /**
+         * 初始化死信
+         *
+         * @param docId     文档id
+         * @param indexName ES索引
+         * @param opType    操作类型
+         * @return
+         */
+        private SyncDeadLetterDoc newDeadLetter(String docId, String indexName, String opType) {
+            //初始化
+            SyncDeadLetterDoc deadLetter = new SyncDeadLetterDoc();
+            SyncDeadLetterDoc.createBuild(deadLetter, false);
+            //同一个文档只保留一条
+            deadLetter.setId(this.name + ":" + docId);
+            deadLetter.setSyncName(this.name);
+            deadLetter.setIndexName(indexName);
+            deadLetter.setDocId(docId);
+            deadLetter.setOpType(opType);
+            //返回
+            return deadLetter;
+        }
+
+        /**
+         * 重放死信,按 Mongo 中的最新数据重新写入,成功的删除,仍失败的保留
+         */
+        private void replayDeadLetter() {
+            //死信
+            List<SyncDeadLetterDoc> deadLetterList = findDeadLetter(this.name);
+            //判空
+            if (deadLetterList.isEmpty()) {
+                return;
+            }
+            //按最新数据转换(已删除的转为删除)
+            List<DocWriteRequest<?>> batch = new ArrayList<>(deadLetterList.size());
+            //仍转换失败的
+            Set<String> failedIdSet = new HashSet<>();
+            //循环
+            for (SyncDeadLetterDoc deadLetter : deadLetterList) {
+                try {
+                    batch.add(toRequest(deadLetter.getDocId(), findDocument(this.docClass, deadLetter.getDocId())));
+                } catch (SyncConvertException e) {
+                    //仍然失败,保留死信
+                    failedIdSet.add(deadLetter.getDocId());
+                    LOG.error("MongoElasticSearchSyncEngine replay convert failed name:[{}] id:[{}]", this.name, e.docId, e.getCause());
+                }
+            }
+            //写入(全部转换失败时不写)
+            if (batch.isEmpty() == false) {
+                bulkWrite(this.indexClass, batch).stream().map(DocWriteRequest::id).forEach(failedIdSet::add);
+            }
+            //删除成功的
+            removeDeadLetter(deadLetterList.stream()
+                    .filter(deadLetter -> failedIdSet.contains(deadLetter.getDocId()) == false)
+                    .map(SyncDeadLetterDoc::getId)
+                    .collect(Collectors.toList()));
+            LOG.info("MongoElasticSearchSyncEngine replay dead letter name:[{}] size:[{}] failed:[{}]", this.name, batch.size(), failedIdSet.size());
+        }
+
+        /**
+         * 保存断点
+         *
+         * @param progress    进度
+         * @param resumeToken resume token
+         * @param count       本批数量
+         */
+        private void saveProgress(SyncResumeTokenDoc progress, BsonDocument resumeToken, int count) {
+            //如果没有 token
+            if (resumeToken == null) {
+                return;
+            }
+            //更新
+            progress.setResumeToken(resumeToken.toJson());
+            progress.setSyncCount(progress.getSyncCount() + count);
+            progress.setUpdateDate(new Date());
+            //保存
+            MongoElasticSearchSyncEngine.this.saveProgress(progress);
+        }
+
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.rock.micro.base.data.doc;
+
+import com.rock.micro.base.data.BaseDocument;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Mongo 分段并行扫描进度,每个分段一条
+ * id 为 任务名:集合名:分段序号
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@Setter
+@Getter
+@ApiModel("Mongo分段扫描 进度实体")
+@Document(collection = "micro_base_scan_checkpoint")
+public class ScanCheckpointDoc extends BaseDocument {
+
+    private static final long serialVersionUID = 1L;
+
+    @ApiModelProperty("任务名")
+    private String jobName;
+
+    @ApiModelProperty("集合名")
+    private String collectionName;
+
+    @ApiModelProperty("分段序号,从0开始")
+    private Integer partition;
+
+    @ApiModelProperty("分段下界(不含,为空代表不限)")
+    private String lowerId;
+
+    @ApiModelProperty("分段上界(含,为空代表不限)")
+    private String upperId;
+
+    @ApiModelProperty("已处理的最后一个id(不含,为空代表未开始)")
+    private String lastId;
+
+    @ApiModelProperty("已处理数量")
+    private Long processedCount;
+
+    @ApiModelProperty("是否完成")
+    private Boolean done;
+
+}
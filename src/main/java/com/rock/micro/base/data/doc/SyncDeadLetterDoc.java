@@ -0,0 +1,43 @@
+package com.rock.micro.base.data.doc;
+
+import com.rock.micro.base.data.BaseDocument;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Mongo -> ES 同步死信(写入ES最终失败的文档,如 mapping 冲突;或转换失败的文档,如 mapper 异常)
+ * id 为 同步注册名:文档id,同一个文档只保留一条
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@Setter
+@Getter
+@ApiModel("Mongo同步ES 死信实体")
+@Document(collection = "micro_base_sync_dead_letter")
+public class SyncDeadLetterDoc extends BaseDocument {
+
+    private static final long serialVersionUID = 1L;
+
+    //操作类型-转换失败
+    public static final String OP_TYPE_CONVERT = "convert";
+
+    @ApiModelProperty("同步注册名")
+    private String syncName;
+
+    @ApiModelProperty("ES索引")
+    private String indexName;
+
+    @ApiModelProperty("文档id")
+    private String docId;
+
+    @ApiModelProperty("操作类型[index][delete][convert=转换失败]")
+    private String opType;
+
+    @ApiModelProperty("失败原因")
+    private String message;
+
+}
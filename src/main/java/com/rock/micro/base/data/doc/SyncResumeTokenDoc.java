@@ -0,0 +1,34 @@
+package com.rock.micro.base.data.doc;
+
+import com.rock.micro.base.data.BaseDocument;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Mongo -> ES 同步进度(change stream resume token)
+ * id 为同步注册名
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@Setter
+@Getter
+@ApiModel("Mongo同步ES 进度实体")
+@Document(collection = "micro_base_sync_resume_token")
+public class SyncResumeTokenDoc extends BaseDocument {
+
+    private static final long serialVersionUID = 1L;
+
+    @ApiModelProperty("change stream resume token(扩展json)")
+    private String resumeToken;
+
+    @ApiModelProperty("全量回填是否已完成")
+    private Boolean backfillDone;
+
+    @ApiModelProperty("累计同步数量")
+    private Long syncCount;
+
+}
@@ -12,6 +12,8 @@ import org.springframework.data.elasticsearch.core.AggregationsContainer;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * elastic search 服务基底
@@ -87,6 +89,45 @@ public interface BaseElasticSearchService<T extends BaseIndex> {
      */
     void batchUpdateSkipNull(List<T> indexList);
 
+    /**
+     * 对比快照与修改后的实体,只发送真正变化的字段(嵌套对象只发送变化的子字段),变为NULL的字段置为null
+     * 没有变化时不访问ES
+     *
+     * @param snapshot 修改前的实体(为空则视为全部字段都是新的)
+     * @param index    修改后的实体
+     * @return 是否发送了更新
+     */
+    boolean updateDiff(T snapshot, T index);
+
+    /**
+     * 后台批量创建,立即返回,由批量处理器按 数量/字节/时间 合并提交,失败自动重试
+     *
+     * @param indexList
+     */
+    void bulkCreate(List<T> indexList);
+
+    /**
+     * 后台批量更新,跳过NULL的字段,立即返回,由批量处理器合并提交
+     *
+     * @param indexList
+     */
+    void bulkUpdateSkipNull(List<T> indexList);
+
+    /**
+     * 后台批量真实删除,立即返回,由批量处理器合并提交
+     *
+     * @param clazz
+     * @param idList id列表
+     */
+    void bulkDelete(Class<T> clazz, List<String> idList);
+
+    /**
+     * 刷新该实体类缓存的索引信息(索引重建、别名切换后调用)
+     *
+     * @param clazz
+     */
+    void refreshIndex(Class<T> clazz);
+
     @Getter
     @Setter
     @ApiModel("ES查询响应对象实体")
@@ -101,8 +142,48 @@ public interface BaseElasticSearchService<T extends BaseIndex> {
         @ApiModelProperty("聚合搜索内容(有待更新)")
         private AggregationsContainer aggregations;
 
+        @ApiModelProperty("游标分页-下一页游标(为空代表没有下一页,仅游标分页时返回)")
+        private String nextToken;
+
+    }
+
+    @Getter
+    @Setter
+    @ApiModel("ES批量查询-单个查询")
+    class MultiSearchItem {
+
+        @ApiModelProperty("实体类")
+        private Class<?> clazz;
+
+        @ApiModelProperty("条件对象")
+        private QueryBuilder query;
+
+        @ApiModelProperty("聚合条件(可以为空)")
+        private AbstractAggregationBuilder aggregation;
+
+        @ApiModelProperty("限制返回字段(可以为空)")
+        private String[] fields;
+
+        @ApiModelProperty("分页-页码(可以为空)")
+        private Integer pageNum;
+
+        @ApiModelProperty("分页-数量(可以为空)")
+        private Integer pageSize;
+
+        @ApiModelProperty("限制排序(可以为空)")
+        private SortBuilder sort;
+
     }
 
+    /**
+     * 批量条件分页查询,多个查询合并为一次 _msearch 请求
+     * 同一请求内分散的查询可以通过 {@link ElasticSearchMultiSearchCollector} 登记后合并执行(需显式登记,rollPage 不会自动合并)
+     *
+     * @param itemList 查询列表
+     * @return 与查询列表顺序一一对应
+     */
+    List<RollPageResult<?>> multiRollPage(List<MultiSearchItem> itemList);
+
     /**
      * 条件分页查询
      *
@@ -164,4 +245,85 @@ public interface BaseElasticSearchService<T extends BaseIndex> {
      */
     RollPageResult<T> rollPage(Class<T> clazz, QueryBuilder query, AbstractAggregationBuilder abstractAggregationBuilder, String[] fields, Integer pageNum, Integer pageSize, SortBuilder sort);
 
+    /**
+     * 条件分页查询,结果缓存(适用于数据变化慢、查询代价高的看板聚合)
+     * 按 查询/聚合/字段/分页/排序 缓存,过期时间内相同查询不访问ES,通过本服务写入该实体类时缓存失效
+     *
+     * @param clazz                      实体类
+     * @param query                      条件对象
+     * @param abstractAggregationBuilder 聚合条件(可以为空)
+     * @param fields                     限制返回字段(可以为空)
+     * @param pageNum                    分页-页码(可以为空)
+     * @param pageSize                   分页-数量(可以为空)
+     * @param sort                       限制排序(可以为空)
+     * @return 列表中的实体和聚合内容是缓存共享的,不要修改
+     */
+    RollPageResult<T> rollPageCached(Class<T> clazz, QueryBuilder query, AbstractAggregationBuilder abstractAggregationBuilder, String[] fields, Integer pageNum, Integer pageSize, SortBuilder sort);
+
+    /**
+     * 条件计数,使用 _count 接口,不返回文档
+     *
+     * @param clazz 实体类
+     * @param query 条件对象
+     * @return
+     */
+    long count(Class<T> clazz, QueryBuilder query);
+
+    /**
+     * 是否存在,每个分片命中一条即停止,不统计总数,不返回文档内容
+     *
+     * @param clazz 实体类
+     * @param query 条件对象
+     * @return
+     */
+    boolean exists(Class<T> clazz, QueryBuilder query);
+
+    /**
+     * 索引预估总数(读取索引统计中主分片的文档数,不执行查询;nested 子文档会计入,未刷新的写入不计入)
+     *
+     * @param clazz 实体类
+     * @return
+     */
+    long estimatedCount(Class<T> clazz);
+
+    /**
+     * 游标分页查询(point in time + search_after),深分页时性能恒定,不受 10000 条窗口限制
+     * 第一页会打开一个 point in time 快照,之后的页都在该快照上翻页,最后一页自动关闭
+     * 只有第一页统计总数,之后的页沿用游标中记录的总数,不再重复计数
+     *
+     * @param clazz      实体类
+     * @param query      条件对象
+     * @param fields     限制返回字段(可以为空)
+     * @param pageSize   分页-数量
+     * @param sort       限制排序(可以为空),会自动追加 _shard_doc 作为唯一排序
+     * @param afterToken 上一页返回的游标(为空代表第一页)
+     * @return
+     */
+    RollPageResult<T> rollPageByCursor(Class<T> clazz, QueryBuilder query, String[] fields, Integer pageSize, SortBuilder sort, String afterToken);
+
+    /**
+     * 流式查询,按批从ES拉取,内存恒定,用完必须关闭(推荐 try-with-resources)
+     *
+     * @param clazz     实体类
+     * @param query     条件对象
+     * @param fields    限制返回字段(可以为空)
+     * @param batchSize 每批拉取数量,小于1则用默认
+     * @return
+     */
+    Stream<T> stream(Class<T> clazz, QueryBuilder query, String[] fields, int batchSize);
+
+    /**
+     * 分片并行导出,每个分片一个 scroll 并行拉取,每拉取一批回调一次,内存恒定
+     * 注意:分片数大于1时,回调会在多个线程中并发执行,回调内部需要线程安全
+     *
+     * @param clazz     实体类
+     * @param query     条件对象
+     * @param fields    限制返回字段(可以为空)
+     * @param batchSize 每批拉取数量,小于1则用默认
+     * @param slices    分片数,小于等于1则单线程流式导出;不超过配置的最大并行数及索引主分片数
+     * @param consumer  每批回调
+     * @return 导出总数
+     */
+    long export(Class<T> clazz, QueryBuilder query, String[] fields, int batchSize, int slices, Consumer<List<T>> consumer);
+
 }
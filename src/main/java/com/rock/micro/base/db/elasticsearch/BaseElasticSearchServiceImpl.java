@@ -1,31 +1,79 @@
 package com.rock.micro.base.db.elasticsearch;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
+import com.rock.micro.base.common.api.MyException;
+import com.rock.micro.base.common.elasticsearch.ElasticSearchBulkProcessor;
+import com.rock.micro.base.common.elasticsearch.ElasticSearchIndexRegistry;
+import com.rock.micro.base.common.elasticsearch.ElasticSearchQueryCache;
 import com.rock.micro.base.data.BaseIndex;
-import com.rock.micro.base.util.FastJsonExtraUtils;
+import com.rock.micro.base.util.ElasticSearchExtraUtils;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.ClosePointInTimeRequest;
+import org.elasticsearch.action.search.OpenPointInTimeRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.core.CountRequest;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.index.query.IdsQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
 import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
 import org.springframework.data.elasticsearch.core.document.Document;
 import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.data.util.StreamUtils;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * mongo 服务基底实现
@@ -38,15 +86,53 @@ public class BaseElasticSearchServiceImpl<T extends BaseIndex> implements BaseEl
 
     private static final Logger LOG = LoggerFactory.getLogger(BaseElasticSearchServiceImpl.class);
 
+    //游标分页token-快照key
+    private static final String CURSOR_TOKEN_KEY_PIT = "pit";
+    //游标分页token-排序值key
+    private static final String CURSOR_TOKEN_KEY_AFTER = "after";
+    //游标分页token-总数key(只在第一页统计,之后的页沿用)
+    private static final String CURSOR_TOKEN_KEY_TOTAL = "total";
+    //游标分页唯一排序字段,point in time 自带的分片内文档序号,不依赖索引映射
+    private static final String CURSOR_TIEBREAKER_FIELD = "_shard_doc";
+
+    //流式查询默认每批拉取数量
+    private static final int DEFAULT_STREAM_BATCH_SIZE = 1000;
+
     @Autowired
     private ElasticsearchRestTemplate elasticsearchRestTemplate;
 
+    @Autowired
+    private ElasticSearchIndexRegistry elasticSearchIndexRegistry;
+
+    @Autowired
+    private ElasticSearchBulkProcessor elasticSearchBulkProcessor;
+
+    @Autowired
+    private RestHighLevelClient restHighLevelClient;
+
+    @Autowired
+    private ElasticSearchQueryCache elasticSearchQueryCache;
+
+    //游标分页 point in time 快照保留时间(每次翻页会续期)
+    @Value("${micro.base.elasticsearch.pit-keep-alive:1m}")
+    private String pitKeepAlive;
+
+    //分片导出 scroll 保留时间(每批续期)
+    @Value("${micro.base.elasticsearch.export.scroll-keep-alive:1m}")
+    private String exportScrollKeepAlive;
+
+    //分片导出最大并行数,同时不超过索引主分片数
+    @Value("${micro.base.elasticsearch.export.max-parallelism:8}")
+    private int exportMaxParallelism;
+
     @Override
     public T create(T index) {
         //创建前初始化
         BaseIndex.createBuild(index);
         //插入
         elasticsearchRestTemplate.save(index);
+        //缓存失效
+        elasticSearchQueryCache.invalidate(index.getClass());
         //返回
         return index;
     }
@@ -60,6 +146,8 @@ public class BaseElasticSearchServiceImpl<T extends BaseIndex> implements BaseEl
         }
         //批量插入
         elasticsearchRestTemplate.save(indexList);
+        //缓存失效
+        indexList.stream().map(Object::getClass).distinct().forEach(elasticSearchQueryCache::invalidate);
         //返回
         return indexList;
     }
@@ -90,6 +178,8 @@ public class BaseElasticSearchServiceImpl<T extends BaseIndex> implements BaseEl
     public void delete(Class<T> clazz, String id) {
         //删除
         elasticsearchRestTemplate.delete(id, clazz);
+        //缓存失效
+        elasticSearchQueryCache.invalidate(clazz);
     }
 
     @Override
@@ -101,12 +191,14 @@ public class BaseElasticSearchServiceImpl<T extends BaseIndex> implements BaseEl
             //过
             return;
         }
-        //将实体解析为document
-        Document document = Document.parse(FastJsonExtraUtils.toJSONString(index));
+        //按实体映射直接转为document,NULL字段不写入
+        Document document = toDocument(index);
         //初始化updateQuery
         UpdateQuery updateQuery = UpdateQuery.builder(id).withDocument(document).build();
         //更新
         elasticsearchRestTemplate.update(updateQuery, getIndex(index));
+        //缓存失效
+        elasticSearchQueryCache.invalidate(index.getClass());
     }
 
     @Override
@@ -127,8 +219,8 @@ public class BaseElasticSearchServiceImpl<T extends BaseIndex> implements BaseEl
                 //本轮过
                 continue;
             }
-            //将实体解析为document
-            Document document = Document.parse(FastJsonExtraUtils.toJSONString(index));
+            //按实体映射直接转为document,NULL字段不写入
+            Document document = toDocument(index);
             //初始化updateQuery
             UpdateQuery updateQuery = UpdateQuery.builder(id).withDocument(document).build();
             //组装
@@ -138,9 +230,85 @@ public class BaseElasticSearchServiceImpl<T extends BaseIndex> implements BaseEl
         if (CollectionUtils.isNotEmpty(updateQueryList)) {
             //批量更新
             elasticsearchRestTemplate.bulkUpdate(updateQueryList, getIndex(indexList.get(0)));
+            //缓存失效
+            elasticSearchQueryCache.invalidate(indexList.get(0).getClass());
         }
     }
 
+    @Override
+    public boolean updateDiff(T snapshot, T index) {
+        //获取id
+        String id = index.getId();
+        //判空
+        if (StringUtils.isBlank(id)) {
+            //过
+            return false;
+        }
+        //对比,只保留变化的字段
+        Map<String, Object> diff = diff(snapshot == null ? new HashMap<>() : toDocument(snapshot), toDocument(index));
+        //如果没有变化
+        if (diff.isEmpty()) {
+            //不访问ES
+            return false;
+        }
+        //初始化updateQuery
+        UpdateQuery updateQuery = UpdateQuery.builder(id).withDocument(Document.from(diff)).build();
+        //更新
+        elasticsearchRestTemplate.update(updateQuery, getIndex(index));
+        //缓存失效
+        elasticSearchQueryCache.invalidate(index.getClass());
+        //返回
+        return true;
+    }
+
+    /**
+     * 对比两个文档,返回需要局部更新的内容
+     * 嵌套对象递归对比,只保留变化的子字段(ES局部更新会合并嵌套对象);数组整体对比;变为NULL的字段显式置为null
+     *
+     * @param oldMap 旧文档
+     * @param newMap 新文档
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> diff(Map<String, Object> oldMap, Map<String, Object> newMap) {
+        //变化的内容
+        Map<String, Object> diff = new LinkedHashMap<>();
+        //新文档有的字段
+        for (Map.Entry<String, Object> entry : newMap.entrySet()) {
+            //字段名
+            String key = entry.getKey();
+            //新值
+            Object value = entry.getValue();
+            //旧值
+            Object oldValue = oldMap.get(key);
+            //如果都是嵌套对象
+            if (value instanceof Map && oldValue instanceof Map) {
+                //递归
+                Map<String, Object> subDiff = diff((Map<String, Object>) oldValue, (Map<String, Object>) value);
+                //如果有变化
+                if (subDiff.isEmpty() == false) {
+                    diff.put(key, subDiff);
+                }
+                //本轮过
+                continue;
+            }
+            //如果有变化
+            if (Objects.equals(value, oldValue) == false) {
+                diff.put(key, value);
+            }
+        }
+        //旧文档有、新文档没有的字段
+        for (Map.Entry<String, Object> entry : oldMap.entrySet()) {
+            //如果被删除
+            if (newMap.containsKey(entry.getKey()) == false && entry.getValue() != null) {
+                //置为null
+                diff.put(entry.getKey(), null);
+            }
+        }
+        //返回
+        return diff;
+    }
+
     @Override
     public RollPageResult<T> rollPage(Class<T> clazz, QueryBuilder query, Integer pageNum, Integer pageSize) {
         //实现
@@ -167,77 +335,549 @@ public class BaseElasticSearchServiceImpl<T extends BaseIndex> implements BaseEl
 
     @Override
     public RollPageResult<T> rollPage(Class<T> clazz, QueryBuilder query, AbstractAggregationBuilder abstractAggregationBuilder, String[] fields, Integer pageNum, Integer pageSize, SortBuilder sort) {
-        //初始化searchBuilder
-        NativeSearchQueryBuilder nativeSearchQueryBuilder = new NativeSearchQueryBuilder();
-        //组装查询条件
-        nativeSearchQueryBuilder.withQuery(query);
+        //组装查询对象
+        NativeSearchQuery nativeSearchQuery = ElasticSearchExtraUtils.buildQuery(query, abstractAggregationBuilder, fields, pageNum, pageSize, sort);
+        //查询
+        SearchHits<T> searchHits = elasticsearchRestTemplate.search(nativeSearchQuery, clazz, getIndex(clazz));
+        //返回
+        return ElasticSearchExtraUtils.toRollPageResult(searchHits);
+    }
+
+    @Override
+    public RollPageResult<T> rollPageCached(Class<T> clazz, QueryBuilder query, AbstractAggregationBuilder abstractAggregationBuilder, String[] fields, Integer pageNum, Integer pageSize, SortBuilder sort) {
+        //未命中时查询并缓存
+        return elasticSearchQueryCache.get(clazz, query, abstractAggregationBuilder, fields, pageNum, pageSize, sort,
+                () -> rollPage(clazz, query, abstractAggregationBuilder, fields, pageNum, pageSize, sort));
+    }
+
+    @Override
+    public long count(Class<T> clazz, QueryBuilder query) {
+        //初始化 _count 请求
+        CountRequest countRequest = new CountRequest(getIndex(clazz).getIndexNames());
+        //如果有条件
+        if (query != null) {
+            countRequest.query(query);
+        }
+        try {
+            //实现
+            return restHighLevelClient.count(countRequest, RequestOptions.DEFAULT).getCount();
+        } catch (IOException e) {
+            throw new MyException("ES计数失败:" + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean exists(Class<T> clazz, QueryBuilder query) {
+        //只取一条,不返回内容,不统计总数,每个分片命中一条即停止
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                .query(query)
+                .size(1)
+                .fetchSource(false)
+                .trackTotalHits(false)
+                .terminateAfter(1);
+        try {
+            //查询
+            SearchResponse response = restHighLevelClient.search(new SearchRequest(getIndex(clazz).getIndexNames()).source(sourceBuilder), RequestOptions.DEFAULT);
+            //实现
+            return response.getHits().getHits().length > 0;
+        } catch (IOException e) {
+            throw new MyException("ES查询是否存在失败:" + e.getMessage());
+        }
+    }
+
+    @Override
+    public long estimatedCount(Class<T> clazz) {
+        //索引统计,只取主分片文档数,不执行查询
+        Request request = new Request("GET", "/" + String.join(",", getIndex(clazz).getIndexNames()) + "/_stats/docs");
+        request.addParameter("filter_path", "_all.primaries.docs.count");
+        try {
+            //实现
+            Response response = restHighLevelClient.getLowLevelClient().performRequest(request);
+            //解析
+            JSONObject stats = JSON.parseObject(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+            //索引为空时没有该字段
+            return Optional.ofNullable(stats.getJSONObject("_all"))
+                    .map(all -> all.getJSONObject("primaries"))
+                    .map(primaries -> primaries.getJSONObject("docs"))
+                    .map(docs -> docs.getLongValue("count"))
+                    .orElse(0L);
+        } catch (IOException e) {
+            throw new MyException("ES预估计数失败:" + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<RollPageResult<?>> multiRollPage(List<MultiSearchItem> itemList) {
+        //实现
+        return ElasticSearchExtraUtils.multiRollPage(elasticsearchRestTemplate, itemList);
+    }
+
+    @Override
+    public RollPageResult<T> rollPageByCursor(Class<T> clazz, QueryBuilder query, String[] fields, Integer pageSize, SortBuilder sort, String afterToken) {
+
+        /**
+         * 游标
+         */
+
+        //分页数量
+        int size = pageSize == null || pageSize < 1 ? 10 : pageSize;
+        //point in time id
+        String pitId;
+        //上一页最后一条的排序值
+        Object[] searchAfter = null;
+        //第一页统计的总数
+        Long total = null;
+        //如果是第一页
+        if (StringUtils.isBlank(afterToken)) {
+            //打开快照
+            pitId = openPointInTime(clazz);
+        } else {
+            //解析游标
+            JSONObject token = decodeCursorToken(afterToken);
+            //组装
+            pitId = token.getString(CURSOR_TOKEN_KEY_PIT);
+            searchAfter = token.getJSONArray(CURSOR_TOKEN_KEY_AFTER).toArray();
+            total = token.getLong(CURSOR_TOKEN_KEY_TOTAL);
+        }
+
+        /**
+         * 查询条件
+         */
+
+        //初始化
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                .query(query)
+                .size(size)
+                //只有第一页统计总数,之后的页不再计数,保证每页耗时恒定
+                .trackTotalHits(searchAfter == null)
+                .pointInTimeBuilder(new PointInTimeBuilder(pitId).setKeepAlive(TimeValue.parseTimeValue(pitKeepAlive, "pitKeepAlive")));
         //如果要限制返回字段
         if (fields != null && fields.length > 0) {
             //限制返回字段
-            nativeSearchQueryBuilder.withFields(fields);
+            sourceBuilder.fetchSource(fields, null);
         }
         //如果要限制排序
         if (sort != null) {
             //限制排序
-            nativeSearchQueryBuilder.withSort(sort);
+            sourceBuilder.sort(sort);
+        }
+        //唯一排序,保证翻页稳定
+        sourceBuilder.sort(SortBuilders.fieldSort(CURSOR_TIEBREAKER_FIELD).order(SortOrder.ASC));
+        //如果不是第一页
+        if (searchAfter != null) {
+            //从上一页最后一条之后开始
+            sourceBuilder.searchAfter(searchAfter);
         }
-        //如果要加入聚合
-        if (abstractAggregationBuilder != null) {
-            //聚合搜索
-            nativeSearchQueryBuilder.addAggregation(abstractAggregationBuilder);
+
+        /**
+         * 查询
+         */
+
+        //point in time 查询不能指定索引
+        SearchResponse response;
+        try {
+            response = restHighLevelClient.search(new SearchRequest().source(sourceBuilder), RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            throw new MyException("ES游标分页查询失败:" + e.getMessage());
         }
-        //build
-        NativeSearchQuery nativeSearchQuery = nativeSearchQueryBuilder.build();
+        //结果
+        SearchHit[] hits = response.getHits().getHits();
         //初始化
         RollPageResult<T> result = new RollPageResult<T>();
-        //如果需要分页
-        if (pageNum != null && pageSize != null && pageNum > 0 && pageSize > 0) {
-            //初始化分页
-            PageRequest pageRequest = PageRequest.of(pageNum - 1, pageSize);
-            //设置分页
-            nativeSearchQuery.setPageable(pageRequest);
+        //第一页记录总数,之后的页沿用第一页的
+        if (searchAfter == null) {
+            total = response.getHits().getTotalHits() == null ? 0L : response.getHits().getTotalHits().value;
         }
-        //查询
-        SearchHits<T> searchHits = elasticsearchRestTemplate.search(nativeSearchQuery, clazz, getIndex(clazz));
         //记录总数
-        result.setTotal(searchHits.getTotalHits());
+        result.setTotal(total == null ? -1L : total);
         //将返回实体拆包
-        result.setList(searchHits.getSearchHits().stream().map(p -> p.getContent()).collect(Collectors.toList()));
-        //获取聚合内容并组装
-        result.setAggregations(searchHits.getAggregations());
+        result.setList(Arrays.stream(hits).map(hit -> toEntity(clazz, hit)).collect(Collectors.toList()));
+        //快照id每次查询后可能变化,使用最新的
+        String nextPitId = StringUtils.isNotBlank(response.pointInTimeId()) ? response.pointInTimeId() : pitId;
+        //如果满页,可能还有下一页
+        if (hits.length >= size) {
+            //下一页游标
+            result.setNextToken(encodeCursorToken(nextPitId, hits[hits.length - 1].getSortValues(), total));
+        } else {
+            //最后一页,关闭快照
+            closePointInTime(nextPitId);
+        }
         //返回
         return result;
     }
 
+    @Override
+    public Stream<T> stream(Class<T> clazz, QueryBuilder query, String[] fields, int batchSize) {
+        //初始化searchBuilder
+        NativeSearchQueryBuilder nativeSearchQueryBuilder = new NativeSearchQueryBuilder();
+        //组装查询条件
+        nativeSearchQueryBuilder.withQuery(query);
+        //如果要限制返回字段
+        if (fields != null && fields.length > 0) {
+            //限制返回字段
+            nativeSearchQueryBuilder.withFields(fields);
+        }
+        //每批拉取数量
+        nativeSearchQueryBuilder.withPageable(PageRequest.of(0, batchSize > 0 ? batchSize : DEFAULT_STREAM_BATCH_SIZE));
+        //scroll 迭代器,关闭时清理 scroll
+        SearchHitsIterator<T> iterator = elasticsearchRestTemplate.searchForStream(nativeSearchQueryBuilder.build(), clazz, getIndex(clazz));
+        //转为流
+        return StreamUtils.createStreamFromIterator(iterator).map(hit -> hit.getContent());
+    }
+
+    @Override
+    public long export(Class<T> clazz, QueryBuilder query, String[] fields, int batchSize, int slices, Consumer<List<T>> consumer) {
+        //每批拉取数量
+        int size = batchSize > 0 ? batchSize : DEFAULT_STREAM_BATCH_SIZE;
+        //如果需要分片,分片数不超过配置上限及主分片数,超过主分片数只会互相争抢,不会更快
+        if (slices > 1) {
+            slices = Math.min(slices, Math.min(Math.max(exportMaxParallelism, 1), getPrimaryShards(clazz)));
+        }
+        //如果不需要分片
+        if (slices <= 1) {
+            //总数
+            long total = 0L;
+            //当前批
+            List<T> batch = new ArrayList<>(size);
+            //流式导出
+            try (Stream<T> stream = stream(clazz, query, fields, size)) {
+                //循环
+                Iterator<T> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    //加入
+                    batch.add(iterator.next());
+                    //如果满一批
+                    if (batch.size() >= size) {
+                        //回调
+                        consumer.accept(batch);
+                        total += batch.size();
+                        batch = new ArrayList<>(size);
+                    }
+                }
+            }
+            //最后一批
+            if (batch.isEmpty() == false) {
+                consumer.accept(batch);
+                total += batch.size();
+            }
+            //返回
+            return total;
+        }
+        //最终分片数
+        int sliceCount = slices;
+        //本次专用线程池,执行完关闭
+        ExecutorService executor = Executors.newFixedThreadPool(sliceCount);
+        try {
+            //每个分片一个任务
+            List<CompletableFuture<Long>> futureList = new ArrayList<>(sliceCount);
+            for (int i = 0; i < sliceCount; i++) {
+                //分片id
+                int sliceId = i;
+                //提交
+                futureList.add(CompletableFuture.supplyAsync(() -> exportSlice(clazz, query, fields, size, sliceId, sliceCount, consumer), executor));
+            }
+            //汇总
+            return futureList.stream().mapToLong(CompletableFuture::join).sum();
+        } catch (CompletionException e) {
+            //抛出原始异常
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        } finally {
+            //关闭
+            executor.shutdown();
+        }
+    }
+
     /**
-     * 根据实体,获取索引对象
+     * 获取索引主分片总数(多个物理索引时累加),获取失败返回1
+     *
+     * @param clazz 实体类
+     * @return
+     */
+    private int getPrimaryShards(Class<T> clazz) {
+        try {
+            //只取主分片数配置
+            GetSettingsResponse response = restHighLevelClient.indices().getSettings(new GetSettingsRequest()
+                    .indices(getIndex(clazz).getIndexNames()).names(IndexMetadata.SETTING_NUMBER_OF_SHARDS), RequestOptions.DEFAULT);
+            //累加
+            int total = 0;
+            for (ObjectObjectCursor<String, Settings> cursor : response.getIndexToSettings()) {
+                total += cursor.value.getAsInt(IndexMetadata.SETTING_NUMBER_OF_SHARDS, 1);
+            }
+            //返回
+            return Math.max(total, 1);
+        } catch (Exception e) {
+            //获取失败按单分片处理
+            LOG.warn("BaseElasticSearchServiceImpl getPrimaryShards error", e);
+            return 1;
+        }
+    }
+
+    /**
+     * 导出一个分片(sliced scroll)
+     *
+     * @param clazz    实体类
+     * @param query    条件对象
+     * @param fields   限制返回字段(可以为空)
+     * @param size     每批拉取数量
+     * @param sliceId  分片id
+     * @param slices   分片数
+     * @param consumer 每批回调
+     * @return 本分片导出数量
+     */
+    private long exportSlice(Class<T> clazz, QueryBuilder query, String[] fields, int size, int sliceId, int slices, Consumer<List<T>> consumer) {
+        //scroll 保留时间
+        TimeValue keepAlive = TimeValue.parseTimeValue(exportScrollKeepAlive, "exportScrollKeepAlive");
+        //查询条件,按 _doc 排序效率最高
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                .query(query)
+                .size(size)
+                .slice(new SliceBuilder(sliceId, slices))
+                .sort(SortBuilders.fieldSort("_doc"));
+        //如果要限制返回字段
+        if (fields != null && fields.length > 0) {
+            //限制返回字段
+            sourceBuilder.fetchSource(fields, null);
+        }
+        //总数
+        long total = 0L;
+        //scroll id
+        String scrollId = null;
+        try {
+            //第一批
+            SearchResponse response = restHighLevelClient.search(new SearchRequest(getIndex(clazz).getIndexNames()).source(sourceBuilder).scroll(keepAlive), RequestOptions.DEFAULT);
+            //循环
+            while (true) {
+                //记录
+                scrollId = response.getScrollId();
+                //结果
+                SearchHit[] hits = response.getHits().getHits();
+                //如果没有了
+                if (hits.length == 0) {
+                    break;
+                }
+                //回调
+                consumer.accept(Arrays.stream(hits).map(hit -> toEntity(clazz, hit)).collect(Collectors.toList()));
+                total += hits.length;
+                //下一批
+                response = restHighLevelClient.scroll(new SearchScrollRequest(scrollId).scroll(keepAlive), RequestOptions.DEFAULT);
+            }
+        } catch (IOException e) {
+            throw new MyException("ES分片导出失败:" + e.getMessage());
+        } finally {
+            //清理 scroll
+            clearScroll(scrollId);
+        }
+        //返回
+        return total;
+    }
+
+    /**
+     * 清理 scroll,失败不影响结果,到期会自动释放
+     *
+     * @param scrollId
+     */
+    private void clearScroll(String scrollId) {
+        //判空
+        if (StringUtils.isBlank(scrollId)) {
+            //过
+            return;
+        }
+        try {
+            //初始化
+            ClearScrollRequest request = new ClearScrollRequest();
+            request.addScrollId(scrollId);
+            //实现
+            restHighLevelClient.clearScroll(request, RequestOptions.DEFAULT);
+        } catch (Exception e) {
+            LOG.warn("ES clearScroll error:[{}]", e.getMessage());
+        }
+    }
+
+    /**
+     * 打开 point in time 快照
+     *
+     * @param clazz 实体类
+     * @return
+     */
+    private String openPointInTime(Class<T> clazz) {
+        try {
+            //实现
+            return restHighLevelClient.openPointInTime(new OpenPointInTimeRequest(getIndex(clazz).getIndexNames())
+                    .keepAlive(TimeValue.parseTimeValue(pitKeepAlive, "pitKeepAlive")), RequestOptions.DEFAULT).getPointInTimeId();
+        } catch (IOException e) {
+            throw new MyException("ES打开point in time失败:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 关闭 point in time 快照,失败不影响结果,到期会自动释放
+     *
+     * @param pitId
+     */
+    private void closePointInTime(String pitId) {
+        try {
+            //实现
+            restHighLevelClient.closePointInTime(new ClosePointInTimeRequest(pitId), RequestOptions.DEFAULT);
+        } catch (Exception e) {
+            LOG.warn("ES closePointInTime error:[{}]", e.getMessage());
+        }
+    }
+
+    /**
+     * 生成游标分页的游标
+     *
+     * @param pitId      point in time id
+     * @param sortValues 本页最后一条的排序值
+     * @param total      第一页统计的总数
+     * @return url安全的base64
+     */
+    private String encodeCursorToken(String pitId, Object[] sortValues, Long total) {
+        //组装
+        JSONObject token = new JSONObject();
+        token.put(CURSOR_TOKEN_KEY_PIT, pitId);
+        token.put(CURSOR_TOKEN_KEY_AFTER, sortValues);
+        token.put(CURSOR_TOKEN_KEY_TOTAL, total);
+        //转为url安全的base64
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.toJSONString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标分页的游标
+     *
+     * @param afterToken 游标
+     * @return
+     */
+    private JSONObject decodeCursorToken(String afterToken) {
+        try {
+            //解析
+            JSONObject token = JSON.parseObject(new String(Base64.getUrlDecoder().decode(afterToken), StandardCharsets.UTF_8));
+            //校验
+            if (StringUtils.isBlank(token.getString(CURSOR_TOKEN_KEY_PIT)) || token.getJSONArray(CURSOR_TOKEN_KEY_AFTER) == null) {
+                throw new MyException("游标分页token不合法");
+            }
+            //返回
+            return token;
+        } catch (MyException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MyException("游标分页token不合法");
+        }
+    }
+
+    /**
+     * 查询结果转为实体
+     *
+     * @param clazz 实体类
+     * @param hit   查询结果
+     * @return
+     */
+    private T toEntity(Class<T> clazz, SearchHit hit) {
+        //按实体映射转换
+        T entity = elasticsearchRestTemplate.getElasticsearchConverter().read(clazz, Document.from(hit.getSourceAsMap()));
+        //id以文档id为准
+        entity.setId(hit.getId());
+        //返回
+        return entity;
+    }
+
+    @Override
+    public void bulkCreate(List<T> indexList) {
+        //判空
+        if (CollectionUtils.isEmpty(indexList)) {
+            //过
+            return;
+        }
+        //循环
+        for (T index : indexList) {
+            //创建前初始化
+            BaseIndex.createBuild(index);
+            //加入批量处理器
+            elasticSearchBulkProcessor.index(getIndex(index).getIndexName(), index.getId(), toDocument(index).toJson());
+        }
+        //缓存失效(批量写入是异步的,提交前仍可能缓存到旧数据,由过期时间兜底)
+        indexList.stream().map(Object::getClass).distinct().forEach(elasticSearchQueryCache::invalidate);
+    }
+
+    @Override
+    public void bulkUpdateSkipNull(List<T> indexList) {
+        //判空
+        if (CollectionUtils.isEmpty(indexList)) {
+            //过
+            return;
+        }
+        //循环
+        for (T index : indexList) {
+            //获取id
+            String id = index.getId();
+            //判空
+            if (StringUtils.isBlank(id)) {
+                //本轮过
+                continue;
+            }
+            //加入批量处理器,转换时NULL字段不会写入
+            elasticSearchBulkProcessor.update(getIndex(index).getIndexName(), id, toDocument(index).toJson(), false);
+        }
+        //缓存失效(批量写入是异步的,提交前仍可能缓存到旧数据,由过期时间兜底)
+        indexList.stream().map(Object::getClass).distinct().forEach(elasticSearchQueryCache::invalidate);
+    }
+
+    @Override
+    public void bulkDelete(Class<T> clazz, List<String> idList) {
+        //判空
+        if (CollectionUtils.isEmpty(idList)) {
+            //过
+            return;
+        }
+        //写入用的索引
+        String indexName = elasticSearchIndexRegistry.getWriteIndex(clazz).getIndexName();
+        //循环
+        for (String id : idList) {
+            //加入批量处理器
+            elasticSearchBulkProcessor.delete(indexName, id);
+        }
+        //缓存失效(批量写入是异步的,提交前仍可能缓存到旧数据,由过期时间兜底)
+        elasticSearchQueryCache.invalidate(clazz);
+    }
+
+    /**
+     * 实体转为ES文档(按实体映射转换,NULL字段不写入)
+     *
+     * @param index
+     * @return
+     */
+    private Document toDocument(T index) {
+        //实现
+        return elasticsearchRestTemplate.getElasticsearchConverter().mapObject(index);
+    }
+
+    @Override
+    public void refreshIndex(Class<T> clazz) {
+        //删除缓存,下次使用时重新解析
+        elasticSearchIndexRegistry.refresh(clazz);
+        //索引切换后查询结果缓存失效
+        elasticSearchQueryCache.invalidate(clazz);
+    }
+
+    /**
+     * 根据实体,获取写入用的索引对象(每个类只解析一次)
      *
      * @param index
      * @return
      */
     private IndexCoordinates getIndex(T index) {
-        //获取索引settings
-        Map<String, Object> settings = elasticsearchRestTemplate.indexOps(index.getClass()).getSettings();
-        //获取索引名
-        String indexName = settings.getOrDefault("index.provided_name", "none").toString();
-        //返回
-        return IndexCoordinates.of(indexName);
+        //实现
+        return elasticSearchIndexRegistry.getWriteIndex(index.getClass());
     }
 
     /**
-     * 根据类,获取索引对象
+     * 根据类,获取查询用的索引对象(实体声明的索引名或别名,不需要网络请求)
      *
      * @param clazz
      * @return
      */
     private IndexCoordinates getIndex(Class<T> clazz) {
-        //获取索引settings
-        Map<String, Object> settings = elasticsearchRestTemplate.indexOps(clazz).getSettings();
-        //获取索引名
-        String indexName = settings.getOrDefault("index.provided_name", "none").toString();
-        //返回
-        return IndexCoordinates.of(indexName);
+        //实现
+        return elasticSearchIndexRegistry.getSearchIndex(clazz);
     }
 
 }
-
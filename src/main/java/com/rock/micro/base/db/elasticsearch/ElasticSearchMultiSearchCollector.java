@@ -0,0 +1,132 @@
+package com.rock.micro.base.db.elasticsearch;
+
+import com.rock.micro.base.util.ElasticSearchExtraUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * elastic search 请求级批量查询收集器
+ * -
+ * 同一个http请求内,先 {@link #add} 登记所有查询,拿到结果句柄
+ * 第一次调用任意句柄的 {@link Handle#get()} 时,把尚未执行的查询合并为一次 _msearch 执行
+ * 之后登记的查询会在下一次 get 时再合并执行
+ * -
+ * 注意:合并是显式的(先 add 再 get),{@link BaseElasticSearchService#rollPage} 是同步返回结果的,不会经过这里;
+ * 需要合并的查询请改为通过本收集器登记,或直接调用 {@link BaseElasticSearchService#multiRollPage}
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+@Component
+@RequestScope
+public class ElasticSearchMultiSearchCollector {
+
+    @Autowired
+    private ElasticsearchRestTemplate elasticsearchRestTemplate;
+
+    //尚未执行的查询
+    private final List<Handle<?>> pendingList = new ArrayList<>();
+
+    /**
+     * 登记一个查询,延迟到第一次获取结果时合并执行
+     *
+     * @param item 查询
+     * @return 结果句柄
+     */
+    public synchronized <T> Handle<T> add(BaseElasticSearchService.MultiSearchItem item) {
+        //初始化句柄
+        Handle<T> handle = new Handle<>(this, item);
+        //登记
+        this.pendingList.add(handle);
+        //返回
+        return handle;
+    }
+
+    /**
+     * 立即合并执行所有尚未执行的查询
+     */
+    @SuppressWarnings("unchecked")
+    public void flush() {
+        //本次执行的句柄
+        List<Handle<?>> handleList;
+        //加锁只做交换,网络请求在锁外执行,不阻塞其他线程登记
+        synchronized (this) {
+            //判空
+            if (this.pendingList.isEmpty()) {
+                //过
+                return;
+            }
+            //取出
+            handleList = new ArrayList<>(this.pendingList);
+            //清空
+            this.pendingList.clear();
+        }
+        //查询列表
+        List<BaseElasticSearchService.MultiSearchItem> itemList = new ArrayList<>(handleList.size());
+        for (Handle<?> handle : handleList) {
+            itemList.add(handle.item);
+        }
+        try {
+            //一次 _msearch
+            List<BaseElasticSearchService.RollPageResult<?>> resultList = ElasticSearchExtraUtils.multiRollPage(this.elasticsearchRestTemplate, itemList);
+            //填充结果
+            for (int i = 0; i < handleList.size(); i++) {
+                ((Handle<Object>) handleList.get(i)).future.complete((BaseElasticSearchService.RollPageResult<Object>) resultList.get(i));
+            }
+        } catch (RuntimeException e) {
+            //本批全部失败
+            for (Handle<?> handle : handleList) {
+                handle.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 查询结果句柄
+     */
+    public static class Handle<T> {
+
+        //所属收集器
+        private final ElasticSearchMultiSearchCollector collector;
+
+        //查询
+        private final BaseElasticSearchService.MultiSearchItem item;
+
+        //结果
+        private final CompletableFuture<BaseElasticSearchService.RollPageResult<T>> future = new CompletableFuture<>();
+
+        private Handle(ElasticSearchMultiSearchCollector collector, BaseElasticSearchService.MultiSearchItem item) {
+            this.collector = collector;
+            this.item = item;
+        }
+
+        /**
+         * 获取结果,尚未执行时会合并执行所有登记的查询
+         *
+         * @return
+         */
+        public BaseElasticSearchService.RollPageResult<T> get() {
+            //如果尚未执行
+            if (this.future.isDone() == false) {
+                //合并执行(已被其他线程取走执行时,这里什么都不做,下面等待其结果)
+                this.collector.flush();
+            }
+            try {
+                //返回
+                return this.future.join();
+            } catch (CompletionException e) {
+                //抛出原始异常
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+    }
+
+}
@@ -5,10 +5,14 @@ import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.Getter;
 import lombok.Setter;
+import org.bson.Document;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * mongo服务基底
@@ -108,6 +112,62 @@ public interface BaseMongoService<T extends BaseDocument> {
      */
     List<String> listAllId();
 
+    /**
+     * 游标流式查询,内存恒定,用完必须关闭(推荐 try-with-resources)
+     *
+     * @param query     查询条件
+     * @param batchSize 游标每批拉取数量,小于1则用默认
+     * @return
+     */
+    Stream<T> stream(Query query, int batchSize);
+
+    /**
+     * 游标流式获取所有,限制返回参数,用完必须关闭
+     *
+     * @param fields 限制返回参数
+     * @return
+     */
+    Stream<T> streamAll(String fields);
+
+    /**
+     * 游标流式获取所有id,用完必须关闭
+     *
+     * @return
+     */
+    Stream<String> streamAllId();
+
+    /**
+     * 根据id列表,游标流式查询多个,限制返回参数,用完必须关闭
+     *
+     * @param idList id列表
+     * @param fields 限制返回参数
+     * @return
+     */
+    Stream<T> streamByIdList(Collection<String> idList, String fields);
+
+    /**
+     * 游标分批消费,每凑够一批回调一次,内存恒定
+     *
+     * @param query     查询条件
+     * @param batchSize 每批数量,同时作为游标每批拉取数量,小于1则用默认
+     * @param consumer  每批回调
+     * @return 处理总数
+     */
+    long batchConsume(Query query, int batchSize, Consumer<List<T>> consumer);
+
+    /**
+     * 分段并行扫描,按 _id 取值区间把结果切分为 N 个连续区间(雪花id按时间有序,其他格式的 id 不分段),多个线程同时分批消费
+     * 传入任务名时每批处理完记录进度,失败后用同一个任务名重新调用,从断点继续,全部完成后清除进度
+     *
+     * @param jobName    任务名(为空则不记录进度)
+     * @param query      查询条件(为空则扫描全集合)
+     * @param partitions 分段数
+     * @param batchSize  每批数量,小于1则用默认
+     * @param consumer   每批回调,会被多个线程同时调用,需要线程安全
+     * @return 本次处理总数
+     */
+    long parallelScan(String jobName, Query query, int partitions, int batchSize, Consumer<List<T>> consumer);
+
     /**
      * 根据id,真实删除
      *
@@ -132,6 +192,24 @@ public interface BaseMongoService<T extends BaseDocument> {
      */
     boolean updateSkipNullById(T document);
 
+    /**
+     * 获取实体当前状态的快照(mongo原始文档),用于之后的对比更新
+     *
+     * @param document 实体
+     * @return
+     */
+    Document toSnapshot(T document);
+
+    /**
+     * 根据实体,使用id,对比快照,只更新真正变化的字段(含嵌套路径),变为NULL的字段会被删除
+     * 没有变化时不访问数据库
+     *
+     * @param snapshot 加载时通过 {@link #toSnapshot(BaseDocument)} 获取的快照
+     * @param document 修改后的实体
+     * @return
+     */
+    boolean updateDiffById(Document snapshot, T document);
+
     /**
      * 根据实体列表,使用id,批量更新多个实体,跳过NULL的字段
      *
@@ -154,6 +232,87 @@ public interface BaseMongoService<T extends BaseDocument> {
      */
     void batchCreateOrUpdateSkipNullById(Collection<T> documentList);
 
+    /**
+     * 分批批量创建,按配置的每批数量/字节拆分,返回每批的结果汇总
+     *
+     * @param documentList 实体列表
+     * @param coveringId   是否覆盖id
+     * @return
+     */
+    BulkWriteSummary bulkCreate(Collection<T> documentList, boolean coveringId);
+
+    /**
+     * 分批批量更新,使用id,跳过NULL的字段,按配置的每批数量/字节拆分,返回每批的结果汇总
+     *
+     * @param documentList 实体列表
+     * @return
+     */
+    BulkWriteSummary bulkUpdateSkipNullById(Collection<T> documentList);
+
+    /**
+     * 分批批量创建或更新,使用id,跳过NULL的字段,按配置的每批数量/字节拆分,返回每批的结果汇总
+     *
+     * @param documentList 实体列表
+     * @return
+     */
+    BulkWriteSummary bulkCreateOrUpdateSkipNullById(Collection<T> documentList);
+
+    @Getter
+    @Setter
+    @ApiModel("Mongo分批写入结果汇总")
+    public static class BulkWriteSummary {
+
+        @ApiModelProperty("总操作数")
+        private long total;
+
+        @ApiModelProperty("匹配数")
+        private long matchedCount;
+
+        @ApiModelProperty("修改数")
+        private long modifiedCount;
+
+        @ApiModelProperty("upsert新建数")
+        private long upsertedCount;
+
+        @ApiModelProperty("插入数")
+        private long insertedCount;
+
+        @ApiModelProperty("每批结果")
+        private List<BulkWriteChunkResult> chunkList;
+
+    }
+
+    @Getter
+    @Setter
+    @ApiModel("Mongo分批写入单批结果")
+    public static class BulkWriteChunkResult {
+
+        @ApiModelProperty("第几批,从0开始")
+        private int index;
+
+        @ApiModelProperty("本批操作数")
+        private int size;
+
+        @ApiModelProperty("本批预估字节数(未开启字节限制时为0)")
+        private long bytes;
+
+        @ApiModelProperty("匹配数")
+        private long matchedCount;
+
+        @ApiModelProperty("修改数")
+        private long modifiedCount;
+
+        @ApiModelProperty("upsert新建数")
+        private long upsertedCount;
+
+        @ApiModelProperty("插入数")
+        private long insertedCount;
+
+        @ApiModelProperty("耗时(毫秒)")
+        private long costMillis;
+
+    }
+
     @Getter
     @Setter
     @ApiModel("Mongo常用模板查询参数")
@@ -208,6 +367,16 @@ public interface BaseMongoService<T extends BaseDocument> {
         @ApiModelProperty("是否需要count(尽量不用,性能能省则省)")
         private Boolean needCount;
 
+        /**
+         * 游标分页(深分页时性能恒定,不支持跳页,开启后忽略页码,不支持按数组字段排序)
+         */
+
+        @ApiModelProperty("是否使用游标分页[true=按 (排序key,_id) seek 翻页][false或空=传统 skip 翻页]")
+        private Boolean cursorPage;
+
+        @ApiModelProperty("游标分页-上一页返回的游标(为空代表第一页)")
+        private String afterToken;
+
         /**
          * 排序
          */
@@ -238,6 +407,9 @@ public interface BaseMongoService<T extends BaseDocument> {
         @ApiModelProperty("数据列表")
         private List<T> list;
 
+        @ApiModelProperty("游标分页-下一页游标(为空代表没有下一页,仅游标分页时返回)")
+        private String nextToken;
+
     }
 
     /**
@@ -265,4 +437,46 @@ public interface BaseMongoService<T extends BaseDocument> {
      */
     RollPageResult<T> rollPage(MongoRollPageParam param, List<Criteria> criteriaList);
 
+    /**
+     * 条件计数,只执行一次 count,不查询数据
+     *
+     * @param query 条件
+     * @return
+     */
+    long count(Query query);
+
+    /**
+     * 模板参数计数,条件与翻页查询一致,只执行一次 count,不查询数据
+     *
+     * @param param        模板参数
+     * @param criteriaList 除了模板参数,其他的限制条件
+     * @return
+     */
+    long count(MongoRollPageParam param, List<Criteria> criteriaList);
+
+    /**
+     * 是否存在,只查询一条且只返回 _id,命中第一条即返回
+     * 条件为空时判断集合是否有数据
+     *
+     * @param query 条件
+     * @return
+     */
+    boolean exists(Query query);
+
+    /**
+     * 模板参数判断是否存在,条件与翻页查询一致,只查询一条且只返回 _id
+     *
+     * @param param        模板参数
+     * @param criteriaList 除了模板参数,其他的限制条件
+     * @return
+     */
+    boolean exists(MongoRollPageParam param, List<Criteria> criteriaList);
+
+    /**
+     * 集合预估总数,读取集合元数据,不扫描文档,不支持条件(适合角标、总量展示)
+     *
+     * @return
+     */
+    long estimatedCount();
+
 }
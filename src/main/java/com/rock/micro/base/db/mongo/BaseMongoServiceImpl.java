@@ -1,27 +1,55 @@
 package com.rock.micro.base.db.mongo;
 
+import com.rock.micro.base.common.api.MyException;
+import com.rock.micro.base.common.mongo.MongoBulkWriteExecutor;
+import com.rock.micro.base.common.mongo.MongoEntityMetadata;
 import com.rock.micro.base.data.BaseDocument;
+import com.rock.micro.base.data.doc.ScanCheckpointDoc;
 import com.rock.micro.base.util.ArrayExtraUtils;
 import com.rock.micro.base.util.ListExtraUtils;
 import com.rock.micro.base.util.MongoExtraUtils;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.bulk.BulkWriteResult;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.MappingException;
+import org.springframework.data.mapping.PersistentPropertyPath;
 import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.BasicQuery;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.data.util.Pair;
+import org.springframework.data.util.StreamUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * mongo 服务基底实现
@@ -34,15 +62,101 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
 
     private static final Logger LOG = LoggerFactory.getLogger(BaseMongoServiceImpl.class);
 
+    //游标默认每批拉取数量
+    private static final int DEFAULT_CURSOR_BATCH_SIZE = 1000;
+
+    //预估字节数用的 bson 编码器
+    private static final DocumentCodec BSON_DOCUMENT_CODEC = new DocumentCodec(MongoClientSettings.getDefaultCodecRegistry());
+
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    //分批写入-每批最大操作数,小于1不限制
+    @Value("${micro.base.mongo.bulk.max-ops-per-batch:1000}")
+    private int bulkMaxOpsPerBatch;
+
+    //分批写入-每批最大预估字节数,默认0不限制(驱动本身会按16MB消息上限拆分);开启后每个操作需额外编码一次用来预估,建议12582912(12MB)
+    @Value("${micro.base.mongo.bulk.max-bytes-per-batch:0}")
+    private long bulkMaxBytesPerBatch;
+
+    //分批写入-无序模式下并行执行的共享线程池(micro.base.mongo.bulk.parallelism)
+    @Autowired
+    private MongoBulkWriteExecutor mongoBulkWriteExecutor;
+
+    //分段并行扫描-最大并行分段数
+    @Value("${micro.base.mongo.scan.parallelism:4}")
+    private int scanParallelism;
+
+    //当前服务泛型对应的实体类,只解析一次
+    private volatile Class<T> entityClass;
+
+    //当前实体对应的集合名,只解析一次
+    private volatile String collectionName;
+
     /**
-     * 用反射,获取当前服务的泛型
+     * bean 初始化时,提前解析实体元数据,之后所有 CRUD 直接复用
+     */
+    @PostConstruct
+    private void initEntityMetadata() {
+        //基类本身也会被注册为bean,此时没有泛型,跳过
+        if (getClass().getGenericSuperclass() instanceof ParameterizedType == false) {
+            //过
+            return;
+        }
+        //解析实体类
+        Class<T> clazz = getEntityClass();
+        //预解析字段访问器
+        MongoEntityMetadata.of(clazz);
+        //解析集合名
+        getCollectionName();
+    }
+
+    /**
+     * 获取当前服务的泛型,首次解析后缓存
      *
      * @return
      */
     private Class<T> getEntityClass() {
+        //缓存
+        Class<T> clazz = this.entityClass;
+        //如果已解析
+        if (clazz != null) {
+            //直接返回
+            return clazz;
+        }
+        //解析并缓存(并发时重复解析结果一致,无需加锁)
+        clazz = resolveEntityClass();
+        this.entityClass = clazz;
+        //返回
+        return clazz;
+    }
+
+    /**
+     * 获取当前实体对应的集合名,首次解析后缓存
+     *
+     * @return
+     */
+    private String getCollectionName() {
+        //缓存
+        String name = this.collectionName;
+        //如果已解析
+        if (name != null) {
+            //直接返回
+            return name;
+        }
+        //解析并缓存
+        name = this.mongoTemplate.getCollectionName(getEntityClass());
+        this.collectionName = name;
+        //返回
+        return name;
+    }
+
+    /**
+     * 用反射,获取当前服务的泛型
+     *
+     * @return
+     */
+    private Class<T> resolveEntityClass() {
         //获取泛型类型
         Type type = getClass().getGenericSuperclass();
         //如果不是
@@ -84,7 +198,7 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
         //创建前初始化
         BaseDocument.createBuild(document, coveringId);
         //插入
-        return this.mongoTemplate.insert(document);
+        return this.mongoTemplate.insert(document, getCollectionName());
     }
 
     @Override
@@ -102,6 +216,32 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
         }
         //初始化插入列表
         List<T> insertList = new ArrayList<>();
+        //分批插入,插入后实体会带上id
+        bulkCreate(documentList, coveringId, insertList);
+        //返回
+        return insertList;
+    }
+
+    @Override
+    public BulkWriteSummary bulkCreate(Collection<T> documentList, boolean coveringId) {
+        //实现
+        return bulkCreate(documentList, coveringId, new ArrayList<>());
+    }
+
+    /**
+     * 分批批量创建 实现
+     *
+     * @param documentList 实体列表
+     * @param coveringId   是否覆盖id
+     * @param insertList   收集实际插入的实体
+     * @return
+     */
+    private BulkWriteSummary bulkCreate(Collection<T> documentList, boolean coveringId, List<T> insertList) {
+        //判空
+        if (CollectionUtils.isEmpty(documentList)) {
+            //过
+            return emptySummary();
+        }
         //循环
         for (T document : documentList) {
             //判空
@@ -114,8 +254,32 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
             //记录
             insertList.add(document);
         }
-        //批量插入
-        return new ArrayList<>(this.mongoTemplate.insertAll(insertList));
+        //分批插入
+        return insertPrepared(insertList);
+    }
+
+    /**
+     * 分批插入已初始化过的实体(不再调用 {@link BaseDocument#createBuild}),用于入队时已初始化、稍后批量落库的场景
+     *
+     * @param documentList 已初始化的实体列表
+     * @return
+     */
+    protected BulkWriteSummary insertPrepared(List<T> documentList) {
+        //判空
+        if (CollectionUtils.isEmpty(documentList)) {
+            //过
+            return emptySummary();
+        }
+        //分批插入
+        return executeInChunks(documentList, this::estimateDocumentSize, true, chunk -> {
+            //批量插入
+            this.mongoTemplate.insert(chunk, getCollectionName());
+            //本批结果
+            BulkWriteChunkResult chunkResult = new BulkWriteChunkResult();
+            chunkResult.setInsertedCount(chunk.size());
+            //返回
+            return chunkResult;
+        });
     }
 
     @Override
@@ -136,7 +300,7 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
         //限制返回参数
         MongoExtraUtils.setFields(query, fields);
         //实现
-        return this.mongoTemplate.findOne(query, getEntityClass());
+        return this.mongoTemplate.findOne(query, getEntityClass(), getCollectionName());
     }
 
     @Override
@@ -157,7 +321,7 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
         //限制返回参数
         MongoExtraUtils.setFields(query, fields);
         //根据id列表查询
-        return this.mongoTemplate.find(query, getEntityClass());
+        return this.mongoTemplate.find(query, getEntityClass(), getCollectionName());
     }
 
     @Override
@@ -173,16 +337,346 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
         //限制
         MongoExtraUtils.setFields(query, fields);
         //实现
-        return mongoTemplate.find(query, getEntityClass());
+        return mongoTemplate.find(query, getEntityClass(), getCollectionName());
     }
 
     @Override
     public List<String> listAllId() {
+        //游标流式收集,不会同时持有所有实体
+        try (Stream<String> stream = streamAllId()) {
+            //实现
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public Stream<T> stream(Query query, int batchSize) {
+        //判空
+        if (query == null) {
+            //默认查询所有
+            query = new Query();
+        }
+        //游标每批拉取数量
+        query.cursorBatchSize(batchSize > 0 ? batchSize : DEFAULT_CURSOR_BATCH_SIZE);
+        //游标
+        CloseableIterator<T> iterator = this.mongoTemplate.stream(query, getEntityClass(), getCollectionName());
+        //转为流,关闭流时关闭游标
+        return StreamUtils.createStreamFromIterator(iterator);
+    }
+
+    @Override
+    public Stream<T> streamAll(String fields) {
+        //初始化查询
+        Query query = new Query();
+        //限制
+        MongoExtraUtils.setFields(query, fields);
+        //实现
+        return stream(query, DEFAULT_CURSOR_BATCH_SIZE);
+    }
+
+    @Override
+    public Stream<String> streamAllId() {
+        //实现
+        return streamAll("id").map(BaseDocument::getId);
+    }
+
+    @Override
+    public Stream<T> streamByIdList(Collection<String> idList, String fields) {
+        //判空
+        if (CollectionUtils.isEmpty(idList)) {
+            //过
+            return Stream.empty();
+        }
+        //限制条件
+        Query query = MongoExtraUtils.initQueryAndBase(idList);
+        //限制返回参数
+        MongoExtraUtils.setFields(query, fields);
         //实现
-        return listAll("id")
-                .stream()
-                .map(BaseDocument::getId)
+        return stream(query, DEFAULT_CURSOR_BATCH_SIZE);
+    }
+
+    @Override
+    public long batchConsume(Query query, int batchSize, Consumer<List<T>> consumer) {
+        //判空
+        if (consumer == null) {
+            //过
+            return 0L;
+        }
+        //每批数量
+        int size = batchSize > 0 ? batchSize : DEFAULT_CURSOR_BATCH_SIZE;
+        //处理总数
+        long count = 0L;
+        //当前批
+        List<T> batchList = new ArrayList<>(size);
+        //游标流式,用完关闭
+        try (Stream<T> stream = stream(query, size)) {
+            //迭代
+            Iterator<T> iterator = stream.iterator();
+            //循环
+            while (iterator.hasNext()) {
+                //组装
+                batchList.add(iterator.next());
+                //如果凑够一批
+                if (batchList.size() >= size) {
+                    //回调
+                    consumer.accept(batchList);
+                    //记录
+                    count += batchList.size();
+                    //新的一批,不复用,防止回调方持有引用
+                    batchList = new ArrayList<>(size);
+                }
+            }
+        }
+        //如果还有剩余
+        if (batchList.isEmpty() == false) {
+            //回调
+            consumer.accept(batchList);
+            //记录
+            count += batchList.size();
+        }
+        //返回
+        return count;
+    }
+
+    @Override
+    public long parallelScan(String jobName, Query query, int partitions, int batchSize, Consumer<List<T>> consumer) {
+        //判空
+        if (consumer == null) {
+            //过
+            return 0L;
+        }
+        //查询条件
+        Query baseQuery = query == null ? new Query() : query;
+        //每批数量
+        int size = batchSize > 0 ? batchSize : DEFAULT_CURSOR_BATCH_SIZE;
+        //是否记录进度
+        boolean checkpoint = StringUtils.isNotBlank(jobName);
+
+        /**
+         * 分段
+         */
+
+        //已有的进度(同一个任务名沿用上次的分段)
+        List<ScanCheckpointDoc> partitionList = checkpoint ? listScanCheckpoint(jobName) : new ArrayList<>();
+        //如果没有进度
+        if (partitionList.isEmpty()) {
+            //重新切分
+            partitionList = splitScanPartition(jobName, baseQuery, Math.max(partitions, 1));
+            //如果记录进度
+            if (checkpoint) {
+                //保存
+                partitionList.forEach(this.mongoTemplate::save);
+            }
+        }
+        //未完成的分段
+        List<ScanCheckpointDoc> pendingList = partitionList.stream()
+                .filter(p -> Boolean.TRUE.equals(p.getDone()) == false)
                 .collect(Collectors.toList());
+
+        /**
+         * 并行扫描
+         */
+
+        //并行数
+        int parallelism = Math.max(1, Math.min(this.scanParallelism, pendingList.size()));
+        //处理总数
+        long total = 0L;
+        //第一个失败
+        Throwable failure = null;
+        //本次专用线程池,执行完关闭
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            //提交所有分段
+            List<CompletableFuture<Long>> futureList = new ArrayList<>(pendingList.size());
+            //循环
+            for (ScanCheckpointDoc partition : pendingList) {
+                //提交
+                futureList.add(CompletableFuture.supplyAsync(() -> scanPartition(partition, baseQuery, size, consumer, checkpoint), executor));
+            }
+            //等待全部结束,某个分段失败不影响其他分段
+            for (CompletableFuture<Long> future : futureList) {
+                try {
+                    //等待
+                    total += future.join();
+                } catch (CompletionException e) {
+                    //记录第一个失败
+                    failure = failure == null ? e.getCause() : failure;
+                }
+            }
+        } finally {
+            //关闭
+            executor.shutdown();
+        }
+        //如果有失败,保留进度
+        if (failure != null) {
+            LOG.error("Mongo Parallel Scan fail job:[{}] collection:[{}] processed:[{}]", jobName, getCollectionName(), total, failure);
+            throw new MyException("分段扫描失败,可使用相同任务名重试:" + failure.getMessage());
+        }
+        //全部完成,清除本集合的进度(同名任务可能在扫描其他集合)
+        if (checkpoint) {
+            this.mongoTemplate.remove(new Query(Criteria.where("jobName").is(jobName).and("collectionName").is(getCollectionName())), ScanCheckpointDoc.class);
+        }
+        //日志
+        LOG.info("Mongo Parallel Scan job:[{}] collection:[{}] partition:[{}] parallelism:[{}] processed:[{}]", jobName, getCollectionName(), partitionList.size(), parallelism, total);
+        //返回
+        return total;
+    }
+
+    /**
+     * 获取任务已有的分段进度
+     *
+     * @param jobName 任务名
+     * @return 按分段序号排序
+     */
+    private List<ScanCheckpointDoc> listScanCheckpoint(String jobName) {
+        //初始化查询
+        Query query = new Query(Criteria.where("jobName").is(jobName).and("collectionName").is(getCollectionName()));
+        //按分段排序
+        query.with(Sort.by(Sort.Direction.ASC, "partition"));
+        //实现
+        return this.mongoTemplate.find(query, ScanCheckpointDoc.class);
+    }
+
+    /**
+     * 按 _id 取值区间等分为连续区间
+     * 只通过 _id 索引取最小、最大 _id(各一次索引查询),再按数值插值得到分界点,不需要 count、skip
+     * 雪花id(等长数字字符串)按时间有序,等分 _id 区间即等分时间段;其他格式的 id 不分段
+     *
+     * @param jobName    任务名
+     * @param baseQuery  查询条件
+     * @param partitions 分段数
+     * @return
+     */
+    private List<ScanCheckpointDoc> splitScanPartition(String jobName, Query baseQuery, int partitions) {
+        //最小、最大 _id
+        String minId = findBoundaryId(baseQuery, Sort.Direction.ASC);
+        String maxId = findBoundaryId(baseQuery, Sort.Direction.DESC);
+        //分界点(每段的上界,含)
+        List<String> boundaryList = new ArrayList<>();
+        //如果需要分段,且都是等长数字(等长时字符串顺序与数值顺序一致)
+        if (partitions > 1 && minId != null && maxId != null && minId.length() == maxId.length()
+                && StringUtils.isNumeric(minId) && StringUtils.isNumeric(maxId)) {
+            //数值
+            long min = Long.parseLong(minId);
+            long max = Long.parseLong(maxId);
+            //每段跨度
+            long step = (max - min) / partitions;
+            //循环
+            for (int k = 1; k < partitions && step > 0; k++) {
+                //第 k 个分界点,介于最小、最大之间,长度不变
+                boundaryList.add(String.valueOf(min + step * k));
+            }
+        } else if (partitions > 1 && minId != null) {
+            //其他格式的 id 无法按值等分
+            LOG.warn("Mongo Parallel Scan job:[{}] collection:[{}] _id is not snowflake, scan in one partition", jobName, getCollectionName());
+        }
+        //分段列表
+        List<ScanCheckpointDoc> partitionList = new ArrayList<>();
+        //循环,最后一段没有上界
+        for (int i = 0; i <= boundaryList.size(); i++) {
+            //初始化
+            ScanCheckpointDoc partition = new ScanCheckpointDoc();
+            BaseDocument.createBuild(partition, false);
+            partition.setId(jobName + ":" + getCollectionName() + ":" + i);
+            partition.setJobName(jobName);
+            partition.setCollectionName(getCollectionName());
+            partition.setPartition(i);
+            partition.setLowerId(i == 0 ? null : boundaryList.get(i - 1));
+            partition.setUpperId(i == boundaryList.size() ? null : boundaryList.get(i));
+            partition.setProcessedCount(0L);
+            partition.setDone(false);
+            //组装
+            partitionList.add(partition);
+        }
+        //返回
+        return partitionList;
+    }
+
+    /**
+     * 获取符合条件的最小/最大 _id(只返回 _id,走 _id 索引)
+     *
+     * @param baseQuery 查询条件
+     * @param direction 升序取最小,降序取最大
+     * @return 没有数据时返回null
+     */
+    private String findBoundaryId(Query baseQuery, Sort.Direction direction) {
+        //查询
+        Query boundaryQuery = new BasicQuery(baseQuery.getQueryObject(), new org.bson.Document("_id", 1))
+                .with(Sort.by(direction, "_id"))
+                .limit(1);
+        //实现
+        T document = this.mongoTemplate.findOne(boundaryQuery, getEntityClass(), getCollectionName());
+        //返回
+        return document == null ? null : document.getId();
+    }
+
+    /**
+     * 扫描一个分段,按 _id 顺序每次取一批(_id > 上一批最后一个),不持有长游标,每批处理完记录进度
+     *
+     * @param partition  分段
+     * @param baseQuery  查询条件
+     * @param batchSize  每批数量
+     * @param consumer   每批回调
+     * @param checkpoint 是否记录进度
+     * @return 本次处理数量
+     */
+    private long scanPartition(ScanCheckpointDoc partition, Query baseQuery, int batchSize, Consumer<List<T>> consumer, boolean checkpoint) {
+        //本次处理数量
+        long count = 0L;
+        //起点(不含),有进度时从进度继续
+        String lastId = partition.getLastId() != null ? partition.getLastId() : partition.getLowerId();
+        //循环
+        while (true) {
+            //区间条件
+            org.bson.Document range = new org.bson.Document();
+            //下界
+            if (lastId != null) {
+                range.append("$gt", lastId);
+            }
+            //上界
+            if (partition.getUpperId() != null) {
+                range.append("$lte", partition.getUpperId());
+            }
+            //合并条件
+            org.bson.Document filter = range.isEmpty() ? baseQuery.getQueryObject()
+                    : new org.bson.Document("$and", Arrays.asList(baseQuery.getQueryObject(), new org.bson.Document("_id", range)));
+            //本批查询
+            Query batchQuery = new BasicQuery(filter, baseQuery.getFieldsObject())
+                    .with(Sort.by(Sort.Direction.ASC, "_id"))
+                    .limit(batchSize);
+            //查询
+            List<T> batchList = this.mongoTemplate.find(batchQuery, getEntityClass(), getCollectionName());
+            //如果没有了
+            if (batchList.isEmpty()) {
+                break;
+            }
+            //回调
+            consumer.accept(batchList);
+            //记录
+            count += batchList.size();
+            lastId = batchList.get(batchList.size() - 1).getId();
+            //如果记录进度
+            if (checkpoint) {
+                //保存进度
+                partition.setLastId(lastId);
+                partition.setProcessedCount(partition.getProcessedCount() + batchList.size());
+                BaseDocument.updateBuild(partition);
+                this.mongoTemplate.save(partition);
+            }
+            //如果不够一批,说明已经到底
+            if (batchList.size() < batchSize) {
+                break;
+            }
+        }
+        //如果记录进度
+        if (checkpoint) {
+            //标记完成
+            partition.setDone(true);
+            BaseDocument.updateBuild(partition);
+            this.mongoTemplate.save(partition);
+        }
+        //返回
+        return count;
     }
 
     @Override
@@ -193,7 +687,7 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
             return false;
         }
         //根据id删除
-        return this.mongoTemplate.remove(MongoExtraUtils.initQueryAndBase(id), getEntityClass()).getDeletedCount() == 1L;
+        return this.mongoTemplate.remove(MongoExtraUtils.initQueryAndBase(id), getEntityClass(), getCollectionName()).getDeletedCount() == 1L;
     }
 
     @Override
@@ -204,7 +698,7 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
             return false;
         }
         //根据id列表删除
-        return idList.size() == this.mongoTemplate.remove(MongoExtraUtils.initQueryAndBase(idList), getEntityClass()).getDeletedCount();
+        return idList.size() == this.mongoTemplate.remove(MongoExtraUtils.initQueryAndBase(idList), getEntityClass(), getCollectionName()).getDeletedCount();
     }
 
     @Override
@@ -228,20 +722,62 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
         //组装更新字段
         MongoExtraUtils.updateSkipNullByDocumentNoExtends(update, document);
         //只更新一个
-        return this.mongoTemplate.updateFirst(query, update, getEntityClass()).getModifiedCount() > 0L;
+        return this.mongoTemplate.updateFirst(query, update, getEntityClass(), getCollectionName()).getModifiedCount() > 0L;
+    }
+
+    @Override
+    public org.bson.Document toSnapshot(T document) {
+        //判空
+        if (document == null) {
+            //过
+            return null;
+        }
+        //实现
+        return toBson(document);
+    }
+
+    @Override
+    public boolean updateDiffById(org.bson.Document snapshot, T document) {
+        //判空
+        if (document == null) {
+            //过
+            return false;
+        }
+        //id
+        String id = document.getId();
+        //判空
+        if (StringUtils.isBlank(id)) {
+            //过
+            return false;
+        }
+        //更新
+        Update update = MongoExtraUtils.initUpDateAndBase();
+        //组装变化的字段
+        int count = MongoExtraUtils.updateDiffByDocument(update, snapshot, toBson(document));
+        //如果没有变化
+        if (count < 1) {
+            //不访问数据库
+            return false;
+        }
+        //只更新一个
+        return this.mongoTemplate.updateFirst(MongoExtraUtils.initQueryAndBase(id), update, getEntityClass(), getCollectionName()).getModifiedCount() > 0L;
     }
 
     @Override
     public boolean batchUpdateSkipNullById(Collection<T> documentList) {
+        //分批实现,有更新操作视为成功
+        return bulkUpdateSkipNullById(documentList).getTotal() > 0L;
+    }
+
+    @Override
+    public BulkWriteSummary bulkUpdateSkipNullById(Collection<T> documentList) {
         //判空
         if (CollectionUtils.isEmpty(documentList)) {
             //过
-            return false;
+            return emptySummary();
         }
-        //更新数量
-        int count = 0;
-        //批量update操作
-        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, getEntityClass());
+        //更新操作列表
+        List<Pair<Query, Update>> operationList = new ArrayList<>();
         //循环
         for (T document : documentList) {
             //获取id
@@ -260,19 +796,15 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
             //组装批量更新
             MongoExtraUtils.updateSkipNullByDocumentNoExtends(update, document);
             //组装批量修改
-            bulkOperations.updateOne(query, update);
-            //+1
-            count++;
+            operationList.add(Pair.of(query, update));
         }
-        //如果有更新
-        if (count > 0) {
-            //批量更新
-            bulkOperations.execute();
-            //成功
-            return true;
-        }
-        //默认失败
-        return false;
+        //分批更新
+        return executeInChunks(operationList, this::estimateOperationSize, true, chunk -> {
+            //实现
+            return toChunkResult(this.mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, getEntityClass(), getCollectionName())
+                    .updateOne(chunk)
+                    .execute());
+        });
     }
 
     @Override
@@ -283,6 +815,12 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
 
     @Override
     public void batchCreateOrUpdateSkipNullById(Collection<T> documentList) {
+        //分批实现
+        bulkCreateOrUpdateSkipNullById(documentList);
+    }
+
+    @Override
+    public BulkWriteSummary bulkCreateOrUpdateSkipNullById(Collection<T> documentList) {
 
         /**
          * 判空
@@ -291,17 +829,15 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
         //判空
         if (CollectionUtils.isEmpty(documentList)) {
             //过
-            return;
+            return emptySummary();
         }
 
         /**
          * 批量 创建或更新
          */
 
-        //批量编辑
-        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, getEntityClass());
-        //要处理的数量
-        int count = 0;
+        //创建或更新操作列表
+        List<Pair<Query, Update>> operationList = new ArrayList<>();
         //循环
         for (T document : documentList) {
 
@@ -340,16 +876,21 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
             MongoExtraUtils.updateSkipNullByDocumentNoExtends(update, document);
 
             //组装创建或更新
-            bulkOperations.upsert(query, update);
-            //+1
-            count++;
-        }
-        //判空
-        if (count > 0) {
-            //执行
-            bulkOperations.execute();
+            operationList.add(Pair.of(query, update));
         }
 
+        /**
+         * 分批执行
+         */
+
+        //实现
+        return executeInChunks(operationList, this::estimateOperationSize, true, chunk -> {
+            //实现
+            return toChunkResult(this.mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, getEntityClass(), getCollectionName())
+                    .upsert(chunk)
+                    .execute());
+        });
+
     }
 
     @Override
@@ -433,15 +974,8 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
          * 初始化
          */
 
-        //and条件列表
-        List<Criteria> andCriteriaList = new ArrayList<>();
-        //如果有额外的条件
-        if (CollectionUtils.isNotEmpty(criteriaList)) {
-            //组装
-            andCriteriaList.addAll(criteriaList);
-        }
-        //构建通用查询参数
-        rollPageParamBuilder(param, andCriteriaList);
+        //合并模板参数和额外条件
+        List<Criteria> andCriteriaList = buildCriteriaList(param, criteriaList);
 
         /**
          * 排序
@@ -465,6 +999,30 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
                 .map(MongoRollPageParam::getNeedCount)
                 .orElse(false);
 
+        /**
+         * 游标分页
+         */
+
+        //如果使用游标分页
+        if (Boolean.TRUE.equals(param.getCursorPage())) {
+            //游标分页实现
+            return rollPageByCursor(
+                    //组装各种条件
+                    andCriteriaList,
+                    //限制返回字段
+                    ArrayExtraUtils.toArray(param.getFields()),
+                    //分页,默认20
+                    param.getPageSize() == null ? 20 : param.getPageSize(),
+                    //排序,与普通分页一样按实体属性映射
+                    sortKey,
+                    Sort.Direction.fromString(sortOrder),
+                    //上一页游标
+                    param.getAfterToken(),
+                    //是否返回count
+                    needCount
+            );
+        }
+
         /**
          * 最终实现
          */
@@ -485,6 +1043,59 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
         );
     }
 
+    @Override
+    public long count(Query query) {
+        //实现
+        return this.mongoTemplate.count(query, getEntityClass(), getCollectionName());
+    }
+
+    @Override
+    public long count(MongoRollPageParam param, List<Criteria> criteriaList) {
+        //实现
+        return count(new Query(andCriteria(buildCriteriaList(param, criteriaList))));
+    }
+
+    @Override
+    public boolean exists(Query query) {
+        //只取一条,只返回 _id,条件为空时等同于无条件
+        Query existsQuery = new BasicQuery(query == null ? new org.bson.Document() : query.getQueryObject(), new org.bson.Document("_id", 1)).limit(1);
+        //实现
+        return this.mongoTemplate.findOne(existsQuery, getEntityClass(), getCollectionName()) != null;
+    }
+
+    @Override
+    public boolean exists(MongoRollPageParam param, List<Criteria> criteriaList) {
+        //实现
+        return exists(new Query(andCriteria(buildCriteriaList(param, criteriaList))));
+    }
+
+    @Override
+    public long estimatedCount() {
+        //实现
+        return this.mongoTemplate.estimatedCount(getCollectionName());
+    }
+
+    /**
+     * 合并模板参数和额外条件
+     *
+     * @param param        模板参数
+     * @param criteriaList 额外条件
+     * @return
+     */
+    private List<Criteria> buildCriteriaList(MongoRollPageParam param, List<Criteria> criteriaList) {
+        //and条件列表
+        List<Criteria> andCriteriaList = new ArrayList<>();
+        //如果有额外的条件
+        if (CollectionUtils.isNotEmpty(criteriaList)) {
+            //组装
+            andCriteriaList.addAll(criteriaList);
+        }
+        //构建通用查询参数
+        rollPageParamBuilder(param, andCriteriaList);
+        //返回
+        return andCriteriaList;
+    }
+
     /**
      * 翻页查询 底层实现
      *
@@ -501,24 +1112,16 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
         //初始化响应对象
         RollPageResult<T> result = new RollPageResult<>();
 
-        //初始化条件
-        Criteria criteria = new Criteria();
-        //如果存在条件列表
-        if (CollectionUtils.isNotEmpty(criteriaList)) {
-            //组装条件列表
-            criteria.andOperator(criteriaList.toArray(new Criteria[]{}));
-        }
-
         //获取当前泛型
         Class<T> clazz = getEntityClass();
 
         //初始化查询
-        Query query = new Query(criteria);
+        Query query = new Query(andCriteria(criteriaList));
 
         //如果需要count
         if (needCount) {
             //查询count
-            long total = this.mongoTemplate.count(query, clazz);
+            long total = this.mongoTemplate.count(query, clazz, getCollectionName());
             //组装
             result.setTotal(total);
         } else {
@@ -541,12 +1144,462 @@ public class BaseMongoServiceImpl<T extends BaseDocument> implements BaseMongoSe
         LOG.info("Mongo RollPage Query Execute:[{}]", query.toString());
 
         //查询数据
-        List<T> docList = this.mongoTemplate.find(query, clazz);
+        List<T> docList = this.mongoTemplate.find(query, clazz, getCollectionName());
         //组装数据
         result.setList(docList);
         //返回
         return result;
     }
 
+    /**
+     * 游标翻页查询 底层实现
+     * -
+     * 按 (排序key,_id) seek,不使用 skip,深分页与第一页性能一致
+     *
+     * @param criteriaList 参数条件列表
+     * @param fields       限制参数
+     * @param pageSize     分页
+     * @param sortKey      排序key(实体属性路径,与普通分页的 {@link Sort} 一样映射为mongo字段名)
+     * @param direction    排序方向
+     * @param afterToken   上一页返回的游标,为空代表第一页
+     * @param needCount    是否需要count(额外一次count查询)
+     * @return
+     */
+    private RollPageResult<T> rollPageByCursor(List<Criteria> criteriaList, String[] fields, int pageSize, String sortKey, Sort.Direction direction, String afterToken, boolean needCount) {
+
+        //初始化响应对象
+        RollPageResult<T> result = new RollPageResult<>();
+
+        //获取当前泛型
+        Class<T> clazz = getEntityClass();
+
+        //排序属性路径,解析不到时为空(按原样当作mongo字段名)
+        PersistentPropertyPath<MongoPersistentProperty> sortPath = resolvePropertyPath(sortKey);
+        //映射为mongo字段名,与 Sort 的映射规则一致(id -> _id、@Field 改名)
+        String mongoSortKey = sortPath == null ? sortKey : sortPath.toDotPath(MongoPersistentProperty::getFieldName);
+        //数组字段在mongo中按最小/最大元素排序,游标值无法唯一确定,直接拒绝
+        if (sortPath != null && sortPath.stream().anyMatch(MongoPersistentProperty::isCollectionLike)) {
+            //抛
+            throw new MyException("游标分页不支持按数组字段排序:" + sortKey);
+        }
+
+        //如果需要count,count不受游标影响
+        if (needCount) {
+            //查询count
+            result.setTotal(this.mongoTemplate.count(new Query(andCriteria(criteriaList)), clazz, getCollectionName()));
+        } else {
+            //默认
+            result.setTotal(-1L);
+        }
+
+        //初始化条件列表
+        List<Criteria> seekCriteriaList = new ArrayList<>();
+        //如果存在条件列表
+        if (CollectionUtils.isNotEmpty(criteriaList)) {
+            //组装
+            seekCriteriaList.addAll(criteriaList);
+        }
+        //游标条件
+        Criteria cursorCriteria = MongoExtraUtils.initCursorCriteria(mongoSortKey, direction, afterToken);
+        //如果不是第一页
+        if (cursorCriteria != null) {
+            //组装
+            seekCriteriaList.add(cursorCriteria);
+        }
+
+        //初始化查询
+        Query query = new Query(andCriteria(seekCriteriaList));
+        //排序 + id 保证稳定
+        MongoExtraUtils.setCursorSort(query, mongoSortKey, direction);
+        //多查一条,用来判断是否有下一页
+        query.limit(pageSize + 1);
+        //如果要限制返回字段
+        if (fields != null && fields.length > 0) {
+            //限制返回字段
+            MongoExtraUtils.setFields(query, fields);
+            //生成游标需要排序key,强制返回
+            query.fields().include(mongoSortKey);
+        }
+
+        //日志
+        LOG.info("Mongo RollPageByCursor Query Execute:[{}]", query.toString());
+
+        //查询数据
+        List<T> docList = this.mongoTemplate.find(query, clazz, getCollectionName());
+        //如果有下一页
+        if (docList.size() > pageSize) {
+            //去掉多查的一条
+            docList = new ArrayList<>(docList.subList(0, pageSize));
+            //本页最后一条
+            T last = docList.get(docList.size() - 1);
+            //生成下一页游标
+            result.setNextToken(MongoExtraUtils.encodeCursorToken(getSortValue(last, sortPath, mongoSortKey), last.getId()));
+        }
+        //组装数据
+        result.setList(docList);
+        //返回
+        return result;
+    }
+
+    /**
+     * 分批写入引擎
+     * -
+     * 按 每批最大操作数、每批最大预估字节数 拆分,无序模式下可多批并行,返回每批结果汇总
+     * 注意:存在事务时强制串行,其他线程无法加入当前事务
+     *
+     * @param operationList 操作列表
+     * @param sizer         单个操作预估字节数
+     * @param unordered     是否无序(无序才允许并行)
+     * @param chunkExecutor 执行一批
+     * @return
+     */
+    private <O> BulkWriteSummary executeInChunks(List<O> operationList, ToLongFunction<O> sizer, boolean unordered, Function<List<O>, BulkWriteChunkResult> chunkExecutor) {
+
+        /**
+         * 拆分
+         */
+
+        //判空
+        if (CollectionUtils.isEmpty(operationList)) {
+            //过
+            return emptySummary();
+        }
+        //每批最大操作数
+        int maxOps = this.bulkMaxOpsPerBatch > 0 ? this.bulkMaxOpsPerBatch : Integer.MAX_VALUE;
+        //是否限制字节
+        boolean limitBytes = this.bulkMaxBytesPerBatch > 0L;
+        //拆分结果
+        List<List<O>> chunkList = new ArrayList<>();
+        //每批字节
+        List<Long> chunkBytesList = new ArrayList<>();
+        //当前批开始位置
+        int start = 0;
+        //当前批字节
+        long bytes = 0L;
+        //循环
+        for (int i = 0; i < operationList.size(); i++) {
+            //本操作字节,不限制时不计算
+            long size = limitBytes ? sizer.applyAsLong(operationList.get(i)) : 0L;
+            //当前批数量
+            int count = i - start;
+            //如果当前批已满(至少保留一个操作)
+            if (count > 0 && (count >= maxOps || (limitBytes && bytes + size > this.bulkMaxBytesPerBatch))) {
+                //切一批
+                chunkList.add(operationList.subList(start, i));
+                chunkBytesList.add(bytes);
+                //新的一批
+                start = i;
+                bytes = 0L;
+            }
+            //累计
+            bytes += size;
+        }
+        //最后一批
+        chunkList.add(operationList.subList(start, operationList.size()));
+        chunkBytesList.add(bytes);
+
+        /**
+         * 执行
+         */
+
+        //每批结果
+        List<BulkWriteChunkResult> resultList = new ArrayList<>(chunkList.size());
+        //并行数,有事务时不能并行
+        int parallelism = Math.min(this.mongoBulkWriteExecutor.getParallelism(), chunkList.size());
+        //如果可以并行
+        if (unordered && parallelism > 1 && TransactionSynchronizationManager.isActualTransactionActive() == false) {
+            try {
+                //提交所有批次到共享线程池
+                List<CompletableFuture<BulkWriteChunkResult>> futureList = new ArrayList<>(chunkList.size());
+                //循环
+                for (int i = 0; i < chunkList.size(); i++) {
+                    //当前批
+                    int index = i;
+                    //提交
+                    futureList.add(CompletableFuture.supplyAsync(() -> executeChunk(index, chunkList.get(index), chunkBytesList.get(index), chunkExecutor), this.mongoBulkWriteExecutor));
+                }
+                //按顺序收集
+                for (CompletableFuture<BulkWriteChunkResult> future : futureList) {
+                    //等待
+                    resultList.add(future.join());
+                }
+            } catch (CompletionException e) {
+                //抛出原始异常
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        } else {
+            //串行
+            for (int i = 0; i < chunkList.size(); i++) {
+                //执行
+                resultList.add(executeChunk(i, chunkList.get(i), chunkBytesList.get(i), chunkExecutor));
+            }
+        }
+
+        /**
+         * 汇总
+         */
+
+        //初始化
+        BulkWriteSummary summary = emptySummary();
+        //总数
+        summary.setTotal(operationList.size());
+        //循环
+        for (BulkWriteChunkResult chunkResult : resultList) {
+            //累计
+            summary.setMatchedCount(summary.getMatchedCount() + chunkResult.getMatchedCount());
+            summary.setModifiedCount(summary.getModifiedCount() + chunkResult.getModifiedCount());
+            summary.setUpsertedCount(summary.getUpsertedCount() + chunkResult.getUpsertedCount());
+            summary.setInsertedCount(summary.getInsertedCount() + chunkResult.getInsertedCount());
+        }
+        //每批结果
+        summary.setChunkList(resultList);
+        //日志
+        LOG.info("Mongo Bulk Write collection:[{}] total:[{}] chunk:[{}] parallelism:[{}]", getCollectionName(), operationList.size(), resultList.size(), parallelism);
+        //返回
+        return summary;
+    }
+
+    /**
+     * 执行一批,并记录批次信息
+     *
+     * @param index         第几批
+     * @param chunk         本批操作
+     * @param bytes         本批预估字节
+     * @param chunkExecutor 执行一批
+     * @return
+     */
+    private <O> BulkWriteChunkResult executeChunk(int index, List<O> chunk, long bytes, Function<List<O>, BulkWriteChunkResult> chunkExecutor) {
+        //开始时间
+        long startTime = System.currentTimeMillis();
+        //执行
+        BulkWriteChunkResult chunkResult = chunkExecutor.apply(chunk);
+        //批次信息
+        chunkResult.setIndex(index);
+        chunkResult.setSize(chunk.size());
+        chunkResult.setBytes(bytes);
+        chunkResult.setCostMillis(System.currentTimeMillis() - startTime);
+        //返回
+        return chunkResult;
+    }
+
+    /**
+     * 将驱动的批量结果,转为单批结果
+     *
+     * @param bulkWriteResult 驱动批量结果
+     * @return
+     */
+    private BulkWriteChunkResult toChunkResult(BulkWriteResult bulkWriteResult) {
+        //初始化
+        BulkWriteChunkResult chunkResult = new BulkWriteChunkResult();
+        //如果未确认写入,拿不到数量
+        if (bulkWriteResult.wasAcknowledged() == false) {
+            //过
+            return chunkResult;
+        }
+        //组装
+        chunkResult.setMatchedCount(bulkWriteResult.getMatchedCount());
+        chunkResult.setModifiedCount(bulkWriteResult.getModifiedCount());
+        chunkResult.setUpsertedCount(bulkWriteResult.getUpserts().size());
+        chunkResult.setInsertedCount(bulkWriteResult.getInsertedCount());
+        //返回
+        return chunkResult;
+    }
+
+    /**
+     * 空的分批写入结果
+     *
+     * @return
+     */
+    private BulkWriteSummary emptySummary() {
+        //初始化
+        BulkWriteSummary summary = new BulkWriteSummary();
+        //默认空列表
+        summary.setChunkList(new ArrayList<>());
+        //返回
+        return summary;
+    }
+
+    /**
+     * 预估实体转为 bson 后的字节数
+     *
+     * @param document 实体
+     * @return
+     */
+    private long estimateDocumentSize(T document) {
+        //实现
+        return estimateBsonSize(this.mongoTemplate.getConverter().convertToMongoType(document));
+    }
+
+    /**
+     * 预估更新操作转为 bson 后的字节数
+     *
+     * @param operation 更新操作
+     * @return
+     */
+    private long estimateOperationSize(Pair<Query, Update> operation) {
+        //查询 + 更新
+        return estimateBsonSize(this.mongoTemplate.getConverter().convertToMongoType(operation.getFirst().getQueryObject()))
+                + estimateBsonSize(this.mongoTemplate.getConverter().convertToMongoType(operation.getSecond().getUpdateObject()));
+    }
+
+    /**
+     * 预估 bson 字节数
+     *
+     * @param object 已转为mongo类型的对象
+     * @return 无法预估时返回0
+     */
+    private long estimateBsonSize(Object object) {
+        //如果不是文档
+        if (object instanceof org.bson.Document == false) {
+            //过
+            return 0L;
+        }
+        try (BasicOutputBuffer buffer = new BasicOutputBuffer()) {
+            //编码
+            BSON_DOCUMENT_CODEC.encode(new BsonBinaryWriter(buffer), (org.bson.Document) object, EncoderContext.builder().build());
+            //返回
+            return buffer.getSize();
+        } catch (Exception e) {
+            LOG.warn("estimateBsonSize error:[{}]", e.getMessage());
+            return 0L;
+        }
+    }
+
+    /**
+     * 组装条件列表为一个 and 条件
+     *
+     * @param criteriaList 条件列表
+     * @return
+     */
+    private Criteria andCriteria(List<Criteria> criteriaList) {
+        //初始化条件
+        Criteria criteria = new Criteria();
+        //如果存在条件列表
+        if (CollectionUtils.isNotEmpty(criteriaList)) {
+            //组装条件列表
+            criteria.andOperator(criteriaList.toArray(new Criteria[]{}));
+        }
+        //返回
+        return criteria;
+    }
+
+    /**
+     * 按实体属性路径解析为 spring data 的属性路径(用于映射mongo字段名、直接读取属性值)
+     *
+     * @param propertyPath 实体属性路径 eg: productList.sku
+     * @return 解析不到时返回null
+     */
+    private PersistentPropertyPath<MongoPersistentProperty> resolvePropertyPath(String propertyPath) {
+        //判空
+        if (StringUtils.isBlank(propertyPath) || "_id".equals(propertyPath)) {
+            //过
+            return null;
+        }
+        try {
+            //实现
+            return this.mongoTemplate.getConverter().getMappingContext().getPersistentPropertyPath(propertyPath, getEntityClass());
+        } catch (MappingException e) {
+            //不是实体属性,按原样当作mongo字段名
+            return null;
+        }
+    }
+
+    /**
+     * 获取实体的排序字段值(按mongo存储的类型),只读取这一个属性,不转换整个实体
+     * -
+     * 排序key不是实体属性(如 Map 内的key)时,按mongo原始文档读取;排序值是数组时抛出异常,保证不会为有值的数据生成空游标
+     *
+     * @param document     实体
+     * @param sortPath     排序属性路径(解析不到时为null)
+     * @param mongoSortKey 排序key(mongo字段名)
+     * @return
+     */
+    private Object getSortValue(T document, PersistentPropertyPath<MongoPersistentProperty> sortPath, String mongoSortKey) {
+        //如果是id
+        if ("_id".equals(mongoSortKey)) {
+            //直接返回
+            return document.getId();
+        }
+        //如果不是实体属性
+        if (sortPath == null) {
+            //转为mongo原始文档,按路径读取
+            return getCursorSortValue(toBson(document), mongoSortKey);
+        }
+        //逐级读取属性
+        Object current = document;
+        for (MongoPersistentProperty property : sortPath) {
+            //中间为空,mongo中按null排序
+            if (current == null) {
+                //过
+                return null;
+            }
+            //运行时是数组(如声明为 Object)
+            checkCursorSortValue(current, mongoSortKey);
+            //读取(spring data 生成的属性访问器,不走反射)
+            current = property.getOwner().getPropertyAccessor(current).getProperty(property);
+        }
+        //最终值也不能是数组
+        checkCursorSortValue(current, mongoSortKey);
+        //只转换这一个值为mongo存储类型(枚举、BigDecimal 等),与库中比较的类型一致
+        return current == null ? null : this.mongoTemplate.getConverter().convertToMongoType(current);
+    }
+
+    /**
+     * 按mongo字段路径读取原始文档中的排序值
+     *
+     * @param bson         mongo原始文档
+     * @param mongoSortKey 排序key(mongo字段名)
+     * @return
+     */
+    private Object getCursorSortValue(org.bson.Document bson, String mongoSortKey) {
+        //当前层级
+        Object current = bson;
+        //逐级拆解
+        for (String key : mongoSortKey.split("\\.")) {
+            //路径经过数组
+            checkCursorSortValue(current, mongoSortKey);
+            //中间为空或不是对象,mongo中按null排序
+            if (current instanceof Map == false) {
+                //过
+                return null;
+            }
+            //下一级
+            current = ((Map<?, ?>) current).get(key);
+        }
+        //最终值也不能是数组
+        checkCursorSortValue(current, mongoSortKey);
+        //返回
+        return current;
+    }
+
+    /**
+     * 游标排序值不能是数组(mongo按最小/最大元素排序,游标值无法唯一确定)
+     *
+     * @param value        排序值
+     * @param mongoSortKey 排序key(mongo字段名)
+     */
+    private void checkCursorSortValue(Object value, String mongoSortKey) {
+        //二进制数据不是数组
+        if (value instanceof Collection || (value != null && value.getClass().isArray() && value instanceof byte[] == false)) {
+            //抛
+            throw new MyException("游标分页不支持按数组字段排序:" + mongoSortKey);
+        }
+    }
+
+    /**
+     * 实体转为mongo原始文档(字段名、类型与库中一致)
+     *
+     * @param document 实体
+     * @return
+     */
+    private org.bson.Document toBson(T document) {
+        //初始化
+        org.bson.Document bson = new org.bson.Document();
+        //转换
+        this.mongoTemplate.getConverter().write(document, bson);
+        //返回
+        return bson;
+    }
+
 }
 
@@ -0,0 +1,64 @@
+package com.rock.micro.base.db.redis;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Redis 分布式锁服务
+ * -
+ * 1.加锁写入唯一 owner token,释放、续期时校验持有者(Lua 原子执行),不会误删别人的锁
+ * 2.未指定租期时由看门狗定时续期,持有者活着锁就不会过期,持有者宕机则租期后自动释放
+ * 3.同一线程可重入,加锁几次就要释放几次;重入时会确认 Redis 中仍是自己的锁并按本次租期续期,锁已丢失则重新竞争
+ */
+public interface BaseRedisLockService {
+
+    /**
+     * 尝试加锁,失败立即返回,由看门狗自动续期
+     *
+     * @param key 锁key
+     * @return 是否加锁成功
+     */
+    boolean tryLock(String key);
+
+    /**
+     * 尝试加锁,在等待时间内退避重试
+     *
+     * @param key       锁key
+     * @param waitTime  最长等待时间,小于等于0则只尝试一次
+     * @param leaseTime 租期,小于等于0则由看门狗自动续期;大于0则到期自动释放,不续期
+     * @param unit      时间单位
+     * @return 是否加锁成功
+     */
+    boolean tryLock(String key, long waitTime, long leaseTime, TimeUnit unit);
+
+    /**
+     * 释放锁,重入时只减少次数,次数为0才真正释放
+     * 租期已过期(锁已被其他线程或节点拿走)时只告警,不抛异常
+     *
+     * @param key 锁key
+     * @throws IllegalMonitorStateException 当前线程未持有该锁
+     */
+    void unlock(String key);
+
+    /**
+     * 当前线程是否持有该锁
+     *
+     * @param key 锁key
+     * @return
+     */
+    boolean isHeldByCurrentThread(String key);
+
+    /**
+     * 加锁执行,执行完自动释放
+     *
+     * @param key       锁key
+     * @param waitTime  最长等待时间
+     * @param leaseTime 租期,小于等于0则由看门狗自动续期
+     * @param unit      时间单位
+     * @param supplier  加锁后执行的内容
+     * @return 执行结果
+     * @throws com.rock.micro.base.common.api.MyException 等待超时仍未获取到锁
+     */
+    <T> T executeWithLock(String key, long waitTime, long leaseTime, TimeUnit unit, Supplier<T> supplier);
+
+}
@@ -0,0 +1,326 @@
+package com.rock.micro.base.db.redis;
+
+import com.rock.micro.base.common.api.MyException;
+import com.rock.micro.base.util.IdExtraUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@Service
+public final class BaseRedisLockServiceImpl implements BaseRedisLockService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BaseRedisLockServiceImpl.class);
+
+    //重试退避-最小等待(毫秒)
+    private static final long MIN_BACKOFF_MILLIS = 10L;
+    //重试退避-最大等待(毫秒)
+    private static final long MAX_BACKOFF_MILLIS = 200L;
+
+    //锁的值是字符串 owner token,使用字符串模板,保证 Lua 中可直接比较
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    //看门狗租期(毫秒),每 1/3 租期续期一次
+    @Value("${micro.base.redis.lock.watchdog-lease-millis:30000}")
+    private long watchdogLeaseMillis;
+
+    //本实例标识,与线程id组成 owner token
+    private final String instanceId = IdExtraUtils.genGUID();
+
+    //本实例持有的锁 (锁key + owner token) -> 持有信息
+    //按 token 区分持有者:租期过期后同一 JVM 的其他线程拿到锁,原持有者的记录仍在,unlock 时只会释放失败并告警,不会误报未持有
+    private final Map<String, LockHolder> holderMap = new ConcurrentHashMap<>();
+
+    //看门狗
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "redis-lock-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public boolean tryLock(String key) {
+        //实现
+        return tryLock(key, 0L, -1L, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean tryLock(String key, long waitTime, long leaseTime, TimeUnit unit) {
+        //当前线程
+        Thread thread = Thread.currentThread();
+        //是否看门狗续期
+        boolean useWatchdog = leaseTime <= 0L;
+        //租期(毫秒)
+        long leaseMillis = useWatchdog ? this.watchdogLeaseMillis : unit.toMillis(leaseTime);
+        //owner token
+        String token = ownerToken(thread);
+        //持有记录key
+        String holderKey = holderKey(key, token);
+        //已持有的
+        LockHolder holder = this.holderMap.get(holderKey);
+        //重入前已有的次数(锁丢失后重新获取时保留,保证 unlock 次数对得上)
+        int reentrantCount = 0;
+        //如果当前线程已持有
+        if (holder != null && holder.thread == thread) {
+            //确认 Redis 中仍是自己的锁,并按本次租期续期
+            Boolean owned = checkOwned(key, holder, leaseMillis);
+            //网络异常,无法确认
+            if (owned == null) {
+                return false;
+            }
+            //仍持有,重入
+            if (owned) {
+                holder.count++;
+                return true;
+            }
+            //锁已过期或被其他节点拿走,丢弃本地记录,按新锁重新获取
+            logger.warn(" redis lock reentry found lock lost key:[{}], reacquire", key);
+            this.holderMap.remove(holderKey, holder);
+            holder.cancelRenew();
+            reentrantCount = holder.count;
+        }
+        //截止时间
+        long deadline = System.currentTimeMillis() + Math.max(unit.toMillis(waitTime), 0L);
+        //当前退避
+        long backoff = MIN_BACKOFF_MILLIS;
+        //循环
+        while (true) {
+            //尝试加锁 SET NX PX
+            if (acquire(key, token, leaseMillis)) {
+                //记录持有
+                LockHolder newHolder = new LockHolder(thread, token);
+                newHolder.count += reentrantCount;
+                this.holderMap.put(holderKey, newHolder);
+                //看门狗续期
+                if (useWatchdog) {
+                    newHolder.renewTask = this.watchdog.scheduleAtFixedRate(() -> renew(key, newHolder),
+                            leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+                    //任务在赋值前已发现锁丢失
+                    if (newHolder.lost) {
+                        newHolder.cancelRenew();
+                    }
+                }
+                return true;
+            }
+            //剩余等待
+            long remain = deadline - System.currentTimeMillis();
+            //如果超时
+            if (remain <= 0L) {
+                return false;
+            }
+            try {
+                //退避 + 抖动,避免大量竞争者同时重试
+                Thread.sleep(Math.min(remain, backoff + ThreadLocalRandom.current().nextLong(backoff)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            //指数退避
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    @Override
+    public void unlock(String key) {
+        //持有记录key
+        String holderKey = holderKey(key, ownerToken(Thread.currentThread()));
+        //持有信息
+        LockHolder holder = this.holderMap.get(holderKey);
+        //如果当前线程未持有
+        if (holder == null || holder.thread != Thread.currentThread()) {
+            throw new IllegalMonitorStateException("当前线程未持有锁:" + key);
+        }
+        //重入次数-1
+        if (--holder.count > 0) {
+            return;
+        }
+        //移除
+        this.holderMap.remove(holderKey, holder);
+        //停止续期
+        holder.cancelRenew();
+        try {
+            //只删除自己的锁
+            Long result = this.stringRedisTemplate.execute(RedisLuaScripts.LOCK_RELEASE, Collections.singletonList(key), holder.token);
+            //如果没删掉,说明租期已过期(可能已被别人拿走),锁已不在自己手里,只告警
+            if (result == null || result == 0L) {
+                logger.warn(" redis unlock key:[{}] lease lost, already expired or taken by others", key);
+            }
+        } catch (Exception e) {
+            //释放失败,等租期到期自动释放
+            logger.error(" redis unlock fail key:[{}]", key, e);
+        }
+    }
+
+    @Override
+    public boolean isHeldByCurrentThread(String key) {
+        //当前线程
+        Thread thread = Thread.currentThread();
+        //持有信息
+        LockHolder holder = this.holderMap.get(holderKey(key, ownerToken(thread)));
+        //实现
+        return holder != null && holder.thread == thread;
+    }
+
+    @Override
+    public <T> T executeWithLock(String key, long waitTime, long leaseTime, TimeUnit unit, Supplier<T> supplier) {
+        //加锁
+        if (tryLock(key, waitTime, leaseTime, unit) == false) {
+            throw new MyException("获取分布式锁超时:" + key);
+        }
+        try {
+            //执行
+            return supplier.get();
+        } finally {
+            //释放
+            unlock(key);
+        }
+    }
+
+    /**
+     * 关闭看门狗
+     */
+    @PreDestroy
+    public void shutdown() {
+        //实现
+        this.watchdog.shutdownNow();
+    }
+
+    /**
+     * 线程的 owner token
+     *
+     * @param thread 线程
+     * @return
+     */
+    private String ownerToken(Thread thread) {
+        //实例标识 + 线程id
+        return this.instanceId + ":" + thread.getId();
+    }
+
+    /**
+     * 持有记录key
+     *
+     * @param key   锁key
+     * @param token owner token
+     * @return
+     */
+    private static String holderKey(String key, String token) {
+        //锁key + owner token
+        return key + "#" + token;
+    }
+
+    /**
+     * SET NX PX
+     *
+     * @param key         锁key
+     * @param token       owner token
+     * @param leaseMillis 租期(毫秒)
+     * @return
+     */
+    private boolean acquire(String key, String token, long leaseMillis) {
+        try {
+            //实现
+            return Boolean.TRUE.equals(this.stringRedisTemplate.opsForValue().setIfAbsent(key, token, leaseMillis, TimeUnit.MILLISECONDS));
+        } catch (Exception e) {
+            logger.error(" redis lock acquire fail key:[{}]", key, e);
+            return false;
+        }
+    }
+
+    /**
+     * 重入时确认 Redis 中仍是自己的锁(比较 token),是则按租期续期
+     *
+     * @param key         锁key
+     * @param holder      持有信息
+     * @param leaseMillis 租期(毫秒)
+     * @return true=仍持有 false=已丢失 null=网络异常无法确认
+     */
+    private Boolean checkOwned(String key, LockHolder holder, long leaseMillis) {
+        try {
+            //只续期自己的锁
+            Long result = this.stringRedisTemplate.execute(RedisLuaScripts.LOCK_RENEW, Collections.singletonList(key),
+                    holder.token, String.valueOf(leaseMillis));
+            //实现
+            return result != null && result != 0L;
+        } catch (Exception e) {
+            logger.error(" redis lock reentry check fail key:[{}]", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 看门狗续期
+     *
+     * @param key    锁key
+     * @param holder 持有信息
+     */
+    private void renew(String key, LockHolder holder) {
+        try {
+            //只续期自己的锁
+            Long result = this.stringRedisTemplate.execute(RedisLuaScripts.LOCK_RENEW, Collections.singletonList(key),
+                    holder.token, String.valueOf(this.watchdogLeaseMillis));
+            //如果续期失败,说明锁已丢失,停止续期
+            if (result == null || result == 0L) {
+                logger.warn(" redis lock renew fail, lock lost key:[{}]", key);
+                holder.lost = true;
+                holder.cancelRenew();
+            }
+        } catch (Exception e) {
+            //网络异常,下次继续
+            logger.error(" redis lock renew fail key:[{}]", key, e);
+        }
+    }
+
+    /**
+     * 持有信息
+     */
+    private static class LockHolder {
+
+        //持有线程
+        private final Thread thread;
+
+        //owner token
+        private final String token;
+
+        //重入次数,只有持有线程会修改
+        private int count = 1;
+
+        //看门狗续期任务
+        private volatile ScheduledFuture<?> renewTask;
+
+        //续期时发现锁已丢失
+        private volatile boolean lost = false;
+
+        private LockHolder(Thread thread, String token) {
+            this.thread = thread;
+            this.token = token;
+        }
+
+        /**
+         * 停止续期(任务可能尚未赋值)
+         */
+        private void cancelRenew() {
+            //任务
+            ScheduledFuture<?> task = this.renewTask;
+            //判空
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.rock.micro.base.db.redis;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -69,7 +70,7 @@ public interface BaseRedisService {
     boolean setAndTime(String key, Object value, long time);
 
     /**
-     * 分布式锁
+     * 分布式锁(简单版,无持有者、无法释放、不续期,新代码请使用 {@link BaseRedisLockService})
      *
      * @param key  键
      * @param time 时间(秒) time要大于0 如果time小于等于0 将设置永久锁
@@ -87,14 +88,13 @@ public interface BaseRedisService {
     long incr(String key, long delta);
 
     /**
-     * 自增,并设置过期时间(有风险,2次操作,并非事务性)
+     * 自增,并设置过期时间(Lua 原子执行,仅在key没有过期时间时设置)
      *
      * @param key   键
      * @param delta 要增加几(大于0)
+     * @param time  时间(秒)
      * @return
-     * @Deprecated 之所以废弃, 就是因为是非原子性操作, 使用时慎用
      */
-    @Deprecated
     long incr(String key, long delta, long time);
 
     /**
@@ -374,6 +374,28 @@ public interface BaseRedisService {
      */
     boolean setListRightAndTime(String key, List<Object> value, long time);
 
+    /**
+     * 将list放入缓存(左侧),只保留最新的size个,并设置时间(Lua 原子执行)
+     *
+     * @param key   键
+     * @param value 值
+     * @param size  最多保留数量,小于等于0不裁剪
+     * @param time  时间(秒),小于等于0不设置
+     * @return 操作后list长度
+     */
+    long setListLeftAndTrimAndTime(String key, List<Object> value, long size, long time);
+
+    /**
+     * 将list放入缓存(右侧),只保留最新的size个,并设置时间(Lua 原子执行)
+     *
+     * @param key   键
+     * @param value 值
+     * @param size  最多保留数量,小于等于0不裁剪
+     * @param time  时间(秒),小于等于0不设置
+     * @return 操作后list长度
+     */
+    long setListRightAndTrimAndTime(String key, List<Object> value, long size, long time);
+
     /**
      * 根据索引修改list中的某条数据
      *
@@ -404,4 +426,45 @@ public interface BaseRedisService {
      */
     void deleteListRangeIndex(String key, Long start, Long end);
 
+
+    /**
+     * 批量获取值(MGET,一次往返)
+     *
+     * @param keys 键列表
+     * @return 与键列表顺序一一对应,不存在的为null
+     */
+    List<Object> multiGet(Collection<String> keys);
+
+    /**
+     * 批量放入值并设置时间(一次往返)
+     *
+     * @param map  键值
+     * @param time 时间(秒),小于等于0则永久
+     * @return
+     */
+    boolean multiSetAndTime(Map<String, Object> map, long time);
+
+    /**
+     * 批量获取整个hash(一次往返)
+     *
+     * @param keys 键列表
+     * @return 与键列表顺序一一对应
+     */
+    List<Map<Object, Object>> multiGetHash(List<String> keys);
+
+    /**
+     * 批量删除
+     *
+     * @param keys 键列表
+     * @return 删除数量
+     */
+    long multiDelete(Collection<String> keys);
+
+    /**
+     * 创建一个管道,排队多个操作后一次往返执行
+     *
+     * @return
+     */
+    RedisPipeline pipeline();
+
 }
\ No newline at end of file
@@ -4,20 +4,33 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 public final class BaseRedisServiceImpl implements BaseRedisService {
 
     private static final Logger logger = LoggerFactory.getLogger(BaseRedisServiceImpl.class);
 
+    //Lua 脚本参数、返回值的序列化器,参数已提前转为字符串
+    private static final StringRedisSerializer STRING_SERIALIZER = new StringRedisSerializer();
+
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
@@ -108,9 +121,9 @@ public final class BaseRedisServiceImpl implements BaseRedisService {
         boolean lock = false;
         try {
             //尝试设置值,如果没有值,才能设置成功,否则设置失败,如果成功,说明获取锁
-            lock = redisTemplate.opsForValue().setIfAbsent(key, String.format("我是分布式锁,过期时间:%s秒", time), time, TimeUnit.SECONDS);
+            lock = Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, String.format("我是分布式锁,过期时间:%s秒", time), time, TimeUnit.SECONDS));
         } catch (Exception e) {
-
+            logger.error(" redis lock fail key:[{}]", key, e);
         }
         //返回结果
         return lock;
@@ -130,15 +143,8 @@ public final class BaseRedisServiceImpl implements BaseRedisService {
         if (delta <= 0L) {
             throw new RuntimeException("递增因子必须大于0");
         }
-        //incr
-        Long increment = redisTemplate.opsForValue().increment(key, delta);
-        //如果未设置过期时间
-        if (increment <= 1L) {
-            //设置过期时间
-            redisTemplate.expire(key, time, TimeUnit.SECONDS);
-        }
-        //返回
-        return increment;
+        //INCRBY + EXPIRE 原子执行
+        return executeScript(RedisLuaScripts.INCR_WITH_TTL, key, String.valueOf(delta), String.valueOf(time));
     }
 
     @Override
@@ -167,12 +173,20 @@ public final class BaseRedisServiceImpl implements BaseRedisService {
     @Override
     public boolean setHash(String key, Map<String, Object> map, long time) {
         try {
-            redisTemplate.opsForHash().putAll(key, map);
-            //如果需要设置时间
-            if (time > 0L) {
-                //设置时间
-                setTime(key, time);
+            //如果不需要设置时间
+            if (time <= 0L) {
+                redisTemplate.opsForHash().putAll(key, map);
+                return true;
             }
+            //参数:过期时间,hashKey1,hashValue1...
+            List<String> args = new ArrayList<>(map.size() * 2 + 1);
+            args.add(String.valueOf(time));
+            map.forEach((hashKey, hashValue) -> {
+                args.add(hashKey);
+                args.add(serializeHashValue(hashValue));
+            });
+            //HSET + EXPIRE 原子执行
+            executeScript(RedisLuaScripts.HASH_PUT_WITH_TTL, key, args.toArray());
             return true;
         } catch (Exception e) {
             logger.error(" redis setHash fail:{}", e);
@@ -188,11 +202,12 @@ public final class BaseRedisServiceImpl implements BaseRedisService {
     @Override
     public boolean setHashAndTime(String key, String hashKey, Object hashValue, long time) {
         try {
-            redisTemplate.opsForHash().put(key, hashKey, hashValue);
             //如果需要设置时间
             if (time > 0L) {
-                //设置时间
-                setTime(key, time);
+                //HSET + EXPIRE 原子执行
+                executeScript(RedisLuaScripts.HASH_PUT_WITH_TTL, key, String.valueOf(time), hashKey, serializeHashValue(hashValue));
+            } else {
+                redisTemplate.opsForHash().put(key, hashKey, hashValue);
             }
             return true;
         } catch (Exception e) {
@@ -249,11 +264,19 @@ public final class BaseRedisServiceImpl implements BaseRedisService {
     @Override
     public long setSetAndTime(String key, long time, Object... values) {
         try {
-            Long count = redisTemplate.opsForSet().add(key, values);
+            Long count;
             //如果需要设置时间
             if (time > 0L) {
-                //设置时间
-                setTime(key, time);
+                //参数:过期时间,值...
+                List<String> args = new ArrayList<>(values.length + 1);
+                args.add(String.valueOf(time));
+                for (Object value : values) {
+                    args.add(serializeValue(value));
+                }
+                //SADD + EXPIRE 原子执行
+                count = executeScript(RedisLuaScripts.SET_ADD_WITH_TTL, key, args.toArray());
+            } else {
+                count = redisTemplate.opsForSet().add(key, values);
             }
             //判空
             if (count == null) {
@@ -349,9 +372,11 @@ public final class BaseRedisServiceImpl implements BaseRedisService {
     @Override
     public boolean setListLeftAndTime(String key, Object value, long time) {
         try {
-            redisTemplate.opsForList().leftPush(key, value);
             if (time > 0) {
-                setTime(key, time);
+                //PUSH + EXPIRE 原子执行
+                listPushAndTrimAndTime(key, "L", Collections.singletonList(value), -1L, time);
+            } else {
+                redisTemplate.opsForList().leftPush(key, value);
             }
             return true;
         } catch (Exception e) {
@@ -368,9 +393,11 @@ public final class BaseRedisServiceImpl implements BaseRedisService {
     @Override
     public boolean setListLeftAndTime(String key, List<Object> value, long time) {
         try {
-            redisTemplate.opsForList().leftPushAll(key, value);
             if (time > 0) {
-                setTime(key, time);
+                //PUSH + EXPIRE 原子执行
+                listPushAndTrimAndTime(key, "L", value, -1L, time);
+            } else {
+                redisTemplate.opsForList().leftPushAll(key, value);
             }
             return true;
         } catch (Exception e) {
@@ -387,9 +414,11 @@ public final class BaseRedisServiceImpl implements BaseRedisService {
     @Override
     public boolean setListRightAndTime(String key, Object value, long time) {
         try {
-            redisTemplate.opsForList().rightPush(key, value);
             if (time > 0) {
-                setTime(key, time);
+                //PUSH + EXPIRE 原子执行
+                listPushAndTrimAndTime(key, "R", Collections.singletonList(value), -1L, time);
+            } else {
+                redisTemplate.opsForList().rightPush(key, value);
             }
             return true;
         } catch (Exception e) {
@@ -406,9 +435,11 @@ public final class BaseRedisServiceImpl implements BaseRedisService {
     @Override
     public boolean setListRightAndTime(String key, List<Object> value, long time) {
         try {
-            redisTemplate.opsForList().rightPushAll(key, value);
             if (time > 0) {
-                setTime(key, time);
+                //PUSH + EXPIRE 原子执行
+                listPushAndTrimAndTime(key, "R", value, -1L, time);
+            } else {
+                redisTemplate.opsForList().rightPushAll(key, value);
             }
             return true;
         } catch (Exception e) {
@@ -417,6 +448,18 @@ public final class BaseRedisServiceImpl implements BaseRedisService {
         }
     }
 
+    @Override
+    public long setListLeftAndTrimAndTime(String key, List<Object> value, long size, long time) {
+        //实现
+        return listPushAndTrimAndTime(key, "L", value, size, time);
+    }
+
+    @Override
+    public long setListRightAndTrimAndTime(String key, List<Object> value, long size, long time) {
+        //实现
+        return listPushAndTrimAndTime(key, "R", value, size, time);
+    }
+
     @Override
     public boolean updateListIndex(String key, long index, Object value) {
         try {
@@ -451,4 +494,181 @@ public final class BaseRedisServiceImpl implements BaseRedisService {
         }
     }
 
+
+    @Override
+    public List<Object> multiGet(Collection<String> keys) {
+        //判空
+        if (keys == null || keys.isEmpty()) {
+            //过
+            return new ArrayList<>();
+        }
+        try {
+            return redisTemplate.opsForValue().multiGet(keys);
+        } catch (Exception e) {
+            logger.error(" redis multiGet fail:{}", e);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean multiSetAndTime(Map<String, Object> map, long time) {
+        //判空
+        if (map == null || map.isEmpty()) {
+            //过
+            return true;
+        }
+        try {
+            //如果不需要设置时间
+            if (time <= 0L) {
+                //MSET
+                redisTemplate.opsForValue().multiSet(map);
+                return true;
+            }
+            //管道
+            RedisPipeline pipeline = pipeline();
+            //每个key一条 SET EX
+            map.forEach((key, value) -> pipeline.setAndTime(key, value, time));
+            //执行
+            pipeline.execute();
+            return true;
+        } catch (Exception e) {
+            logger.error(" redis multiSetAndTime fail:{}", e);
+            return false;
+        }
+    }
+
+    @Override
+    public List<Map<Object, Object>> multiGetHash(List<String> keys) {
+        //判空
+        if (keys == null || keys.isEmpty()) {
+            //过
+            return new ArrayList<>();
+        }
+        try {
+            //管道
+            RedisPipeline pipeline = pipeline();
+            //排队
+            List<RedisPipeline.Response<Map<Object, Object>>> responseList = keys.stream()
+                    .map(pipeline::getHash)
+                    .collect(Collectors.toList());
+            //执行
+            pipeline.execute();
+            //返回
+            return responseList.stream()
+                    .map(RedisPipeline.Response::get)
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            logger.error(" redis multiGetHash fail:{}", e);
+            return null;
+        }
+    }
+
+    @Override
+    public long multiDelete(Collection<String> keys) {
+        //判空
+        if (keys == null || keys.isEmpty()) {
+            //过
+            return 0L;
+        }
+        Long count = redisTemplate.delete(keys);
+        //判空
+        if (count == null) {
+            return 0L;
+        }
+        return count;
+    }
+
+    @Override
+    public RedisPipeline pipeline() {
+        return new RedisPipeline(redisTemplate);
+    }
+
+
+    /**
+     * 启动时预加载所有 Lua 脚本,之后执行直接走 EVALSHA
+     */
+    @PostConstruct
+    public void preloadScripts() {
+        try {
+            redisTemplate.execute((RedisCallback<Object>) connection -> {
+                //循环
+                for (RedisScript<?> script : RedisLuaScripts.ALL) {
+                    //加载
+                    connection.scriptingCommands().scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            //预加载失败不影响使用,执行时遇到 NOSCRIPT 会自动回退 EVAL
+            logger.warn(" redis preloadScripts fail:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * list 放入 + 裁剪 + 过期时间 实现
+     *
+     * @param key       键
+     * @param direction 方向[L][R]
+     * @param value     值列表
+     * @param size      最多保留数量,小于等于0不裁剪
+     * @param time      时间(秒),小于等于0不设置
+     * @return 操作后list长度
+     */
+    private long listPushAndTrimAndTime(String key, String direction, List<Object> value, long size, long time) {
+        //参数:方向,过期时间,最多保留数量,值...
+        List<String> args = new ArrayList<>(value.size() + 3);
+        args.add(direction);
+        args.add(String.valueOf(time));
+        args.add(String.valueOf(size));
+        for (Object item : value) {
+            args.add(serializeValue(item));
+        }
+        //原子执行
+        Long length = executeScript(RedisLuaScripts.LIST_PUSH_WITH_TRIM_AND_TTL, key, args.toArray());
+        //判空
+        if (length == null) {
+            return 0L;
+        }
+        return length;
+    }
+
+    /**
+     * 执行 Lua 脚本(EVALSHA,NOSCRIPT 时自动回退 EVAL)
+     * 参数已提前转为字符串,按字符串原样传入,避免再被值序列化器包一层
+     *
+     * @param script 脚本
+     * @param key    键
+     * @param args   参数
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private <R> R executeScript(RedisScript<R> script, String key, Object... args) {
+        //实现
+        return redisTemplate.execute(script, STRING_SERIALIZER, (RedisSerializer<R>) (RedisSerializer<?>) STRING_SERIALIZER, Collections.singletonList(key), args);
+    }
+
+    /**
+     * 按模板的值序列化器,将值提前序列化为字符串(与直接写入时存储格式一致)
+     *
+     * @param value 值
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private String serializeValue(Object value) {
+        //实现
+        return new String(((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按模板的hash值序列化器,将值提前序列化为字符串(与直接写入时存储格式一致)
+     *
+     * @param value 值
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private String serializeHashValue(Object value) {
+        //实现
+        return new String(((RedisSerializer<Object>) redisTemplate.getHashValueSerializer()).serialize(value), StandardCharsets.UTF_8);
+    }
+
 }
\ No newline at end of file
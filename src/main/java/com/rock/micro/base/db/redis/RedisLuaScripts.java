@@ -0,0 +1,124 @@
+package com.rock.micro.base.db.redis;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Redis Lua 脚本注册表
+ * -
+ * 复合操作(写入 + 过期时间 等)在服务端一次原子执行,只需一次往返
+ * 启动时预加载(SCRIPT LOAD),执行走 EVALSHA,服务端脚本缓存被清空(NOSCRIPT)时会自动回退 EVAL 重新加载
+ * 参数约定:字段、数字统一转为字符串传入,值使用 RedisTemplate 的值序列化器提前序列化
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+public class RedisLuaScripts {
+
+    /**
+     * 自增并设置过期时间,仅在key没有过期时间时设置(首次自增 或 之前设置失败)
+     * KEYS[1]=key ARGV[1]=增量 ARGV[2]=过期时间(秒)
+     * 返回:自增后的值
+     */
+    public static final RedisScript<Long> INCR_WITH_TTL = new DefaultRedisScript<>(
+            "local v = redis.call('INCRBY', KEYS[1], ARGV[1]) " +
+                    "if tonumber(ARGV[2]) > 0 and redis.call('TTL', KEYS[1]) < 0 then " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+                    "end " +
+                    "return v",
+            Long.class);
+
+    /**
+     * hash放入多个值并设置过期时间
+     * KEYS[1]=key ARGV[1]=过期时间(秒) ARGV[2..]=hashKey1,hashValue1,hashKey2,hashValue2...
+     * 返回:新增的hashKey数量
+     */
+    public static final RedisScript<Long> HASH_PUT_WITH_TTL = new DefaultRedisScript<>(
+            "local n = 0 " +
+                    "for i = 2, #ARGV, 2 do " +
+                    "n = n + redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) " +
+                    "end " +
+                    "if tonumber(ARGV[1]) > 0 then " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+                    "end " +
+                    "return n",
+            Long.class);
+
+    /**
+     * set放入多个值并设置过期时间
+     * KEYS[1]=key ARGV[1]=过期时间(秒) ARGV[2..]=值
+     * 返回:新增数量
+     */
+    public static final RedisScript<Long> SET_ADD_WITH_TTL = new DefaultRedisScript<>(
+            "local n = 0 " +
+                    "for i = 2, #ARGV do " +
+                    "n = n + redis.call('SADD', KEYS[1], ARGV[i]) " +
+                    "end " +
+                    "if tonumber(ARGV[1]) > 0 then " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+                    "end " +
+                    "return n",
+            Long.class);
+
+    /**
+     * list放入多个值,保留最新的N个,并设置过期时间
+     * KEYS[1]=key ARGV[1]=方向[L][R] ARGV[2]=过期时间(秒) ARGV[3]=最多保留数量(小于等于0不裁剪) ARGV[4..]=值
+     * 返回:操作后list长度
+     */
+    public static final RedisScript<Long> LIST_PUSH_WITH_TRIM_AND_TTL = new DefaultRedisScript<>(
+            "local cmd = ARGV[1] == 'L' and 'LPUSH' or 'RPUSH' " +
+                    "for i = 4, #ARGV do " +
+                    "redis.call(cmd, KEYS[1], ARGV[i]) " +
+                    "end " +
+                    "local max = tonumber(ARGV[3]) " +
+                    "if max > 0 then " +
+                    "if ARGV[1] == 'L' then redis.call('LTRIM', KEYS[1], 0, max - 1) " +
+                    "else redis.call('LTRIM', KEYS[1], -max, -1) end " +
+                    "end " +
+                    "if tonumber(ARGV[2]) > 0 then " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+                    "end " +
+                    "return redis.call('LLEN', KEYS[1])",
+            Long.class);
+
+    /**
+     * 释放锁,只有持有者(value 等于 owner token)才能删除
+     * KEYS[1]=锁key ARGV[1]=owner token
+     * 返回:1=释放成功 0=不是持有者或已过期
+     */
+    public static final RedisScript<Long> LOCK_RELEASE = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+                    "return redis.call('DEL', KEYS[1]) " +
+                    "end " +
+                    "return 0",
+            Long.class);
+
+    /**
+     * 续期锁,只有持有者才能续期
+     * KEYS[1]=锁key ARGV[1]=owner token ARGV[2]=租期(毫秒)
+     * 返回:1=续期成功 0=不是持有者或已过期
+     */
+    public static final RedisScript<Long> LOCK_RENEW = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+                    "return redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+                    "end " +
+                    "return 0",
+            Long.class);
+
+    /**
+     * 所有脚本,用于启动预加载
+     */
+    public static final List<RedisScript<?>> ALL = Collections.unmodifiableList(Arrays.asList(
+            INCR_WITH_TTL,
+            HASH_PUT_WITH_TTL,
+            SET_ADD_WITH_TTL,
+            LIST_PUSH_WITH_TRIM_AND_TTL,
+            LOCK_RELEASE,
+            LOCK_RENEW
+    ));
+
+}
@@ -0,0 +1,396 @@
+package com.rock.micro.base.db.redis;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Redis 管道
+ * -
+ * 先排队,{@link #execute()} 时一次网络往返全部发出,执行后通过 {@link Response#get()} 获取各自结果
+ * 注意:只使用有返回值的命令(如 HSET 而非 HMSET),保证返回结果能按操作一一对应
+ * 非线程安全,一个管道只在一个线程中使用,执行一次
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+public class RedisPipeline {
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    //排队中的操作
+    private final List<Operation<?>> operationList = new ArrayList<>();
+
+    //是否已执行
+    private boolean executed = false;
+
+    RedisPipeline(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 获取字符串
+     *
+     * @param key 键
+     * @return
+     */
+    public Response<String> getString(String key) {
+        //实现
+        return add(1, operations -> operations.opsForValue().get(key), replyList -> {
+            //结果
+            Object value = replyList.get(0);
+            //返回
+            return value == null ? null : value.toString();
+        });
+    }
+
+    /**
+     * 获取值
+     *
+     * @param key 键
+     * @return
+     */
+    public Response<Object> get(String key) {
+        //实现
+        return add(1, operations -> operations.opsForValue().get(key), replyList -> replyList.get(0));
+    }
+
+    /**
+     * 放入值并设置时间(SET EX,一条命令)
+     *
+     * @param key   键
+     * @param value 值
+     * @param time  时间(秒),小于等于0则永久
+     * @return
+     */
+    public Response<Boolean> setAndTime(String key, Object value, long time) {
+        //实现
+        return add(1, operations -> {
+            //如果需要设置时间
+            if (time > 0L) {
+                operations.opsForValue().set(key, value, time, TimeUnit.SECONDS);
+            } else {
+                operations.opsForValue().set(key, value);
+            }
+        }, replyList -> toBoolean(replyList.get(0)));
+    }
+
+    /**
+     * 递增
+     *
+     * @param key   键
+     * @param delta 递增因子
+     * @return
+     */
+    public Response<Long> incr(String key, long delta) {
+        //实现
+        return add(1, operations -> operations.opsForValue().increment(key, delta), replyList -> toLong(replyList.get(0)));
+    }
+
+    /**
+     * 设置缓存失效时间
+     *
+     * @param key  键
+     * @param time 时间(秒)
+     * @return
+     */
+    public Response<Boolean> setTime(String key, long time) {
+        //实现
+        return add(1, operations -> operations.expire(key, time, TimeUnit.SECONDS), replyList -> toBoolean(replyList.get(0)));
+    }
+
+    /**
+     * 判断key是否存在
+     *
+     * @param key 键
+     * @return
+     */
+    public Response<Boolean> containsKey(String key) {
+        //实现
+        return add(1, operations -> operations.hasKey(key), replyList -> toBoolean(replyList.get(0)));
+    }
+
+    /**
+     * 删除
+     *
+     * @param keys 键
+     * @return 删除数量
+     */
+    public Response<Long> delete(Collection<String> keys) {
+        //实现
+        return add(1, operations -> operations.delete(keys), replyList -> toLong(replyList.get(0)));
+    }
+
+    /**
+     * 获取hash中的值
+     *
+     * @param key     键
+     * @param hashKey hash键
+     * @return
+     */
+    public Response<Object> getHash(String key, String hashKey) {
+        //实现
+        return add(1, operations -> operations.opsForHash().get(key, hashKey), replyList -> replyList.get(0));
+    }
+
+    /**
+     * 获取整个hash
+     *
+     * @param key 键
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public Response<Map<Object, Object>> getHash(String key) {
+        //实现
+        return add(1, operations -> operations.opsForHash().entries(key), replyList -> (Map<Object, Object>) replyList.get(0));
+    }
+
+    /**
+     * 向hash中放入值并设置时间(HSET + EXPIRE,同一次往返)
+     *
+     * @param key       键
+     * @param hashKey   hash键
+     * @param hashValue 值
+     * @param time      时间(秒),小于等于0则不设置
+     * @return
+     */
+    public Response<Boolean> setHashAndTime(String key, String hashKey, Object hashValue, long time) {
+        //实现
+        return add(time > 0L ? 2 : 1, operations -> {
+            //放入
+            operations.opsForHash().put(key, hashKey, hashValue);
+            //如果需要设置时间
+            if (time > 0L) {
+                operations.expire(key, time, TimeUnit.SECONDS);
+            }
+        }, replyList -> true);
+    }
+
+    /**
+     * 向set中放入值并设置时间(SADD + EXPIRE,同一次往返)
+     *
+     * @param key    键
+     * @param time   时间(秒),小于等于0则不设置
+     * @param values 值
+     * @return 新增数量
+     */
+    public Response<Long> setSetAndTime(String key, long time, Object... values) {
+        //实现
+        return add(time > 0L ? 2 : 1, operations -> {
+            //放入
+            operations.opsForSet().add(key, values);
+            //如果需要设置时间
+            if (time > 0L) {
+                operations.expire(key, time, TimeUnit.SECONDS);
+            }
+        }, replyList -> toLong(replyList.get(0)));
+    }
+
+    /**
+     * 向list右侧放入值并设置时间(RPUSH + EXPIRE,同一次往返)
+     *
+     * @param key   键
+     * @param value 值
+     * @param time  时间(秒),小于等于0则不设置
+     * @return list长度
+     */
+    public Response<Long> setListRightAndTime(String key, Object value, long time) {
+        //实现
+        return add(time > 0L ? 2 : 1, operations -> {
+            //放入
+            operations.opsForList().rightPush(key, value);
+            //如果需要设置时间
+            if (time > 0L) {
+                operations.expire(key, time, TimeUnit.SECONDS);
+            }
+        }, replyList -> toLong(replyList.get(0)));
+    }
+
+    /**
+     * 向list左侧放入值并设置时间(LPUSH + EXPIRE,同一次往返)
+     *
+     * @param key   键
+     * @param value 值
+     * @param time  时间(秒),小于等于0则不设置
+     * @return list长度
+     */
+    public Response<Long> setListLeftAndTime(String key, Object value, long time) {
+        //实现
+        return add(time > 0L ? 2 : 1, operations -> {
+            //放入
+            operations.opsForList().leftPush(key, value);
+            //如果需要设置时间
+            if (time > 0L) {
+                operations.expire(key, time, TimeUnit.SECONDS);
+            }
+        }, replyList -> toLong(replyList.get(0)));
+    }
+
+    /**
+     * 当前排队的操作数量
+     *
+     * @return
+     */
+    public int size() {
+        //实现
+        return this.operationList.size();
+    }
+
+    /**
+     * 执行,一次网络往返发出所有排队的命令,并填充每个操作的结果
+     *
+     * @return 所有命令的原始返回
+     */
+    public List<Object> execute() {
+        //只能执行一次
+        if (this.executed) {
+            throw new IllegalStateException("RedisPipeline 已执行过");
+        }
+        //标记
+        this.executed = true;
+        //判空
+        if (this.operationList.isEmpty()) {
+            //过
+            return new ArrayList<>();
+        }
+        //执行
+        List<Object> replyList = this.redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                //循环
+                for (Operation<?> operation : operationList) {
+                    //排队
+                    operation.command.accept((RedisOperations<String, Object>) operations);
+                }
+                //管道中必须返回null
+                return null;
+            }
+        });
+        //应有的返回数量
+        int replyCount = this.operationList.stream().mapToInt(operation -> operation.replyCount).sum();
+        //如果对不上,说明有命令没有返回值
+        if (replyList.size() != replyCount) {
+            throw new IllegalStateException(String.format("RedisPipeline 返回数量不匹配,应为:%s,实际:%s", replyCount, replyList.size()));
+        }
+        //当前位置
+        int index = 0;
+        //循环
+        for (Operation<?> operation : this.operationList) {
+            //填充本操作的结果
+            operation.complete(replyList.subList(index, index + operation.replyCount));
+            //下一个
+            index += operation.replyCount;
+        }
+        //返回
+        return replyList;
+    }
+
+    /**
+     * 排队一个操作
+     *
+     * @param replyCount 产生的返回数量
+     * @param command    命令
+     * @param converter  结果转换
+     * @return
+     */
+    private <T> Response<T> add(int replyCount, Consumer<RedisOperations<String, Object>> command, Function<List<Object>, T> converter) {
+        //如果已执行
+        if (this.executed) {
+            throw new IllegalStateException("RedisPipeline 已执行过");
+        }
+        //初始化
+        Operation<T> operation = new Operation<>(replyCount, command, converter);
+        //排队
+        this.operationList.add(operation);
+        //返回
+        return operation.response;
+    }
+
+    private static Boolean toBoolean(Object reply) {
+        //实现
+        return reply instanceof Boolean ? (Boolean) reply : reply != null;
+    }
+
+    private static Long toLong(Object reply) {
+        //实现
+        return reply instanceof Number ? ((Number) reply).longValue() : 0L;
+    }
+
+    /**
+     * 排队中的操作
+     */
+    private static class Operation<T> {
+
+        //产生的返回数量
+        private final int replyCount;
+
+        //命令
+        private final Consumer<RedisOperations<String, Object>> command;
+
+        //结果转换
+        private final Function<List<Object>, T> converter;
+
+        //结果
+        private final Response<T> response = new Response<>();
+
+        private Operation(int replyCount, Consumer<RedisOperations<String, Object>> command, Function<List<Object>, T> converter) {
+            this.replyCount = replyCount;
+            this.command = command;
+            this.converter = converter;
+        }
+
+        private void complete(List<Object> replyList) {
+            //转换并填充
+            this.response.set(this.converter.apply(replyList));
+        }
+
+    }
+
+    /**
+     * 管道中单个操作的结果,执行后才能获取
+     */
+    public static class Response<T> {
+
+        //结果
+        private T value;
+
+        //是否已完成
+        private boolean done = false;
+
+        private void set(T value) {
+            this.value = value;
+            this.done = true;
+        }
+
+        /**
+         * 获取结果
+         *
+         * @return
+         */
+        public T get() {
+            //如果未执行
+            if (this.done == false) {
+                throw new IllegalStateException("RedisPipeline 尚未执行");
+            }
+            //返回
+            return this.value;
+        }
+
+        @Override
+        public String toString() {
+            return this.done ? String.valueOf(this.value) : "Response{未执行}";
+        }
+
+    }
+
+}
@@ -3,14 +3,52 @@ package com.rock.micro.base.serivce.impl;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.rock.micro.base.common.auth.LoginAuth;
+import com.rock.micro.base.common.buffer.WriteBehindBuffer;
+import com.rock.micro.base.data.BaseDocument;
 import com.rock.micro.base.data.doc.NormalLogDoc;
 import com.rock.micro.base.db.mongo.BaseMongoServiceImpl;
 import com.rock.micro.base.serivce.NormalLogDocService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+
 @Service
 public class NormalLogDocServiceImpl extends BaseMongoServiceImpl<NormalLogDoc> implements NormalLogDocService {
 
+    //是否开启异步写缓冲,关闭则同步插入
+    @Value("${micro.base.log.write-behind.enabled:true}")
+    private boolean writeBehindEnabled;
+
+    //缓冲容量
+    @Value("${micro.base.log.write-behind.capacity:8192}")
+    private int writeBehindCapacity;
+
+    //每批数量,够一批立即刷出
+    @Value("${micro.base.log.write-behind.batch-size:200}")
+    private int writeBehindBatchSize;
+
+    //最长刷出间隔(毫秒)
+    @Value("${micro.base.log.write-behind.flush-interval-millis:1000}")
+    private long writeBehindFlushIntervalMillis;
+
+    //溢出策略[drop][sample][block]
+    @Value("${micro.base.log.write-behind.overflow-policy:drop}")
+    private String writeBehindOverflowPolicy;
+
+    //sample 策略的采样比例,每N条写入1条
+    @Value("${micro.base.log.write-behind.sample-rate:10}")
+    private int writeBehindSampleRate;
+
+    //block 策略的最长等待(毫秒)
+    @Value("${micro.base.log.write-behind.block-timeout-millis:50}")
+    private long writeBehindBlockTimeoutMillis;
+
+    //异步写缓冲
+    private WriteBehindBuffer<NormalLogDoc> writeBehindBuffer;
+
     @Override
     public void createLog(String type, String remark, JSONObject extraJson) {
         //初始化
@@ -18,7 +56,7 @@ public class NormalLogDocServiceImpl extends BaseMongoServiceImpl<NormalLogDoc>
         //组装json
         create.setExtraJson(extraJson);
         //插入日志
-        this.create(create);
+        write(create);
     }
 
     @Override
@@ -28,7 +66,7 @@ public class NormalLogDocServiceImpl extends BaseMongoServiceImpl<NormalLogDoc>
         //构建异常日志
         buildExtraJson(create, exception);
         //插入日志
-        this.create(create);
+        write(create);
     }
 
     @Override
@@ -38,7 +76,7 @@ public class NormalLogDocServiceImpl extends BaseMongoServiceImpl<NormalLogDoc>
         //组装json
         create.setExtraJson(extraJson);
         //插入日志
-        this.create(create);
+        write(create);
     }
 
     @Override
@@ -48,7 +86,63 @@ public class NormalLogDocServiceImpl extends BaseMongoServiceImpl<NormalLogDoc>
         //构建异常日志
         buildExtraJson(create, exception);
         //插入日志
-        this.create(create);
+        write(create);
+    }
+
+    /**
+     * 写入日志,开启异步写缓冲时只入队,不占用业务线程
+     *
+     * @param doc 实体
+     */
+    private void write(NormalLogDoc doc) {
+        //如果未开启异步写缓冲
+        if (this.writeBehindBuffer == null) {
+            //同步插入
+            this.create(doc);
+            //过
+            return;
+        }
+        //入队前初始化,保证创建时间是记录时间
+        BaseDocument.createBuild(doc, true);
+        //入队,满了按溢出策略处理
+        this.writeBehindBuffer.offer(doc);
+    }
+
+    /**
+     * 批量刷出日志
+     *
+     * @param docList 日志列表(已初始化)
+     */
+    private void flush(List<NormalLogDoc> docList) {
+        //批量插入(入队时已初始化)
+        insertPrepared(docList);
+    }
+
+    /**
+     * 初始化异步写缓冲
+     */
+    @PostConstruct
+    public void initWriteBehindBuffer() {
+        //如果未开启
+        if (this.writeBehindEnabled == false) {
+            //过
+            return;
+        }
+        //初始化
+        this.writeBehindBuffer = new WriteBehindBuffer<>("normal-log", this.writeBehindCapacity, this.writeBehindBatchSize, this.writeBehindFlushIntervalMillis,
+                WriteBehindBuffer.OverflowPolicy.valueOf(this.writeBehindOverflowPolicy.toUpperCase()), this.writeBehindSampleRate, this.writeBehindBlockTimeoutMillis, this::flush);
+    }
+
+    /**
+     * 关闭时刷出剩余日志
+     */
+    @PreDestroy
+    public void closeWriteBehindBuffer() {
+        //判空
+        if (this.writeBehindBuffer != null) {
+            //关闭并刷出
+            this.writeBehindBuffer.close();
+        }
     }
 
     /**
@@ -0,0 +1,885 @@
+package com.rock.micro.base.util;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.Introspector;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 深拷贝 扩展工具包
+ * -
+ * 同类型克隆 和 结构兼容的类型转换,每对 (源类,目标类) 只解析一次,用 {@link LambdaMetafactory} 生成 getter/setter(等同于手写的方法引用),之后不再反射
+ * 与 json 方式一样按属性拷贝:源对象的 public getter 取值,目标对象的 public setter 赋值,没有 getter 的字段不拷贝,setter 中的逻辑照常执行
+ * 值为 null 的属性默认不赋值(与 fastjson 不输出 null 一致),jackson 方式会赋值 null(与 jackson 默认输出 null 一致)
+ * 不可变值(字符串、数字、枚举、java.time 等)直接共享,集合、数组、Map、Date 逐层复制,同一次拷贝内的循环引用保持引用关系
+ * 以下情况对该值回退为 json 序列化再反序列化,保证与原有 json 方式结果一致:
+ * 类上有 fastjson/jackson 注解(可能改名、忽略字段)、没有无参构造、抽象类型、Map 与实体互转、类型不兼容的属性
+ * 性能对比见 src/jmh 下的基准测试(mvn -P benchmark test-compile exec:exec)
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+public class DeepCopyExtraUtils {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeepCopyExtraUtils.class);
+
+    //回退-fastjson 方式
+    public static final Fallback FASTJSON_FALLBACK = (value, targetType) -> JSON.parseObject(JSON.toJSONString(value), targetType);
+
+    //不可变、直接共享的类型
+    private static final Set<Class<?>> IMMUTABLE_CLASS_SET = new HashSet<>(Arrays.asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+            BigDecimal.class, BigInteger.class, UUID.class, Class.class));
+
+    //基础类型 -> 包装类
+    private static final Map<Class<?>, Class<?>> PRIMITIVE_WRAPPER_MAP = new HashMap<>();
+
+    static {
+        PRIMITIVE_WRAPPER_MAP.put(boolean.class, Boolean.class);
+        PRIMITIVE_WRAPPER_MAP.put(char.class, Character.class);
+        PRIMITIVE_WRAPPER_MAP.put(byte.class, Byte.class);
+        PRIMITIVE_WRAPPER_MAP.put(short.class, Short.class);
+        PRIMITIVE_WRAPPER_MAP.put(int.class, Integer.class);
+        PRIMITIVE_WRAPPER_MAP.put(long.class, Long.class);
+        PRIMITIVE_WRAPPER_MAP.put(float.class, Float.class);
+        PRIMITIVE_WRAPPER_MAP.put(double.class, Double.class);
+        PRIMITIVE_WRAPPER_MAP.put(void.class, Void.class);
+    }
+
+    //json 注解所在的包,类上出现时回退 json
+    private static final String[] JSON_ANNOTATION_PACKAGE_ARR = {"com.alibaba.fastjson.annotation.", "com.fasterxml.jackson.annotation.", "com.fasterxml.jackson.databind.annotation."};
+
+    //类 -> 是否可以直接按属性拷贝
+    private static final ClassValue<ClassMetadata> CLASS_CACHE = new ClassValue<ClassMetadata>() {
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata(type);
+        }
+    };
+
+    //源类 -> 目标类 -> 属性拷贝器,类卸载时自动释放
+    private static final ClassValue<ClassValue<BeanCopier>> COPIER_CACHE = new ClassValue<ClassValue<BeanCopier>>() {
+        @Override
+        protected ClassValue<BeanCopier> computeValue(Class<?> sourceClass) {
+            return new ClassValue<BeanCopier>() {
+                @Override
+                protected BeanCopier computeValue(Class<?> targetClass) {
+                    return new BeanCopier(CLASS_CACHE.get(sourceClass), CLASS_CACHE.get(targetClass));
+                }
+            };
+        }
+    };
+
+    /**
+     * 回退方式
+     */
+    @FunctionalInterface
+    public interface Fallback {
+
+        /**
+         * 把值转为目标类型
+         *
+         * @param value      值
+         * @param targetType 目标类型
+         * @return
+         */
+        Object convert(Object value, Type targetType);
+
+    }
+
+    /**
+     * 深拷贝单个对象,也可以将一个对象转化为另一个结构兼容的对象,不支持的部分回退 fastjson
+     *
+     * @param source      源对象
+     * @param targetClass 目标类
+     * @return
+     */
+    public static <T> T copy(Object source, Class<T> targetClass) {
+        //实现
+        return copy(source, targetClass, FASTJSON_FALLBACK);
+    }
+
+    /**
+     * 深拷贝单个对象,也可以将一个对象转化为另一个结构兼容的对象
+     *
+     * @param source      源对象
+     * @param targetClass 目标类
+     * @param fallback    不支持时的回退方式
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T copy(Object source, Class<T> targetClass, Fallback fallback) {
+        //null 不赋值
+        return copy(source, targetClass, fallback, false);
+    }
+
+    /**
+     * 深拷贝单个对象,也可以将一个对象转化为另一个结构兼容的对象
+     *
+     * @param source      源对象
+     * @param targetClass 目标类
+     * @param fallback    不支持时的回退方式
+     * @param copyNull    值为 null 的属性是否也赋值(与回退方式是否输出 null 保持一致)
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T copy(Object source, Class<T> targetClass, Fallback fallback, boolean copyNull) {
+        //判空
+        if (source == null) {
+            //过
+            return null;
+        }
+        //实现
+        return (T) new CopyContext(fallback, copyNull).copyValue(source, targetClass, targetClass);
+    }
+
+    /**
+     * 深拷贝为列表,源对象必须是数组、集合,不支持的部分回退 fastjson
+     *
+     * @param listOrArrObject 源对象
+     * @param targetClass     元素目标类
+     * @return
+     */
+    public static <T> List<T> copyList(Object listOrArrObject, Class<T> targetClass) {
+        //实现
+        return copyList(listOrArrObject, targetClass, FASTJSON_FALLBACK);
+    }
+
+    /**
+     * 深拷贝为列表,源对象必须是数组、集合
+     *
+     * @param listOrArrObject 源对象
+     * @param targetClass     元素目标类
+     * @param fallback        不支持时的回退方式
+     * @return
+     */
+    public static <T> List<T> copyList(Object listOrArrObject, Class<T> targetClass, Fallback fallback) {
+        //null 不赋值
+        return copyList(listOrArrObject, targetClass, fallback, false);
+    }
+
+    /**
+     * 深拷贝为列表,源对象必须是数组、集合
+     *
+     * @param listOrArrObject 源对象
+     * @param targetClass     元素目标类
+     * @param fallback        不支持时的回退方式
+     * @param copyNull        值为 null 的属性是否也赋值(与回退方式是否输出 null 保持一致)
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> copyList(Object listOrArrObject, Class<T> targetClass, Fallback fallback, boolean copyNull) {
+        //判空
+        if (listOrArrObject == null) {
+            //过
+            return new ArrayList<>();
+        }
+        //上下文
+        CopyContext context = new CopyContext(fallback, copyNull);
+        //结果
+        List<T> resultList = new ArrayList<>();
+        //如果是集合
+        if (listOrArrObject instanceof Collection) {
+            //循环
+            for (Object item : (Collection<?>) listOrArrObject) {
+                resultList.add((T) context.copyValue(item, targetClass, targetClass));
+            }
+            //返回
+            return resultList;
+        }
+        //如果是数组
+        if (listOrArrObject.getClass().isArray()) {
+            //循环
+            for (int i = 0; i < Array.getLength(listOrArrObject); i++) {
+                resultList.add((T) context.copyValue(Array.get(listOrArrObject, i), targetClass, targetClass));
+            }
+            //返回
+            return resultList;
+        }
+        //其他结构回退
+        return (List<T>) fallback.convert(listOrArrObject, new ParameterizedTypeImpl(List.class, targetClass));
+    }
+
+    /**
+     * 获取属性拷贝器,不支持时返回 null
+     *
+     * @param sourceClass 源类
+     * @param targetClass 目标类
+     * @return
+     */
+    private static BeanCopier getCopier(Class<?> sourceClass, Class<?> targetClass) {
+        //源类、目标类都必须支持
+        ClassMetadata source = CLASS_CACHE.get(sourceClass);
+        ClassMetadata target = CLASS_CACHE.get(targetClass);
+        if (source.supported == false || target.supported == false || target.constructor == null) {
+            return null;
+        }
+        //缓存
+        return COPIER_CACHE.get(sourceClass).get(targetClass);
+    }
+
+    /**
+     * 单次拷贝的上下文(记录已拷贝的对象,保持循环引用)
+     */
+    private static class CopyContext {
+
+        //回退方式
+        private final Fallback fallback;
+
+        //值为 null 的属性是否也赋值
+        private final boolean copyNull;
+
+        //源对象 -> 拷贝结果
+        private final Map<Object, Object> copiedMap = new IdentityHashMap<>();
+
+        private CopyContext(Fallback fallback, boolean copyNull) {
+            this.fallback = fallback;
+            this.copyNull = copyNull;
+        }
+
+        /**
+         * 拷贝一个值
+         *
+         * @param value       值
+         * @param targetClass 目标类
+         * @param targetType  目标类型(含泛型)
+         * @return
+         */
+        private Object copyValue(Object value, Class<?> targetClass, Type targetType) {
+            //判空
+            if (value == null) {
+                return null;
+            }
+            //值的类
+            Class<?> valueClass = value.getClass();
+            //目标类(基础类型转为包装类)
+            Class<?> boxedTargetClass = box(targetClass);
+            //目标是 Object 时按值本身的类型克隆
+            if (boxedTargetClass == Object.class) {
+                boxedTargetClass = valueClass;
+            }
+
+            /**
+             * 不可变值
+             */
+
+            if (isImmutable(valueClass)) {
+                //兼容则共享,不兼容回退转换
+                return boxedTargetClass.isInstance(value) ? value : this.fallback.convert(value, targetType);
+            }
+            //已拷贝过(循环引用)
+            Object copied = this.copiedMap.get(value);
+            if (copied != null && boxedTargetClass.isInstance(copied)) {
+                return copied;
+            }
+
+            /**
+             * 可变的常用值
+             */
+
+            //时间
+            if (value instanceof Date && boxedTargetClass.isAssignableFrom(valueClass)) {
+                return ((Date) value).clone();
+            }
+            //Map
+            if (value instanceof Map && Map.class.isAssignableFrom(boxedTargetClass)) {
+                return copyMap((Map<?, ?>) value, boxedTargetClass, targetType);
+            }
+            //集合
+            if (value instanceof Collection && Collection.class.isAssignableFrom(boxedTargetClass)) {
+                return copyCollection((Collection<?>) value, boxedTargetClass, targetType);
+            }
+            //数组
+            if (valueClass.isArray() && boxedTargetClass.isArray()) {
+                return copyArray(value, boxedTargetClass.getComponentType());
+            }
+
+            /**
+             * 实体
+             */
+
+            //如果是实体且支持属性拷贝(Map 与实体互转交给回退)
+            if (value instanceof Map == false && value instanceof Collection == false && valueClass.getName().startsWith("java.") == false
+                    && Map.class.isAssignableFrom(boxedTargetClass) == false) {
+                //拷贝器
+                BeanCopier copier = getCopier(valueClass, boxedTargetClass);
+                //如果支持
+                if (copier != null) {
+                    return copier.copy(value, this);
+                }
+            }
+            //回退
+            return this.fallback.convert(value, targetType);
+        }
+
+        /**
+         * 拷贝 Map,JSONObject 保持为 JSONObject
+         */
+        @SuppressWarnings("unchecked")
+        private Object copyMap(Map<?, ?> map, Class<?> targetClass, Type targetType) {
+            //值的泛型
+            Type valueType = typeArgument(targetType, 1);
+            //初始化
+            Map<Object, Object> result;
+            if (targetClass.isAssignableFrom(JSONObject.class) && (map instanceof JSONObject || targetClass == JSONObject.class)) {
+                result = (Map<Object, Object>) (Map<?, ?>) new JSONObject(new LinkedHashMap<>(map.size() * 4 / 3 + 1));
+            } else if (targetClass.isAssignableFrom(LinkedHashMap.class)) {
+                result = new LinkedHashMap<>(map.size() * 4 / 3 + 1);
+            } else if (targetClass.isAssignableFrom(TreeMap.class)) {
+                result = new TreeMap<>();
+            } else if (targetClass.isAssignableFrom(HashMap.class)) {
+                result = new HashMap<>(map.size() * 4 / 3 + 1);
+            } else {
+                //其他 Map 实现回退
+                return this.fallback.convert(map, targetType);
+            }
+            //记录
+            this.copiedMap.put(map, result);
+            //循环,key 一般不可变,直接共享
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                result.put(entry.getKey(), copyValue(entry.getValue(), rawClass(valueType), valueType));
+            }
+            //返回
+            return result;
+        }
+
+        /**
+         * 拷贝集合,JSONArray 保持为 JSONArray
+         */
+        private Object copyCollection(Collection<?> collection, Class<?> targetClass, Type targetType) {
+            //元素的泛型
+            Type elementType = typeArgument(targetType, 0);
+            //初始化
+            Collection<Object> result;
+            if (targetClass.isAssignableFrom(JSONArray.class) && (collection instanceof JSONArray || targetClass == JSONArray.class)) {
+                result = new JSONArray(new ArrayList<>(collection.size()));
+            } else if (targetClass.isAssignableFrom(ArrayList.class)) {
+                result = new ArrayList<>(collection.size());
+            } else if (targetClass.isAssignableFrom(LinkedHashSet.class)) {
+                result = new LinkedHashSet<>(collection.size() * 4 / 3 + 1);
+            } else {
+                //其他集合实现回退
+                return this.fallback.convert(collection, targetType);
+            }
+            //记录
+            this.copiedMap.put(collection, result);
+            //循环
+            for (Object item : collection) {
+                result.add(copyValue(item, rawClass(elementType), elementType));
+            }
+            //返回
+            return result;
+        }
+
+        /**
+         * 拷贝数组
+         */
+        private Object copyArray(Object array, Class<?> componentType) {
+            //长度
+            int length = Array.getLength(array);
+            //基础类型数组直接复制
+            if (componentType.isPrimitive() && array.getClass().getComponentType() == componentType) {
+                Object result = Array.newInstance(componentType, length);
+                System.arraycopy(array, 0, result, 0, length);
+                return result;
+            }
+            //初始化
+            Object result = Array.newInstance(componentType, length);
+            //记录
+            this.copiedMap.put(array, result);
+            //循环
+            for (int i = 0; i < length; i++) {
+                Array.set(result, i, copyValue(Array.get(array, i), componentType, componentType));
+            }
+            //返回
+            return result;
+        }
+
+    }
+
+    /**
+     * 类元数据:是否支持按属性拷贝、无参构造、public getter/setter
+     */
+    private static class ClassMetadata {
+
+        //类
+        private final Class<?> type;
+
+        //是否支持按属性拷贝
+        private final boolean supported;
+
+        //无参构造(没有时为 null)
+        private final Supplier<Object> constructor;
+
+        //属性名 -> public getter(getXxx,boolean 为 isXxx)
+        private final Map<String, Method> getterMap = new LinkedHashMap<>();
+
+        //属性名 -> public setter(同名重载时都保留)
+        private final Map<String, List<Method>> setterMap = new LinkedHashMap<>();
+
+        private ClassMetadata(Class<?> type) {
+            //记录
+            this.type = type;
+            //是否支持
+            boolean supported = type.isInterface() == false && Modifier.isAbstract(type.getModifiers()) == false
+                    && type.isEnum() == false && type.isArray() == false && type.isPrimitive() == false
+                    && type.getName().startsWith("java.") == false && hasJsonAnnotation(type) == false;
+            //无参构造
+            Supplier<Object> constructor = null;
+            //如果支持
+            if (supported) {
+                try {
+                    //无参构造
+                    constructor = createConstructor(type.getDeclaredConstructor());
+                    //所有 public 方法(含继承的)
+                    initAccessor(type);
+                } catch (Exception e) {
+                    //无参构造不存在或不可访问,回退 json
+                    LOG.debug("DeepCopyExtraUtils class:[{}] not supported, use json", type.getName());
+                    supported = false;
+                    constructor = null;
+                }
+            }
+            //赋值
+            this.supported = supported;
+            this.constructor = constructor;
+        }
+
+        /**
+         * 解析 public getter/setter,与 json 序列化一样跳过 transient 字段对应的属性
+         */
+        private void initAccessor(Class<?> type) {
+            //isXxx 的 getter,getXxx 优先
+            Map<String, Method> isGetterMap = new LinkedHashMap<>();
+            //循环
+            for (Method method : type.getMethods()) {
+                //跳过 static、桥接方法
+                if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.isSynthetic()) {
+                    continue;
+                }
+                //方法名
+                String name = method.getName();
+                //参数数量
+                int parameterCount = method.getParameterCount();
+                //getXxx
+                if (parameterCount == 0 && name.length() > 3 && name.startsWith("get") && method.getReturnType() != void.class
+                        && name.equals("getClass") == false) {
+                    this.getterMap.putIfAbsent(Introspector.decapitalize(name.substring(3)), method);
+                    continue;
+                }
+                //isXxx
+                if (parameterCount == 0 && name.length() > 2 && name.startsWith("is")
+                        && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)) {
+                    isGetterMap.putIfAbsent(Introspector.decapitalize(name.substring(2)), method);
+                    continue;
+                }
+                //setXxx
+                if (parameterCount == 1 && name.length() > 3 && name.startsWith("set")) {
+                    this.setterMap.computeIfAbsent(Introspector.decapitalize(name.substring(3)), k -> new ArrayList<>()).add(method);
+                }
+            }
+            //合并
+            isGetterMap.forEach(this.getterMap::putIfAbsent);
+            //transient 字段对应的属性不拷贝
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isTransient(field.getModifiers())) {
+                        this.getterMap.remove(field.getName());
+                        this.setterMap.remove(field.getName());
+                    }
+                }
+            }
+        }
+
+        /**
+         * 类、字段、方法上是否有 json 注解(可能改名、忽略字段,按属性拷贝会和 json 结果不一致)
+         */
+        private static boolean hasJsonAnnotation(Class<?> type) {
+            //循环继承链
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                //类
+                if (isJsonAnnotated(current.getDeclaredAnnotations())) {
+                    return true;
+                }
+                //字段
+                for (Field field : current.getDeclaredFields()) {
+                    if (isJsonAnnotated(field.getDeclaredAnnotations())) {
+                        return true;
+                    }
+                }
+                //方法
+                for (Method method : current.getDeclaredMethods()) {
+                    if (isJsonAnnotated(method.getDeclaredAnnotations())) {
+                        return true;
+                    }
+                }
+            }
+            //没有
+            return false;
+        }
+
+        private static boolean isJsonAnnotated(Annotation[] annotations) {
+            //循环
+            for (Annotation annotation : annotations) {
+                for (String prefix : JSON_ANNOTATION_PACKAGE_ARR) {
+                    if (annotation.annotationType().getName().startsWith(prefix)) {
+                        return true;
+                    }
+                }
+            }
+            //没有
+            return false;
+        }
+
+    }
+
+    /**
+     * 预编译的 (源类,目标类) 属性拷贝器
+     */
+    private static class BeanCopier {
+
+        //目标类元数据
+        private final ClassMetadata target;
+
+        //属性拷贝列表
+        private final PropertyCopier[] propertyArr;
+
+        private BeanCopier(ClassMetadata source, ClassMetadata target) {
+            //记录
+            this.target = target;
+            //初始化
+            List<PropertyCopier> propertyList = new ArrayList<>();
+            //查找器
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            //按属性名匹配 源getter 与 目标setter
+            for (Map.Entry<String, Method> entry : source.getterMap.entrySet()) {
+                //目标 setter
+                Method setter = chooseSetter(target.setterMap.get(entry.getKey()), entry.getValue().getReturnType());
+                //如果没有(json 方式同样不会赋值)
+                if (setter == null) {
+                    continue;
+                }
+                try {
+                    //生成 getter、setter,统一为 Object 签名(自动装箱拆箱)
+                    propertyList.add(new PropertyCopier(createGetter(lookup, entry.getValue()), createSetter(lookup, setter),
+                            setter.getParameterTypes()[0], setter.getGenericParameterTypes()[0]));
+                } catch (Exception e) {
+                    LOG.warn("DeepCopyExtraUtils property:[{}.{}] skip", target.type.getName(), entry.getKey(), e);
+                }
+            }
+            //转为数组,拷贝时遍历不产生迭代器
+            this.propertyArr = propertyList.toArray(new PropertyCopier[0]);
+        }
+
+        /**
+         * 同名 setter 有多个时,优先参数类型与 getter 返回值兼容的
+         */
+        private static Method chooseSetter(List<Method> setterList, Class<?> valueType) {
+            //判空
+            if (setterList == null || setterList.isEmpty()) {
+                return null;
+            }
+            //兼容的
+            for (Method setter : setterList) {
+                if (box(setter.getParameterTypes()[0]).isAssignableFrom(box(valueType))) {
+                    return setter;
+                }
+            }
+            //否则第一个,值交给转换
+            return setterList.get(0);
+        }
+
+        /**
+         * 拷贝
+         *
+         * @param source  源对象
+         * @param context 上下文
+         * @return
+         */
+        private Object copy(Object source, CopyContext context) {
+            try {
+                //新建目标对象
+                Object result = this.target.constructor.get();
+                //记录
+                context.copiedMap.put(source, result);
+                //循环属性
+                for (PropertyCopier property : this.propertyArr) {
+                    //源值
+                    Object value = property.getter.apply(source);
+                    //null 按回退方式的规则决定是否赋值,基础类型不能设置 null
+                    if (value == null && (context.copyNull == false || property.type.isPrimitive())) {
+                        continue;
+                    }
+                    //拷贝并设置
+                    property.setter.accept(result, context.copyValue(value, property.type, property.genericType));
+                }
+                //返回
+                return result;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("深拷贝失败:" + this.target.type.getName(), e);
+            }
+        }
+
+    }
+
+    /**
+     * 单个属性拷贝
+     */
+    private static class PropertyCopier {
+
+        //源 getter
+        private final Function<Object, Object> getter;
+
+        //目标 setter
+        private final BiConsumer<Object, Object> setter;
+
+        //目标属性类型
+        private final Class<?> type;
+
+        //目标属性泛型
+        private final Type genericType;
+
+        private PropertyCopier(Function<Object, Object> getter, BiConsumer<Object, Object> setter, Class<?> type, Type genericType) {
+            this.getter = getter;
+            this.setter = setter;
+            this.type = type;
+            this.genericType = genericType;
+        }
+
+    }
+
+    /**
+     * 生成无参构造:public 类的 public 构造用 {@link LambdaMetafactory} 生成(等同于 Entity::new),否则回退反射
+     */
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> createConstructor(Constructor<?> constructor) throws IllegalAccessException {
+        //如果可以生成 lambda
+        if (isLambdaCapable(constructor)) {
+            try {
+                //查找器
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                //构造句柄
+                MethodHandle handle = lookup.unreflectConstructor(constructor);
+                //生成
+                CallSite callSite = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                        MethodType.methodType(Object.class), handle, handle.type());
+                //返回
+                return (Supplier<Object>) callSite.getTarget().invokeExact();
+            } catch (Throwable e) {
+                LOG.debug("DeepCopyExtraUtils lambda constructor:[{}] unavailable, use reflection", constructor.getDeclaringClass().getName());
+            }
+        }
+        //强制访问
+        constructor.setAccessible(true);
+        //反射
+        return () -> invoke(() -> constructor.newInstance());
+    }
+
+    /**
+     * 生成 getter:可以时用 {@link LambdaMetafactory} 生成(等同于 Entity::getXxx,JIT 可以内联),否则回退反射
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> createGetter(MethodHandles.Lookup lookup, Method getter) {
+        //如果可以生成 lambda
+        if (isLambdaCapable(getter)) {
+            try {
+                //getter 句柄
+                MethodHandle handle = lookup.unreflect(getter);
+                //生成
+                CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class), handle, handle.type().wrap());
+                //返回
+                return (Function<Object, Object>) callSite.getTarget().invokeExact();
+            } catch (Throwable e) {
+                LOG.debug("DeepCopyExtraUtils lambda getter:[{}.{}] unavailable, use reflection", getter.getDeclaringClass().getName(), getter.getName());
+            }
+        }
+        //非 public 类中的 public 方法需要强制访问
+        getter.setAccessible(true);
+        //反射
+        return target -> invoke(() -> getter.invoke(target));
+    }
+
+    /**
+     * 生成 setter:可以时用 {@link LambdaMetafactory} 生成(等同于 Entity::setXxx),否则回退反射
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> createSetter(MethodHandles.Lookup lookup, Method setter) {
+        //如果可以生成 lambda
+        if (isLambdaCapable(setter)) {
+            try {
+                //setter 句柄
+                MethodHandle handle = lookup.unreflect(setter);
+                //生成,链式 setter 的返回值丢弃
+                CallSite callSite = LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class), handle, handle.type().wrap().changeReturnType(void.class));
+                //返回
+                return (BiConsumer<Object, Object>) callSite.getTarget().invokeExact();
+            } catch (Throwable e) {
+                LOG.debug("DeepCopyExtraUtils lambda setter:[{}.{}] unavailable, use reflection", setter.getDeclaringClass().getName(), setter.getName());
+            }
+        }
+        //非 public 类中的 public 方法需要强制访问
+        setter.setAccessible(true);
+        //反射
+        return (target, value) -> invoke(() -> setter.invoke(target, value));
+    }
+
+    /**
+     * 是否可以生成 lambda:类和成员都是 public,且类对本工具类的类加载器可见(否则生成的类无法链接)
+     */
+    private static boolean isLambdaCapable(Member member) {
+        //类
+        Class<?> type = member.getDeclaringClass();
+        //都必须是 public
+        if (Modifier.isPublic(type.getModifiers()) == false || Modifier.isPublic(member.getModifiers()) == false) {
+            return false;
+        }
+        try {
+            //类加载器可见
+            return Class.forName(type.getName(), false, DeepCopyExtraUtils.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * 反射调用,受检异常转为运行时异常
+     */
+    private static Object invoke(Callable<Object> callable) {
+        try {
+            //实现
+            return callable.call();
+        } catch (InvocationTargetException e) {
+            //抛出原始异常
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 是否不可变(直接共享)
+     */
+    private static boolean isImmutable(Class<?> type) {
+        //实现
+        return IMMUTABLE_CLASS_SET.contains(type) || type.isEnum() || (type.getSuperclass() != null && type.getSuperclass().isEnum())
+                || type.getName().startsWith("java.time.");
+    }
+
+    /**
+     * 基础类型转为包装类
+     */
+    private static Class<?> box(Class<?> type) {
+        //如果不是基础类型
+        if (type.isPrimitive() == false) {
+            return type;
+        }
+        //实现
+        return PRIMITIVE_WRAPPER_MAP.get(type);
+    }
+
+    /**
+     * 获取泛型参数,没有时为 Object
+     */
+    private static Type typeArgument(Type type, int index) {
+        //如果有泛型
+        if (type instanceof ParameterizedType && ((ParameterizedType) type).getActualTypeArguments().length > index) {
+            return ((ParameterizedType) type).getActualTypeArguments()[index];
+        }
+        //没有
+        return Object.class;
+    }
+
+    /**
+     * 获取类型的原始类,无法确定时为 Object
+     */
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if (type instanceof WildcardType && ((WildcardType) type).getUpperBounds().length > 0) {
+            return rawClass(((WildcardType) type).getUpperBounds()[0]);
+        }
+        //类型变量等
+        return Object.class;
+    }
+
+    /**
+     * 简单的泛型类型,回退 json 时使用
+     */
+    private static class ParameterizedTypeImpl implements ParameterizedType {
+
+        private final Class<?> rawType;
+
+        private final Type argument;
+
+        private ParameterizedTypeImpl(Class<?> rawType, Type argument) {
+            this.rawType = rawType;
+            this.argument = argument;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return new Type[]{this.argument};
+        }
+
+        @Override
+        public Type getRawType() {
+            return this.rawType;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return null;
+        }
+
+    }
+
+}
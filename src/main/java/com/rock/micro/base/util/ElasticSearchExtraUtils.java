@@ -0,0 +1,128 @@
+package com.rock.micro.base.util;
+
+import com.rock.micro.base.db.elasticsearch.BaseElasticSearchService;
+import org.apache.commons.collections4.CollectionUtils;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * elastic search 扩展工具包
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+public class ElasticSearchExtraUtils {
+
+    /**
+     * 组装通用查询对象
+     *
+     * @param query                      条件对象
+     * @param abstractAggregationBuilder 聚合条件(可以为空)
+     * @param fields                     限制返回字段(可以为空)
+     * @param pageNum                    分页-页码(可以为空)
+     * @param pageSize                   分页-数量(可以为空)
+     * @param sort                       限制排序(可以为空)
+     * @return
+     */
+    public static NativeSearchQuery buildQuery(QueryBuilder query, AbstractAggregationBuilder abstractAggregationBuilder, String[] fields, Integer pageNum, Integer pageSize, SortBuilder sort) {
+        //初始化searchBuilder
+        NativeSearchQueryBuilder nativeSearchQueryBuilder = new NativeSearchQueryBuilder();
+        //组装查询条件
+        nativeSearchQueryBuilder.withQuery(query);
+        //如果要限制返回字段
+        if (fields != null && fields.length > 0) {
+            //限制返回字段
+            nativeSearchQueryBuilder.withFields(fields);
+        }
+        //如果要限制排序
+        if (sort != null) {
+            //限制排序
+            nativeSearchQueryBuilder.withSort(sort);
+        }
+        //如果要加入聚合
+        if (abstractAggregationBuilder != null) {
+            //聚合搜索
+            nativeSearchQueryBuilder.addAggregation(abstractAggregationBuilder);
+        }
+        //build
+        NativeSearchQuery nativeSearchQuery = nativeSearchQueryBuilder.build();
+        //如果需要分页
+        if (pageNum != null && pageSize != null && pageNum > 0 && pageSize > 0) {
+            //初始化分页
+            PageRequest pageRequest = PageRequest.of(pageNum - 1, pageSize);
+            //设置分页
+            nativeSearchQuery.setPageable(pageRequest);
+        }
+        //返回
+        return nativeSearchQuery;
+    }
+
+    /**
+     * 组装通用查询对象
+     *
+     * @param item 单个查询
+     * @return
+     */
+    public static NativeSearchQuery buildQuery(BaseElasticSearchService.MultiSearchItem item) {
+        //实现
+        return buildQuery(item.getQuery(), item.getAggregation(), item.getFields(), item.getPageNum(), item.getPageSize(), item.getSort());
+    }
+
+    /**
+     * 将查询结果转为通用响应对象
+     *
+     * @param searchHits 查询结果
+     * @return
+     */
+    public static <T> BaseElasticSearchService.RollPageResult<T> toRollPageResult(SearchHits<T> searchHits) {
+        //初始化
+        BaseElasticSearchService.RollPageResult<T> result = new BaseElasticSearchService.RollPageResult<T>();
+        //记录总数
+        result.setTotal(searchHits.getTotalHits());
+        //将返回实体拆包
+        result.setList(searchHits.getSearchHits().stream().map(p -> p.getContent()).collect(Collectors.toList()));
+        //获取聚合内容并组装
+        result.setAggregations(searchHits.getAggregations());
+        //返回
+        return result;
+    }
+
+    /**
+     * 批量条件分页查询,多个查询合并为一次 _msearch 请求,按各自实体声明的索引查询
+     *
+     * @param elasticsearchRestTemplate 模板
+     * @param itemList                  查询列表
+     * @return 与查询列表顺序一一对应
+     */
+    public static List<BaseElasticSearchService.RollPageResult<?>> multiRollPage(ElasticsearchRestTemplate elasticsearchRestTemplate, List<BaseElasticSearchService.MultiSearchItem> itemList) {
+        //判空
+        if (CollectionUtils.isEmpty(itemList)) {
+            //过
+            return new ArrayList<>();
+        }
+        //查询对象列表
+        List<NativeSearchQuery> queryList = itemList.stream().map(ElasticSearchExtraUtils::buildQuery).collect(Collectors.toList());
+        //实体类列表
+        List<Class<?>> classList = itemList.stream().map(BaseElasticSearchService.MultiSearchItem::getClazz).collect(Collectors.toList());
+        //一次 _msearch
+        List<SearchHits<?>> searchHitsList = elasticsearchRestTemplate.multiSearch(queryList, classList);
+        //转换
+        List<BaseElasticSearchService.RollPageResult<?>> resultList = new ArrayList<>(searchHitsList.size());
+        for (SearchHits<?> searchHits : searchHitsList) {
+            resultList.add(toRollPageResult(searchHits));
+        }
+        //返回
+        return resultList;
+    }
+
+}
@@ -5,10 +5,22 @@ import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import org.apache.commons.collections4.CollectionUtils;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * FastJson 扩展工具包
@@ -31,8 +43,13 @@ public class FastJsonExtraUtils {
             //过
             return null;
         }
-        //先转为string再转为对应实体,如果转为json对象再转实体某些特殊情况会报错
-        return JSON.parseObject(toJSONString(object), toJavaObject);
+        //字符串按json解析
+        if (object instanceof String) {
+            //先转为string再转为对应实体,如果转为json对象再转实体某些特殊情况会报错
+            return JSON.parseObject(toJSONString(object), toJavaObject);
+        }
+        //按属性深拷贝(预编译 getter/setter,不经过json),不支持的部分回退为 string 再转为对应实体
+        return DeepCopyExtraUtils.copy(object, toJavaObject);
     }
 
     /**
@@ -48,8 +65,13 @@ public class FastJsonExtraUtils {
             //过
             return new ArrayList<>();
         }
-        //先转为string再转为对应实体,如果转为json对象再转实体某些特殊情况会报错
-        return JSON.parseArray(toJSONString(listOrArrObject), toJavaObject);
+        //字符串按json解析
+        if (listOrArrObject instanceof String) {
+            //先转为string再转为对应实体,如果转为json对象再转实体某些特殊情况会报错
+            return JSON.parseArray(toJSONString(listOrArrObject), toJavaObject);
+        }
+        //按属性深拷贝(预编译 getter/setter,不经过json),不支持的部分回退为 string 再转为对应实体
+        return DeepCopyExtraUtils.copyList(listOrArrObject, toJavaObject);
     }
 
     /**
@@ -154,6 +176,54 @@ public class FastJsonExtraUtils {
         return result;
     }
 
+    /**
+     * 展开json的某个key(key必须为列表) (类似mongo的unwind操作,但保底留一条数据),与 {@link #unwind} 结果一致,但不深克隆整个对象
+     * -
+     * 每一行只浅复制第一层key,未改动的子对象/子数组在各行之间共享
+     * 通过 get/getJSONObject/getJSONArray 取到子对象/子数组时,才为当前行深克隆这一个key(写时复制),修改不会影响原对象和其他行
+     * put/putAll/compute/merge/replace 系列及 entry.setValue 写入的值属于本行;clone 出来的行对本行克隆过的子对象再深克隆一份
+     * 注意:通过 entrySet/values/forEach 遍历拿到的子对象仍是共享的,只能读不能改,要修改请先通过 get 取出
+     *
+     * @param json      被展开的对象
+     * @param unwindKey 被展开的数组
+     * @return
+     */
+    public static List<JSONObject> unwindShared(JSONObject json, String unwindKey) {
+        //实现
+        return unwindStream(json, unwindKey).collect(Collectors.toList());
+    }
+
+    /**
+     * 惰性展开json的某个key(key必须为列表),每次取下一行时才生成,适合大数组边展开边处理,行的共享规则同 {@link #unwindShared}
+     *
+     * @param json      被展开的对象
+     * @param unwindKey 被展开的数组
+     * @return
+     */
+    public static Stream<JSONObject> unwindStream(JSONObject json, String unwindKey) {
+        //判空
+        if (json == null || unwindKey == null) {
+            //默认
+            return Stream.empty();
+        }
+        //获取值
+        Object value = json.get(unwindKey);
+        //如果不存在或不是列表
+        if (value instanceof List == false) {
+            //保底自己一行
+            return Stream.of(new SharedRowJSONObject(new SharedRowMap(json.getInnerMap(), null, null)));
+        }
+        //获取unwind的数据列表
+        List<?> list = (List<?>) value;
+        //判空
+        if (list.isEmpty()) {
+            //删除对应key,保底一行
+            return Stream.of(new SharedRowJSONObject(new SharedRowMap(json.getInnerMap(), unwindKey, null)));
+        }
+        //每个元素一行,为空时删除对应key
+        return list.stream().map(o -> new SharedRowJSONObject(new SharedRowMap(json.getInnerMap(), unwindKey, o)));
+    }
+
     /**
      * 获取json指定路径下的对象
      *
@@ -285,6 +355,298 @@ public class FastJsonExtraUtils {
         }
     }
 
+    /**
+     * unwind 共享行的 json,clone 时保持写时复制,不把共享的子对象直接浅复制出去
+     */
+    private static class SharedRowJSONObject extends JSONObject {
+
+        private SharedRowJSONObject(SharedRowMap map) {
+            super(map);
+        }
+
+        @Override
+        public JSONObject clone() {
+            //复制一行,同样写时复制
+            return new SharedRowJSONObject(((SharedRowMap) getInnerMap()).copyRow());
+        }
+
+    }
+
+    /**
+     * unwind 共享行:第一层key浅复制,子对象/子数组第一次通过 get 取出时才深克隆(写时复制)
+     * 所有会读出旧值再修改、或写入新值的方法都走 get/put,保证修改的只会是本行自己的对象
+     */
+    private static class SharedRowMap extends LinkedHashMap<String, Object> {
+
+        //已经属于本行(克隆过或本行自己设置)的key
+        private final Set<Object> ownedKeySet = new HashSet<>();
+
+        private SharedRowMap(Map<String, Object> source, String unwindKey, Object unwindValue) {
+            //浅复制第一层
+            super(source);
+            //如果不需要覆盖
+            if (unwindKey == null) {
+                //过
+                return;
+            }
+            //判空
+            if (unwindValue != null) {
+                //覆盖对应key
+                super.put(unwindKey, unwindValue);
+            } else {
+                //删除对应key
+                super.remove(unwindKey);
+            }
+        }
+
+        /**
+         * 复制一行:未克隆过的子对象继续共享,本行已克隆过的子对象再深克隆一份给新行
+         *
+         * @return
+         */
+        private SharedRowMap copyRow() {
+            //浅复制第一层
+            SharedRowMap copy = new SharedRowMap(this, null, null);
+            //循环本行自己的key
+            for (Object key : this.ownedKeySet) {
+                //获取值,不触发克隆
+                Object value = super.get(key);
+                //本行的子对象/子数组不能与新行共享
+                if (value instanceof Map || value instanceof Collection) {
+                    //为新行深克隆
+                    copy.put((String) key, DeepCopyExtraUtils.copy(value, Object.class));
+                }
+            }
+            //返回
+            return copy;
+        }
+
+        @Override
+        public Object get(Object key) {
+            //获取值
+            Object value = super.get(key);
+            //如果是共享的子对象/子数组
+            if ((value instanceof Map || value instanceof Collection) && this.ownedKeySet.contains(key) == false) {
+                //为本行深克隆
+                value = DeepCopyExtraUtils.copy(value, Object.class);
+                //替换
+                super.put((String) key, value);
+                //记录
+                this.ownedKeySet.add(key);
+            }
+            //返回
+            return value;
+        }
+
+        @Override
+        public Object getOrDefault(Object key, Object defaultValue) {
+            //走 get,保证取出的子对象已为本行克隆
+            return containsKey(key) ? get(key) : defaultValue;
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            //本行自己设置的值
+            this.ownedKeySet.add(key);
+            //实现
+            return super.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends String, ?> m) {
+            //逐个走 put,记录归属
+            for (Map.Entry<? extends String, ?> entry : m.entrySet()) {
+                //实现
+                put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        @Override
+        public Object putIfAbsent(String key, Object value) {
+            //已有值时返回本行克隆后的对象
+            Object current = get(key);
+            //实现
+            return current != null ? current : put(key, value);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            //不再属于本行
+            this.ownedKeySet.remove(key);
+            //实现
+            return super.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            //清空归属
+            this.ownedKeySet.clear();
+            //实现
+            super.clear();
+        }
+
+        @Override
+        public Object compute(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+            //旧值,走 get 克隆
+            Object oldValue = get(key);
+            //新值
+            Object newValue = remappingFunction.apply(key, oldValue);
+            //写回
+            return computeResult(key, oldValue, newValue);
+        }
+
+        @Override
+        public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+            //旧值,走 get 克隆
+            Object oldValue = get(key);
+            //已有
+            if (oldValue != null) {
+                //返回本行的对象
+                return oldValue;
+            }
+            //新值
+            Object newValue = mappingFunction.apply(key);
+            //判空
+            if (newValue != null) {
+                //写入
+                put(key, newValue);
+            }
+            //返回
+            return newValue;
+        }
+
+        @Override
+        public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+            //旧值,走 get 克隆
+            Object oldValue = get(key);
+            //没有
+            if (oldValue == null) {
+                //过
+                return null;
+            }
+            //写回
+            return computeResult(key, oldValue, remappingFunction.apply(key, oldValue));
+        }
+
+        @Override
+        public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            //旧值,走 get 克隆
+            Object oldValue = get(key);
+            //新值
+            Object newValue = oldValue == null ? value : remappingFunction.apply(oldValue, value);
+            //写回
+            return computeResult(key, oldValue, newValue);
+        }
+
+        @Override
+        public boolean replace(String key, Object oldValue, Object newValue) {
+            //当前值,走 get 克隆
+            Object current = get(key);
+            //不一致
+            if (Objects.equals(current, oldValue) == false || (current == null && containsKey(key) == false)) {
+                //过
+                return false;
+            }
+            //写入
+            put(key, newValue);
+            //返回
+            return true;
+        }
+
+        @Override
+        public Object replace(String key, Object value) {
+            //有才替换
+            return containsKey(key) ? put(key, value) : null;
+        }
+
+        @Override
+        public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+            //循环key的副本,替换已有key不会改变顺序
+            for (String key : new ArrayList<>(keySet())) {
+                //旧值走 get 克隆,新值走 put 记录归属
+                put(key, function.apply(key, get(key)));
+            }
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            //原始视图
+            Set<Map.Entry<String, Object>> entrySet = super.entrySet();
+            //包装:setValue 走 put 记录归属,getValue 不触发克隆(遍历、序列化保持共享)
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    //原始迭代器
+                    Iterator<Map.Entry<String, Object>> iterator = entrySet.iterator();
+                    //包装
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            //原始entry
+                            Map.Entry<String, Object> entry = iterator.next();
+                            //包装
+                            return new AbstractMap.SimpleEntry<String, Object>(entry) {
+                                @Override
+                                public Object getValue() {
+                                    //读最新值
+                                    return entry.getValue();
+                                }
+
+                                @Override
+                                public Object setValue(Object value) {
+                                    //走 put,记录归属
+                                    return put(getKey(), value);
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            //实现
+                            iterator.remove();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return entrySet.size();
+                }
+            };
+        }
+
+        /**
+         * compute/merge 写回:新值为空时删除,否则写入本行
+         *
+         * @param key      key
+         * @param oldValue 旧值
+         * @param newValue 新值
+         * @return
+         */
+        private Object computeResult(String key, Object oldValue, Object newValue) {
+            //新值为空
+            if (newValue == null) {
+                //原来有则删除
+                if (oldValue != null || containsKey(key)) {
+                    //删除
+                    remove(key);
+                }
+                //返回
+                return null;
+            }
+            //写入
+            put(key, newValue);
+            //返回
+            return newValue;
+        }
+
+    }
+
     public static void main(String[] args) {
         String str = "{\"ProductId\":14551,\"ProductStyle\":\"POD55l9o\",\"propertyList\":[{\"detailList\":[{\"isSelect\":true,\"IsMissing\":true,\"InputList\":null,\"PropertyDetailId\":0,\"DetailName\":33222,\"PropertyId\":1,\"RelatedPropertyId\":0,\"InputNames\":\"\"}],\"SpecCode\":\"Spec3\",\"PropertyId\":1,\"PropertyType\":1,\"PropertyName\":\"jfwoehj\",\"Desc\":\"13121\",\"ImageLink\":\"/UploadFiles/79/ProductProperty/自动化1(2).png\",\"VideoLink\":\"/UploadFiles/79/ProductProperty/oceans(7).mp4\",\"ValidStatus\":1,\"CreateTime\":\"2025-04-09T16:41:33.43\",\"CreatorId\":79,\"UpdateTime\":\"2025-04-10T17:03:10.577\",\"UpdaterId\":79}],\"variationList\":[{\"erpProductVariationValues\":[{\"ProductVariationValueId\":132880,\"ProductVariationId\":20847,\"VariationValue\":\"Beige\",\"ListOrder\":1,\"ProductId\":14551,\"VariationTitle\":\"颜色\",\"VariationItem\":\"Spec1\"}],\"ProductVariationId\":20847,\"ProductId\":14551,\"VariationTitle\":\"颜色\",\"ListOrder\":1,\"VariationItem\":\"Spec1\"},{\"erpProductVariationValues\":[{\"ProductVariationValueId\":132882,\"ProductVariationId\":20848,\"VariationValue\":\"XS\",\"ListOrder\":1,\"ProductId\":14551,\"VariationTitle\":\"尺寸\",\"VariationItem\":\"Spec2\"}],\"ProductVariationId\":20848,\"ProductId\":14551,\"VariationTitle\":\"尺寸\",\"ListOrder\":2,\"VariationItem\":\"Spec2\"}]}";
         //转为json
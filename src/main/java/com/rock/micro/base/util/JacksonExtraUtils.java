@@ -240,8 +240,13 @@ public class JacksonExtraUtils {
             //过
             return null;
         }
-        //先转为string,再转为对应实体
-        return tryParse(() -> objectMapper.readValue(toJSONString(object), toJavaObject));
+        //字符串按json解析
+        if (object instanceof String) {
+            //先转为string,再转为对应实体
+            return tryParse(() -> objectMapper.readValue(toJSONString(object), toJavaObject));
+        }
+        //按属性深拷贝(null 同样赋值,与 jackson 默认输出 null 一致),不支持的部分回退为 string 再转为对应实体
+        return DeepCopyExtraUtils.copy(object, toJavaObject, fallback(objectMapper), true);
     }
 
     /**
@@ -270,8 +275,24 @@ public class JacksonExtraUtils {
             //过
             return null;
         }
-        //先转为string,再转为对应实体
-        return tryParse(() -> objectMapper.readValue(toJSONString(object), objectMapper.getTypeFactory().constructCollectionType(ArrayList.class, toJavaObject)));
+        //字符串按json解析
+        if (object instanceof String) {
+            //先转为string,再转为对应实体
+            return tryParse(() -> objectMapper.readValue(toJSONString(object), objectMapper.getTypeFactory().constructCollectionType(ArrayList.class, toJavaObject)));
+        }
+        //按属性深拷贝(null 同样赋值,与 jackson 默认输出 null 一致),不支持的部分回退为 string 再转为对应实体
+        return DeepCopyExtraUtils.copyList(object, toJavaObject, fallback(objectMapper), true);
+    }
+
+    /**
+     * 深拷贝不支持时的回退方式:先转为string,再转为对应实体
+     *
+     * @param objectMapper 对应 mapper
+     * @return
+     */
+    private static DeepCopyExtraUtils.Fallback fallback(ObjectMapper objectMapper) {
+        //实现
+        return (value, targetType) -> tryParse(() -> objectMapper.readValue(toJSONString(objectMapper, value), objectMapper.constructType(targetType)));
     }
 
 }
\ No newline at end of file
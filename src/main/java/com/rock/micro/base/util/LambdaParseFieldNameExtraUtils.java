@@ -12,6 +12,8 @@ import java.util.function.Function;
 
 /**
  * 根据 Lambda表达式 获取名称 扩展工具包
+ * -
+ * 每个方法引用(编译后是一个独立的类)只反射解析一次,结果按 Lambda 类缓存,之后直接返回
  *
  * @Author ayl
  * @Date 2024-01-30
@@ -20,20 +22,58 @@ public class LambdaParseFieldNameExtraUtils {
 
     private static final Logger LOG = LoggerFactory.getLogger(LambdaParseFieldNameExtraUtils.class);
 
+    //Lambda 类 -> 解析结果(同一个方法引用的类相同,解析结果不变;ClassValue 不会阻止类卸载)
+    private static final ClassValue<ResolvedLambda> RESOLVED_CACHE = new ClassValue<ResolvedLambda>() {
+        @Override
+        protected ResolvedLambda computeValue(Class<?> type) {
+            return new ResolvedLambda();
+        }
+    };
+
     @FunctionalInterface
     public interface MFunction<T, R> extends Function<T, R>, Serializable {
 
     }
 
     /**
-     * 获取字段名称实现
+     * 单个 Lambda 类的解析结果
+     */
+    private static class ResolvedLambda {
+
+        //方法名,首次解析后赋值
+        private volatile String methodName;
+
+        //字段名
+        private volatile String column;
+
+        //Mongo 字段名
+        private volatile String mongoColumn;
+
+    }
+
+    /**
+     * 获取 Lambda 的解析结果,首次调用时反射解析,之后直接返回缓存
      *
-     * @param serializedLambda 函数式接口的Lambda表达式
-     * @return 字段名
+     * @param func 函数式接口
+     * @return
      */
-    private static String getColumn(SerializedLambda serializedLambda) {
-        //获取字段名称实现
-        return PropertyNamer.methodToProperty(serializedLambda.getImplMethodName());
+    private static <T, R> ResolvedLambda resolve(MFunction<T, R> func) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+        //缓存
+        ResolvedLambda resolved = RESOLVED_CACHE.get(func.getClass());
+        //如果未解析(并发时可能重复解析,结果相同,无需加锁)
+        if (resolved.methodName == null) {
+            //方法名
+            String methodName = getSerializedLambda(func).getImplMethodName();
+            //字段名
+            String column = PropertyNamer.methodToProperty(methodName);
+            //Mongo 字段名
+            resolved.mongoColumn = "id".equals(column) ? "_id" : column;
+            resolved.column = column;
+            //最后赋值方法名,作为已解析的标记
+            resolved.methodName = methodName;
+        }
+        //返回
+        return resolved;
     }
 
     /**
@@ -64,7 +104,7 @@ public class LambdaParseFieldNameExtraUtils {
     public static <T, R> String getColumn(MFunction<T, R> func) {
         try {
             //实现
-            return getColumn(getSerializedLambda(func));
+            return resolve(func).column;
         } catch (Exception e) {
             LOG.error("LambdaParseFieldNameExtraUtils getColumn error", e);
             throw new RuntimeException("解析实体字段名称报错");
@@ -82,18 +122,12 @@ public class LambdaParseFieldNameExtraUtils {
      * @return 字段名
      */
     public static <T, R> String getMongoColumn(MFunction<T, R> func) {
-        //实现
-        String column = getColumn(func);
-        //针对特殊字段特殊处理
-        switch (column) {
-            //如果是id
-            case "id":
-                //统一用 _id
-                return "_id";
-            //默认
-            default:
-                //直接返回
-                return column;
+        try {
+            //实现,id 统一用 _id
+            return resolve(func).mongoColumn;
+        } catch (Exception e) {
+            LOG.error("LambdaParseFieldNameExtraUtils getMongoColumn error", e);
+            throw new RuntimeException("解析实体字段名称报错");
         }
     }
 
@@ -139,7 +173,7 @@ public class LambdaParseFieldNameExtraUtils {
     public static <T, R> String getMethodName(MFunction<T, R> func) {
         try {
             //实现
-            return getSerializedLambda(func).getImplMethodName();
+            return resolve(func).methodName;
         } catch (Exception e) {
             LOG.error("LambdaParseFieldNameExtraUtils getMethodName error", e);
             throw new RuntimeException("解析实体方法名称报错");
@@ -1,8 +1,13 @@
 package com.rock.micro.base.util;
 
+import com.rock.micro.base.common.api.MyException;
+import com.rock.micro.base.common.mongo.MongoEntityMetadata;
+import com.rock.micro.base.common.mongo.query.FieldPath;
 import com.rock.micro.base.data.BaseDocument;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.bson.Document;
+import org.bson.types.Binary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Sort;
@@ -10,7 +15,7 @@ import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 
-import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -24,6 +29,14 @@ public class MongoExtraUtils {
 
     private static final Logger LOG = LoggerFactory.getLogger(MongoExtraUtils.class);
 
+    //游标分页token-排序值key
+    private static final String CURSOR_TOKEN_KEY_VALUE = "v";
+    //游标分页token-idKey
+    private static final String CURSOR_TOKEN_KEY_ID = "id";
+
+    //对比更新时不参与对比的基类字段(del 参与对比,软删除需要生效)
+    private static final Set<String> BASE_FIELD_SET = new HashSet<>(Arrays.asList("_id", "_class", "createDate", "updateDate"));
+
     /**
      * 为 mongo {@link Query} 对象组装限制返回参数
      *
@@ -82,6 +95,21 @@ public class MongoExtraUtils {
         setFields(query, fields);
     }
 
+    /**
+     * 为 mongo {@link Query} 对象组装限制返回参数
+     *
+     * @param query      mongo query 对象
+     * @param fieldPaths 限制返回参数 编译期生成的字段路径
+     */
+    public static void setFields(Query query, FieldPath<?>... fieldPaths) {
+        //转化为对应字段列表
+        List<String> fields = Arrays.stream(fieldPaths)
+                .map(FieldPath::getPath)
+                .collect(Collectors.toList());
+        //实现
+        setFields(query, fields);
+    }
+
     /**
      * 为 mongo {@link Query} 设置常用分页
      *
@@ -103,6 +131,155 @@ public class MongoExtraUtils {
         }
     }
 
+    /**
+     * 生成游标分页的游标 (排序值 + _id),对外不透明
+     *
+     * @param sortValue 最后一条数据的排序字段值
+     * @param id        最后一条数据的id
+     * @return
+     */
+    public static String encodeCursorToken(Object sortValue, String id) {
+        //判空
+        if (StringUtils.isBlank(id)) {
+            //过
+            return null;
+        }
+        //用 bson 扩展json 保留 Date、Long 等类型,解析回来比较时类型不丢失
+        String json = new Document(CURSOR_TOKEN_KEY_VALUE, sortValue)
+                .append(CURSOR_TOKEN_KEY_ID, id)
+                .toJson();
+        //转为url安全的base64
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标分页的游标
+     *
+     * @param token 游标
+     * @return 包含 v(排序值)、id 的 {@link Document}
+     */
+    public static Document decodeCursorToken(String token) {
+        try {
+            //base64 解码
+            String json = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            //解析
+            Document document = Document.parse(json);
+            //id是必须的
+            if (document.get(CURSOR_TOKEN_KEY_ID) instanceof String == false) {
+                //抛
+                throw new MyException("游标分页token不合法");
+            }
+            //返回
+            return document;
+        } catch (MyException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.error("decodeCursorToken error, token:[{}]", token, e);
+            throw new MyException("游标分页token不合法");
+        }
+    }
+
+    /**
+     * 根据游标,生成游标分页 (seek) 的限制条件
+     * 需配合 {@link #setCursorSort(Query, String, Sort.Direction)} 一起使用
+     *
+     * @param sortKey    排序key(mongo字段名)
+     * @param direction  排序方向
+     * @param afterToken 上一页返回的游标,为空代表第一页
+     * @return 第一页返回 null
+     */
+    public static Criteria initCursorCriteria(String sortKey, Sort.Direction direction, String afterToken) {
+        //第一页不需要限制
+        if (StringUtils.isBlank(afterToken)) {
+            //过
+            return null;
+        }
+        //解析游标
+        Document token = decodeCursorToken(afterToken);
+        //上一页最后一条的排序值
+        Object lastValue = token.get(CURSOR_TOKEN_KEY_VALUE);
+        //上一页最后一条的id
+        String lastId = token.getString(CURSOR_TOKEN_KEY_ID);
+        //是否正序
+        boolean asc = direction == Sort.Direction.ASC;
+        //如果直接用id排序
+        if ("_id".equals(sortKey)) {
+            //只需比较id
+            return asc ? Criteria.where("_id").gt(lastId) : Criteria.where("_id").lt(lastId);
+        }
+        //如果上一页最后一条的排序值为空(mongo中null排序最小)
+        if (lastValue == null) {
+            //倒序时,后面只剩下同为null的数据
+            if (asc == false) {
+                //同为null,比较id
+                return Criteria.where(sortKey).is(null).and("_id").lt(lastId);
+            }
+            //正序时,后面是所有不为null的数据,以及同为null但id更大的数据
+            return new Criteria().orOperator(
+                    Criteria.where(sortKey).ne(null),
+                    Criteria.where(sortKey).is(null).and("_id").gt(lastId)
+            );
+        }
+        //排序值在其后,或者排序值相同但id在其后
+        return new Criteria().orOperator(
+                asc ? Criteria.where(sortKey).gt(lastValue) : Criteria.where(sortKey).lt(lastValue),
+                asc ? Criteria.where(sortKey).is(lastValue).and("_id").gt(lastId) : Criteria.where(sortKey).is(lastValue).and("_id").lt(lastId)
+        );
+    }
+
+    /**
+     * 为 mongo {@link Query} 设置游标分页的排序,固定以 _id 作为第二排序,保证排序稳定
+     *
+     * @param query     查询条件
+     * @param sortKey   排序key(mongo字段名)
+     * @param direction 排序方向
+     */
+    public static void setCursorSort(Query query, String sortKey, Sort.Direction direction) {
+        //判空
+        if (query == null || StringUtils.isBlank(sortKey) || direction == null) {
+            //过
+            return;
+        }
+        //如果直接用id排序
+        if ("_id".equals(sortKey)) {
+            //只按id
+            query.with(Sort.by(direction, "_id"));
+            //过
+            return;
+        }
+        //排序key + id
+        query.with(Sort.by(direction, sortKey, "_id"));
+    }
+
+    /**
+     * 从 mongo 原始文档中,按路径获取值
+     *
+     * @param document mongo原始文档
+     * @param path     路径 eg: productList.sku
+     * @return
+     */
+    public static Object getPathValue(Document document, String path) {
+        //判空
+        if (document == null || StringUtils.isBlank(path)) {
+            //过
+            return null;
+        }
+        //当前层级
+        Object current = document;
+        //逐级拆解
+        for (String key : path.split("\\.")) {
+            //如果不是对象
+            if (current instanceof Map == false) {
+                //过
+                return null;
+            }
+            //下一级
+            current = ((Map<?, ?>) current).get(key);
+        }
+        //返回
+        return current;
+    }
+
     /**
      * 为 mongo {@link Query} 设置常用分页
      *
@@ -121,6 +298,23 @@ public class MongoExtraUtils {
         query.with(Sort.by(sortOrder, LambdaParseFieldNameExtraUtils.getMongoColumn(sortKey)));
     }
 
+    /**
+     * 为 mongo {@link Query} 设置排序
+     *
+     * @param query     查询条件
+     * @param sortOrder 排序-规则枚举
+     * @param sortKey   排序-编译期生成的字段路径
+     */
+    public static void setSort(Query query, Sort.Direction sortOrder, FieldPath<?> sortKey) {
+        //判空
+        if (query == null || sortOrder == null || sortKey == null) {
+            //过
+            return;
+        }
+        //指定排序
+        query.with(Sort.by(sortOrder, sortKey.getPath()));
+    }
+
     /**
      * 为 mongo Query 操作 初始化一个关于基类的 {@link Query}
      *
@@ -211,6 +405,23 @@ public class MongoExtraUtils {
         update.set(LambdaParseFieldNameExtraUtils.getMongoColumn(function), value);
     }
 
+    /**
+     * 编译期生成的字段路径 设置更新字段
+     *
+     * @param update    更新实体
+     * @param fieldPath 字段路径
+     * @param value     任意对象
+     */
+    public static void updateSet(Update update, FieldPath<?> fieldPath, Object value) {
+        //判空
+        if (update == null) {
+            //过
+            return;
+        }
+        //实现
+        update.set(fieldPath.getPath(), value);
+    }
+
     /**
      * Lambda表达式 设置 unset 字段
      *
@@ -227,6 +438,22 @@ public class MongoExtraUtils {
         update.unset(LambdaParseFieldNameExtraUtils.getMongoColumn(function));
     }
 
+    /**
+     * 编译期生成的字段路径 设置 unset 字段
+     *
+     * @param update    更新实体
+     * @param fieldPath 字段路径
+     */
+    public static void updateUnset(Update update, FieldPath<?> fieldPath) {
+        //判空
+        if (update == null) {
+            //过
+            return;
+        }
+        //实现
+        update.unset(fieldPath.getPath());
+    }
+
     /**
      * 根据实体,为 mongo {@link Update} set 该实体所有不为空的字段
      * 注意:不包含继承对象的参数
@@ -255,43 +482,20 @@ public class MongoExtraUtils {
             //过
             return;
         }
-        //获取本类的Field数组,继承无效
-        Field[] fields = document.getClass().getDeclaredFields();
+        //获取本类预编译的字段访问器,继承无效,已过滤掉不需要更新的字段(每个类只解析一次)
+        List<MongoEntityMetadata.FieldAccessor> fieldList = MongoEntityMetadata.of(document.getClass()).getDeclaredFieldList();
         //判空
-        if (fields == null || fields.length < 1) {
+        if (fieldList.isEmpty()) {
             //过
             return;
         }
         //初始化 onInsert 字段集合
-        Set<String> onInsertSet = new HashSet<>();
-        //如果存在指定 onInsert 的字段
-        if (CollectionUtils.isNotEmpty(onInsertFieldsList)) {
-            //加入所有
-            onInsertSet.addAll(onInsertFieldsList);
-        }
+        Set<String> onInsertSet = CollectionUtils.isNotEmpty(onInsertFieldsList) ? new HashSet<>(onInsertFieldsList) : Collections.emptySet();
         //循环
-        for (Field field : fields) {
+        for (MongoEntityMetadata.FieldAccessor field : fieldList) {
             try {
                 //字段名
                 String fieldName = field.getName();
-                //判空
-                if (StringUtils.isBlank(fieldName)) {
-                    //本轮过
-                    continue;
-                }
-                //过滤掉一些特殊的
-                switch (fieldName) {
-                    //一定不需要更新的
-                    case "id":
-                    case "serialVersionUID":
-                    case "createDate":
-                        continue;
-                        //其他过
-                    default:
-                        break;
-                }
-                //限强制访问私有字段
-                field.setAccessible(true);
                 //获取内容
                 Object value = field.get(document);
                 //判空
@@ -311,6 +515,165 @@ public class MongoExtraUtils {
         }
     }
 
+    /**
+     * 对比快照与当前状态的 mongo 原始文档,为 mongo {@link Update} 仅组装真正变化的路径
+     * -
+     * 与 {@link #updateSkipNullByDocumentNoExtends(Update, BaseDocument)} 互补:那边 set 所有不为空的字段,这里只 set 有变化的字段
+     * 嵌套文档递归对比,生成 a.b.c 形式的路径;数组整体对比,有变化整体 set
+     * 快照有、当前没有(即当前为NULL)的字段 unset
+     * 注意:基类字段(_id、_class、createDate、updateDate)不参与对比
+     *
+     * @param update   要update的对象
+     * @param snapshot 加载时的快照(mongo原始文档)
+     * @param current  修改后的状态(mongo原始文档)
+     * @return 变化的路径数量
+     */
+    public static int updateDiffByDocument(Update update, Document snapshot, Document current) {
+        //判空
+        if (update == null || current == null) {
+            //过
+            return 0;
+        }
+        //实现
+        return updateDiffByDocument(update, "", snapshot == null ? new Document() : snapshot, current);
+    }
+
+    /**
+     * 递归对比
+     *
+     * @param update   要update的对象
+     * @param prefix   路径前缀,顶层为空
+     * @param snapshot 快照
+     * @param current  当前
+     * @return 变化的路径数量
+     */
+    private static int updateDiffByDocument(Update update, String prefix, Document snapshot, Document current) {
+        //变化数量
+        int count = 0;
+        //是否顶层
+        boolean top = prefix.isEmpty();
+        //当前有的字段
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            //字段名
+            String key = entry.getKey();
+            //顶层过滤掉基类字段
+            if (top && BASE_FIELD_SET.contains(key)) {
+                //本轮过
+                continue;
+            }
+            //路径
+            String path = prefix + key;
+            //当前值
+            Object value = entry.getValue();
+            //快照值
+            Object oldValue = snapshot.get(key);
+            //如果当前为空
+            if (value == null) {
+                //如果快照不为空
+                if (oldValue != null) {
+                    //删除
+                    update.unset(path);
+                    count++;
+                }
+                //本轮过
+                continue;
+            }
+            //如果都是嵌套文档
+            if (value instanceof Document && oldValue instanceof Document) {
+                //递归
+                count += updateDiffByDocument(update, path + ".", (Document) oldValue, (Document) value);
+                //本轮过
+                continue;
+            }
+            //如果有变化
+            if (valueEquals(value, oldValue) == false) {
+                //更新
+                update.set(path, value);
+                count++;
+            }
+        }
+        //快照有、当前没有的字段
+        for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+            //字段名
+            String key = entry.getKey();
+            //顶层过滤掉基类字段,当前有的已处理
+            if ((top && BASE_FIELD_SET.contains(key)) || current.containsKey(key) || entry.getValue() == null) {
+                //本轮过
+                continue;
+            }
+            //删除
+            update.unset(prefix + key);
+            count++;
+        }
+        //返回
+        return count;
+    }
+
+    /**
+     * 对比两个 mongo 原始值是否相同,二进制按内容对比(byte[] 没有重写 equals),数组、嵌套文档逐个对比
+     *
+     * @param value    当前值
+     * @param oldValue 快照值
+     * @return
+     */
+    private static boolean valueEquals(Object value, Object oldValue) {
+        //同一个或都为空
+        if (value == oldValue) {
+            return true;
+        }
+        //其中一个为空
+        if (value == null || oldValue == null) {
+            return false;
+        }
+        //二进制
+        if ((value instanceof byte[] || value instanceof Binary) && (oldValue instanceof byte[] || oldValue instanceof Binary)) {
+            //按内容对比
+            return Arrays.equals(toBytes(value), toBytes(oldValue));
+        }
+        //数组
+        if (value instanceof List && oldValue instanceof List) {
+            List<?> list = (List<?>) value;
+            List<?> oldList = (List<?>) oldValue;
+            //长度不同
+            if (list.size() != oldList.size()) {
+                return false;
+            }
+            //逐个对比
+            for (int i = 0; i < list.size(); i++) {
+                if (valueEquals(list.get(i), oldList.get(i)) == false) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        //嵌套文档(数组中的)
+        if (value instanceof Map && oldValue instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Map<?, ?> oldMap = (Map<?, ?>) oldValue;
+            //key不同
+            if (map.keySet().equals(oldMap.keySet()) == false) {
+                return false;
+            }
+            //逐个对比
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (valueEquals(entry.getValue(), oldMap.get(entry.getKey())) == false) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        //其他
+        return Objects.equals(value, oldValue);
+    }
+
+    /**
+     * 二进制转为 byte[]
+     */
+    private static byte[] toBytes(Object value) {
+        //实现
+        return value instanceof Binary ? ((Binary) value).getData() : (byte[]) value;
+    }
+
     /**
      * 关键词搜索时,转义正则特殊字符 （$()*+.[]?\^{},|）
      *
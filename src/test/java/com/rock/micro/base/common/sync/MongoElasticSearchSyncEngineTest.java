@@ -0,0 +1,617 @@
+package com.rock.micro.base.common.sync;
+
+import com.alibaba.fastjson.JSON;
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.rock.micro.base.common.api.MyException;
+import com.rock.micro.base.data.BaseDocument;
+import com.rock.micro.base.data.BaseIndex;
+import com.rock.micro.base.data.doc.SyncDeadLetterDoc;
+import com.rock.micro.base.data.doc.SyncResumeTokenDoc;
+import lombok.Getter;
+import lombok.Setter;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Mongo -> ES 同步引擎 测试
+ * -
+ * Mongo(集合、change stream、进度、死信) 与 ES 都用内存中的本地替身,不需要副本集和ES集群
+ *
+ * @Author ayl
+ * @Date 2026-10-18
+ */
+class MongoElasticSearchSyncEngineTest {
+
+    //注册名
+    private static final String NAME = "stand-in";
+
+    //引擎
+    private StandInSyncEngine engine;
+
+    @AfterEach
+    void tearDown() {
+        //停止
+        if (this.engine != null) {
+            this.engine.stop();
+        }
+    }
+
+    @Test
+    void sameIdIsDedupedWithinBatch() {
+        //初始化
+        this.engine = newEngine(100);
+        this.engine.startFrom(0);
+        //同一批内 a 改了三次,b 新增后删除
+        this.engine.upsert("a", "v1");
+        this.engine.upsert("b", "v1");
+        this.engine.upsert("a", "v2");
+        this.engine.delete("b");
+        this.engine.upsert("a", "v3");
+        //启动
+        register();
+        //等待断点推进到最后
+        await(() -> this.engine.savedPosition() == 5);
+        //每个id只写一次,且是最后一次操作
+        assertEquals(Collections.singletonList(Arrays.asList("b", "a")), this.engine.batchList);
+        assertEquals("v3", this.engine.es.get("a"));
+        assertFalse(this.engine.es.containsKey("b"));
+    }
+
+    @Test
+    void sameIdKeepsOrderAcrossBatches() {
+        //初始化,每批2条
+        this.engine = newEngine(2);
+        this.engine.startFrom(0);
+        //a 跨多批修改
+        this.engine.upsert("a", "v1");
+        this.engine.upsert("b", "v1");
+        this.engine.upsert("a", "v2");
+        this.engine.upsert("c", "v1");
+        this.engine.upsert("a", "v3");
+        //启动
+        register();
+        //等待
+        await(() -> this.engine.savedPosition() == 5);
+        //a 按变更顺序写入
+        List<String> writeList = this.engine.journal.stream().filter(item -> item.startsWith("write:a=")).collect(Collectors.toList());
+        assertEquals(Arrays.asList("write:a=v1", "write:a=v2", "write:a=v3"), writeList);
+        assertEquals("v3", this.engine.es.get("a"));
+    }
+
+    @Test
+    void resumeTokenSavedOnlyAfterWriteAcknowledged() {
+        //初始化,第一次写入ES失败
+        this.engine = newEngine(100);
+        this.engine.startFrom(0);
+        this.engine.bulkErrorCount.set(1);
+        this.engine.upsert("a", "v1");
+        this.engine.upsert("b", "v1");
+        //启动
+        register();
+        //等待
+        await(() -> this.engine.savedPosition() == 2);
+        //失败时不保存断点,重启后从原断点重放,写入确认后才保存
+        assertEquals(Arrays.asList("open:0", "bulkError", "open:0", "write:a=v1", "write:b=v1", "save:2"), this.engine.journal);
+        assertEquals("v1", this.engine.es.get("a"));
+        assertEquals("v1", this.engine.es.get("b"));
+    }
+
+    @Test
+    void backfillCopiesExistingAndCatchesUpChangesDuringBackfill() {
+        //初始化,没有进度
+        this.engine = newEngine(100);
+        //已有数据(不产生变更事件)
+        this.engine.collection.put("a", "v1");
+        this.engine.collection.put("b", "v1");
+        //回填过程中的变更
+        this.engine.duringBackfill = () -> {
+            this.engine.upsert("a", "v2");
+            this.engine.upsert("c", "v1");
+        };
+        //启动
+        register();
+        //等待
+        await(() -> this.engine.savedPosition() == 2);
+        //先打开游标再回填,回填完成后保存起点,回填期间的变更由游标补上
+        assertEquals(Arrays.asList("open:-", "write:a=v1", "write:b=v1", "save:0", "write:a=v2", "write:c=v1", "save:2"), this.engine.journal);
+        assertTrue(this.engine.progress.getBackfillDone());
+        assertEquals("v2", this.engine.es.get("a"));
+        assertEquals("v1", this.engine.es.get("b"));
+        assertEquals("v1", this.engine.es.get("c"));
+    }
+
+    @Test
+    void permanentFailureGoesToDeadLetterBeforeTokenAndCanBeReplayed() {
+        //初始化,b 写入ES最终失败
+        this.engine = newEngine(100);
+        this.engine.startFrom(0);
+        this.engine.failIdSet.add("b");
+        this.engine.upsert("a", "v1");
+        this.engine.upsert("b", "v1");
+        //启动
+        register();
+        //等待
+        await(() -> this.engine.savedPosition() == 2);
+        //先记死信再保存断点
+        assertEquals(Arrays.asList("open:0", "write:a=v1", "deadLetter:b", "save:2"), this.engine.journal);
+        assertFalse(this.engine.es.containsKey("b"));
+        assertTrue(this.engine.deadLetterMap.containsKey(NAME + ":b"));
+        //修复后重放
+        this.engine.failIdSet.clear();
+        this.engine.replayDeadLetter(NAME);
+        //等待
+        await(() -> this.engine.deadLetterMap.isEmpty());
+        assertEquals("v1", this.engine.es.get("b"));
+    }
+
+    @Test
+    void convertFailureGoesToDeadLetterAndSyncContinues() {
+        //初始化,名称为 bad 的文档 mapper 抛出异常
+        this.engine = newEngine(100);
+        this.engine.startFrom(0);
+        this.engine.upsert("a", "v1");
+        this.engine.upsert("b", "bad");
+        this.engine.upsert("c", "v1");
+        //启动
+        this.engine.register(NAME, TestDoc.class, TestIndex.class, doc -> {
+            //模拟 mapper 异常
+            if ("bad".equals(doc.getName())) {
+                throw new IllegalStateException("bad doc");
+            }
+            TestIndex index = new TestIndex();
+            index.setName(doc.getName());
+            return index;
+        });
+        //等待
+        await(() -> this.engine.savedPosition() == 3);
+        //转换失败记入死信,其余照常写入并保存断点,不会卡住
+        assertEquals(Arrays.asList("open:0", "deadLetter:b", "write:a=v1", "write:c=v1", "save:3"), this.engine.journal);
+        assertEquals(SyncDeadLetterDoc.OP_TYPE_CONVERT, this.engine.deadLetterMap.get(NAME + ":b").getOpType());
+        //修复数据后重放
+        this.engine.collection.put("b", "v2");
+        this.engine.replayDeadLetter(NAME);
+        //等待
+        await(() -> this.engine.deadLetterMap.isEmpty());
+        assertEquals("v2", this.engine.es.get("b"));
+    }
+
+    /**
+     * 初始化引擎
+     *
+     * @param batchSize 每批最大条数
+     * @return
+     */
+    private static StandInSyncEngine newEngine(int batchSize) {
+        //初始化
+        StandInSyncEngine engine = new StandInSyncEngine();
+        //配置
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "batchSize", batchSize);
+        ReflectionTestUtils.setField(engine, "maxWaitMillis", 1000L);
+        ReflectionTestUtils.setField(engine, "retryDelayMillis", 20L);
+        //返回
+        return engine;
+    }
+
+    /**
+     * 注册并启动
+     */
+    private void register() {
+        //实现
+        this.engine.register(NAME, TestDoc.class, TestIndex.class, doc -> {
+            TestIndex index = new TestIndex();
+            index.setName(doc.getName());
+            return index;
+        });
+    }
+
+    /**
+     * 等待条件满足,最多5秒
+     *
+     * @param condition 条件
+     */
+    private static void await(BooleanSupplier condition) {
+        //截止时间
+        long deadline = System.currentTimeMillis() + 5000L;
+        //循环
+        while (condition.getAsBoolean() == false) {
+            //如果超时
+            if (System.currentTimeMillis() > deadline) {
+                fail("等待超时");
+            }
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("等待被中断");
+            }
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class TestDoc extends BaseDocument {
+
+        private static final long serialVersionUID = 1L;
+
+        private String name;
+
+    }
+
+    @Getter
+    @Setter
+    public static class TestIndex extends BaseIndex {
+
+        private static final long serialVersionUID = 1L;
+
+        private String name;
+
+    }
+
+    /**
+     * 本地替身:Mongo 集合、change stream、进度、死信、ES 都在内存中
+     * 所有读写按发生顺序记入 journal,用来校验先后顺序
+     */
+    private static class StandInSyncEngine extends MongoElasticSearchSyncEngine {
+
+        //Mongo 集合 id -> name
+        private final Map<String, String> collection = new ConcurrentHashMap<>();
+
+        //change stream 事件,下标即位置
+        private final List<ChangeStreamDocument<Document>> changeLog = new CopyOnWriteArrayList<>();
+
+        //ES id -> name
+        private final Map<String, String> es = new ConcurrentHashMap<>();
+
+        //死信
+        private final Map<String, SyncDeadLetterDoc> deadLetterMap = new ConcurrentHashMap<>();
+
+        //操作记录
+        private final List<String> journal = new CopyOnWriteArrayList<>();
+
+        //每批写入ES的id
+        private final List<List<String>> batchList = new CopyOnWriteArrayList<>();
+
+        //写入ES最终失败的id
+        private final Set<String> failIdSet = ConcurrentHashMap.newKeySet();
+
+        //写入ES整批异常的次数
+        private final AtomicInteger bulkErrorCount = new AtomicInteger();
+
+        //进度
+        private volatile SyncResumeTokenDoc progress;
+
+        //回填过程中执行
+        private volatile Runnable duringBackfill;
+
+        /**
+         * 从指定位置开始(已回填完成)
+         *
+         * @param position 位置
+         */
+        private void startFrom(int position) {
+            //初始化
+            SyncResumeTokenDoc progress = new SyncResumeTokenDoc();
+            progress.setId(NAME);
+            progress.setResumeToken(token(position).toJson());
+            progress.setBackfillDone(true);
+            progress.setSyncCount(0L);
+            this.progress = progress;
+        }
+
+        /**
+         * 已保存的断点位置
+         *
+         * @return 没有时返回-1
+         */
+        private int savedPosition() {
+            //进度
+            SyncResumeTokenDoc progress = this.progress;
+            //如果没有
+            if (progress == null || progress.getResumeToken() == null) {
+                return -1;
+            }
+            //返回
+            return BsonDocument.parse(progress.getResumeToken()).getInt32("pos").getValue();
+        }
+
+        /**
+         * 新增或修改,产生变更事件
+         *
+         * @param id   id
+         * @param name 名称
+         */
+        private void upsert(String id, String name) {
+            //操作类型
+            OperationType operationType = this.collection.put(id, name) == null ? OperationType.INSERT : OperationType.UPDATE;
+            //全文档
+            Document fullDocument = new Document("_id", id).append("name", name);
+            //事件
+            this.changeLog.add(new ChangeStreamDocument<>(operationType, token(this.changeLog.size() + 1), null, null,
+                    fullDocument, new BsonDocument("_id", new BsonString(id)), null, null, null, null));
+        }
+
+        /**
+         * 删除,产生变更事件
+         *
+         * @param id id
+         */
+        private void delete(String id) {
+            //删除
+            this.collection.remove(id);
+            //事件
+            this.changeLog.add(new ChangeStreamDocument<>(OperationType.DELETE, token(this.changeLog.size() + 1), null, null,
+                    null, new BsonDocument("_id", new BsonString(id)), null, null, null, null));
+        }
+
+        /**
+         * 位置转为 resume token
+         *
+         * @param position 位置
+         * @return
+         */
+        private static BsonDocument token(int position) {
+            //实现
+            return new BsonDocument("pos", new BsonInt32(position));
+        }
+
+        @Override
+        public void reset(String name) {
+            //实现
+            this.progress = null;
+        }
+
+        @Override
+        SyncResumeTokenDoc findProgress(String name) {
+            //实现
+            return this.progress;
+        }
+
+        @Override
+        void saveProgress(SyncResumeTokenDoc progress) {
+            //记录
+            this.journal.add("save:" + BsonDocument.parse(progress.getResumeToken()).getInt32("pos").getValue());
+            //保存
+            this.progress = progress;
+        }
+
+        @Override
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> openChangeStream(Class<?> docClass, String resumeToken) {
+            //记录
+            this.journal.add("open:" + (resumeToken == null ? "-" : String.valueOf(BsonDocument.parse(resumeToken).getInt32("pos").getValue())));
+            //没有断点时从当前开始
+            return new StandInCursor(resumeToken == null ? this.changeLog.size() : BsonDocument.parse(resumeToken).getInt32("pos").getValue());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <D> CloseableIterator<D> streamAll(Class<D> docClass) {
+            //快照
+            List<D> docList = new ArrayList<>();
+            new LinkedHashMap<>(this.collection).entrySet().stream().sorted(Map.Entry.comparingByKey())
+                    .forEach(entry -> docList.add((D) toDoc(entry.getKey(), entry.getValue())));
+            //快照之后发生的变更
+            if (this.duringBackfill != null) {
+                this.duringBackfill.run();
+            }
+            //迭代器
+            Iterator<D> iterator = docList.iterator();
+            return new CloseableIterator<D>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public D next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <D> D findDocument(Class<D> docClass, String id) {
+            //名称
+            String name = this.collection.get(id);
+            //返回
+            return name == null ? null : (D) toDoc(id, name);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <D> D readDocument(Class<D> docClass, Document document) {
+            //实现
+            return (D) toDoc(document.getString("_id"), document.getString("name"));
+        }
+
+        @Override
+        String getWriteIndexName(Class<?> indexClass) {
+            //实现
+            return "stand_in_index";
+        }
+
+        @Override
+        void clearIndex(Class<?> indexClass) {
+            //记录
+            this.journal.add("clear");
+            //清空
+            this.es.clear();
+        }
+
+        @Override
+        String toJson(BaseIndex index) {
+            //实现
+            return JSON.toJSONString(index);
+        }
+
+        @Override
+        List<DocWriteRequest<?>> bulkWrite(Class<?> indexClass, List<DocWriteRequest<?>> batch) {
+            //如果要模拟整批异常
+            if (this.bulkErrorCount.getAndDecrement() > 0) {
+                this.journal.add("bulkError");
+                throw new MyException("ES不可用");
+            }
+            //记录
+            this.batchList.add(batch.stream().map(DocWriteRequest::id).collect(Collectors.toList()));
+            //失败的
+            List<DocWriteRequest<?>> failedList = new ArrayList<>();
+            //循环
+            for (DocWriteRequest<?> request : batch) {
+                //如果要模拟失败
+                if (this.failIdSet.contains(request.id())) {
+                    failedList.add(request);
+                    continue;
+                }
+                //新增或覆盖
+                if (request instanceof IndexRequest) {
+                    String name = JSON.parseObject(((IndexRequest) request).source().utf8ToString()).getString("name");
+                    this.es.put(request.id(), name);
+                    this.journal.add("write:" + request.id() + "=" + name);
+                } else {
+                    this.es.remove(request.id());
+                    this.journal.add("delete:" + request.id());
+                }
+            }
+            //返回
+            return failedList;
+        }
+
+        @Override
+        void saveDeadLetter(List<SyncDeadLetterDoc> deadLetterList) {
+            //循环
+            for (SyncDeadLetterDoc deadLetter : deadLetterList) {
+                this.journal.add("deadLetter:" + deadLetter.getDocId());
+                this.deadLetterMap.put(deadLetter.getId(), deadLetter);
+            }
+        }
+
+        @Override
+        List<SyncDeadLetterDoc> findDeadLetter(String name) {
+            //实现
+            return this.deadLetterMap.values().stream().filter(deadLetter -> name.equals(deadLetter.getSyncName())).collect(Collectors.toList());
+        }
+
+        @Override
+        void removeDeadLetter(List<String> idList) {
+            //实现
+            idList.forEach(this.deadLetterMap::remove);
+        }
+
+        /**
+         * 组装 Mongo 实体
+         *
+         * @param id   id
+         * @param name 名称
+         * @return
+         */
+        private static TestDoc toDoc(String id, String name) {
+            //实现
+            TestDoc doc = new TestDoc();
+            doc.setId(id);
+            doc.setName(name);
+            return doc;
+        }
+
+        /**
+         * change stream 游标替身,没有新事件时 tryNext 返回 null(等同于 maxAwaitTime 到期)
+         */
+        private class StandInCursor implements MongoChangeStreamCursor<ChangeStreamDocument<Document>> {
+
+            //当前位置
+            private int position;
+
+            private StandInCursor(int position) {
+                this.position = position;
+            }
+
+            @Override
+            public BsonDocument getResumeToken() {
+                //实现
+                return token(this.position);
+            }
+
+            @Override
+            public ChangeStreamDocument<Document> tryNext() {
+                //如果有
+                if (this.position < changeLog.size()) {
+                    return changeLog.get(this.position++);
+                }
+                try {
+                    //模拟等待
+                    Thread.sleep(5L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+
+            @Override
+            public int available() {
+                return changeLog.size() - this.position;
+            }
+
+            @Override
+            public boolean hasNext() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public ChangeStreamDocument<Document> next() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public ServerCursor getServerCursor() {
+                return null;
+            }
+
+            @Override
+            public ServerAddress getServerAddress() {
+                return null;
+            }
+
+            @Override
+            public void close() {
+            }
+
+        }
+
+    }
+
+}